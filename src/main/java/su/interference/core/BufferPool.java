@@ -0,0 +1,459 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.core;
+
+import su.interference.metrics.Metrics;
+import su.interference.persistent.DataFile;
+import su.interference.persistent.FrameData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of frames resident in heap with byte budget per datafile type (data, index, undo, temp).
+ * Eviction policy is W-TinyLFU: loaded frame enters small LRU window (1% of budget), frames leaving
+ * the window enter probation segment of main SLRU, frames accessed in probation are promoted to protected
+ * segment (80% of budget). Eviction victim of main is compared with the newest candidate of probation
+ * by access frequency estimated by count-min sketch, so frames of one-time scans do not displace
+ * frequently used ones. Hits are recorded without locks by reference flag and sketch, reordering
+ * of queues is deferred until the frame reaches the head of its queue (CLOCK-style second chance).
+ * Eviction runs inline on admission of a frame, frames with unsynced changes are skipped.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class BufferPool {
+
+    public static final int DATA = 0;
+    public static final int INDEX = 1;
+    public static final int UNDO = 2;
+    public static final int TEMP = 3;
+    private static final String[] NAMES = new String[]{"data", "index", "undo", "temp"};
+    //max amount of nodes inspected during single admission
+    private static final int MAX_SCAN = 32;
+    private static final BufferPool pool = new BufferPool();
+    private final Segment[] segments = new Segment[4];
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long lastHits;
+    private long lastMisses;
+    private long lastEvictions;
+    private long lastPublish = System.currentTimeMillis();
+
+    public static BufferPool getBufferPool() {
+        return pool;
+    }
+
+    private BufferPool() {
+        final Config cfg = Config.getConfig();
+        segments[DATA] = new Segment(DATA, cfg.BUFFER_DATA_SIZE * 1048576L);
+        segments[INDEX] = new Segment(INDEX, cfg.BUFFER_INDX_SIZE * 1048576L);
+        segments[UNDO] = new Segment(UNDO, cfg.BUFFER_UNDO_SIZE * 1048576L);
+        segments[TEMP] = new Segment(TEMP, cfg.BUFFER_TEMP_SIZE * 1048576L);
+        final long budget = (long) cfg.BUFFER_DATA_SIZE + cfg.BUFFER_INDX_SIZE + cfg.BUFFER_UNDO_SIZE + cfg.BUFFER_TEMP_SIZE;
+        sketch = new FrequencySketch((int) Math.min(budget * 1048576L / Math.min(cfg.FRAMESIZE, cfg.FRAMESIZE2), 1 << 24));
+    }
+
+    //frame found in heap
+    public void hit(FrameData fd) {
+        final Node n = fd.getPoolNode();
+        if (n != null) {
+            n.referenced = true;
+        }
+        sketch.increment(fd.getFrameId());
+        hits.increment();
+    }
+
+    //frame is loaded from datafile
+    public void miss(FrameData fd) {
+        misses.increment();
+        admit(fd);
+    }
+
+    //registers frame as resident and evicts frames if budget of its type is exceeded
+    public void admit(FrameData fd) {
+        if (fd.getPoolNode() != null) {
+            return;
+        }
+        final Segment seg = getSegment(fd);
+        if (seg == null) {
+            return;
+        }
+        sketch.increment(fd.getFrameId());
+        final Node n = new Node(fd, seg.type, fd.getSize());
+        final List<Node> evicted = new ArrayList<>();
+        synchronized (seg) {
+            if (fd.getPoolNode() != null) {
+                return;
+            }
+            fd.setPoolNode(n);
+            seg.resident = seg.resident + n.size;
+            seg.live++;
+            seg.push(n, Node.WINDOW);
+            Node candidate = null;
+            while (seg.windowBytes > seg.windowBudget) {
+                final Node c = seg.poll(Node.WINDOW);
+                if (c == null) {
+                    break;
+                }
+                seg.push(c, Node.PROBATION);
+                candidate = c;
+            }
+            //frames are not evicted during startup
+            if (Config.getConfig().CLEANUP_ENABLE && Instance.getInstance().getSystemState() == Instance.SYSTEM_STATE_UP) {
+                seg.evict(candidate, evicted);
+            }
+        }
+        //evicted frames are moved to off-heap cache outside of pool lock
+        for (Node e : evicted) {
+            final Frame f = e.frame;
+            e.frame = null;
+            e.fd.retireFrame(f);
+        }
+    }
+
+    //frame is removed from heap by other than eviction reason (cleared, deleted or replaced)
+    public void remove(FrameData fd) {
+        final Node n = fd.getPoolNode();
+        if (n == null) {
+            return;
+        }
+        final Segment seg = segments[n.type];
+        synchronized (seg) {
+            if (fd.getPoolNode() == n) {
+                seg.unlink(n);
+            }
+        }
+    }
+
+    public long getResidentBytes(int type) {
+        return segments[type].resident;
+    }
+
+    //publishes hit ratio, evictions per second and resident bytes, called periodically by cleanup process
+    public void publish() {
+        final long now = System.currentTimeMillis();
+        final long hits_ = hits.sum();
+        final long misses_ = misses.sum();
+        long evictions_ = 0;
+        for (Segment seg : segments) {
+            evictions_ = evictions_ + seg.evictions.sum();
+        }
+        final long total = hits_ - lastHits + misses_ - lastMisses;
+        Metrics.get("bufferHitRatio").put(total == 0 ? 100 : (hits_ - lastHits) * 100 / total);
+        Metrics.get("bufferEvictionsPerSec").put((evictions_ - lastEvictions) * 1000 / Math.max(now - lastPublish, 1));
+        Metrics.get("bufferResidentBytes").put(segments[DATA].resident + segments[INDEX].resident + segments[UNDO].resident + segments[TEMP].resident);
+        for (Segment seg : segments) {
+            Metrics.get("bufferResidentBytes@" + NAMES[seg.type]).put(seg.resident);
+        }
+        Metrics.get("сleanUpDataFrames").put(segments[DATA].published());
+        Metrics.get("сleanUpIndexFrames").put(segments[INDEX].published());
+        Metrics.get("сleanUpUndoFrames").put(segments[UNDO].published());
+        Metrics.get("imDataFrames").put(segments[DATA].live);
+        Metrics.get("imIndexFrames").put(segments[INDEX].live);
+        Metrics.get("imUndoFrames").put(segments[UNDO].live);
+        lastHits = hits_;
+        lastMisses = misses_;
+        lastEvictions = evictions_;
+        lastPublish = now;
+    }
+
+    //datafiles of storage are used because system tables may be not loaded yet
+    private Segment getSegment(FrameData fd) {
+        final DataFile df;
+        try {
+            df = Storage.getStorage().getDataFileById(fd.getFile());
+        } catch (Exception e) {
+            return null;
+        }
+        if (df == null) {
+            return null;
+        }
+        if (df.isData()) {
+            return segments[DATA];
+        }
+        if (df.isIndex()) {
+            return segments[INDEX];
+        }
+        if (df.isUndo()) {
+            return segments[UNDO];
+        }
+        if (df.isTemp()) {
+            return segments[TEMP];
+        }
+        return null;
+    }
+
+    //frames of system tables and small tables (frames amount below cleanup threshold) remain in heap
+    private static boolean isEvictable(int type, FrameData fd) {
+        final long frameAmount = fd.getDataObject().getFrameAmount();
+        switch (type) {
+            case DATA:
+                return fd.getObjectId() > 999 && frameAmount > getThr();
+            case INDEX:
+                return fd.getFrameType() != IndexFrame.INDEX_FRAME_NODE && !fd.isRbck() && frameAmount > getIxThr();
+            case UNDO:
+                return frameAmount > getThr();
+            default:
+                // todo cleanup affects temp indices, disable until fix is released
+                return false;
+        }
+    }
+
+    private static int getThr() {
+        return Config.getConfig().CLEANUP_PROTECTION_THR/(Config.getConfig().FRAMESIZE/4096);
+    }
+
+    private static int getIxThr() {
+        return Config.getConfig().IX_CLEANUP_PROTECTION_THR/(Config.getConfig().FRAMESIZE/4096);
+    }
+
+    public static class Node {
+        private static final int NONE = 0;
+        private static final int WINDOW = 1;
+        private static final int PROBATION = 2;
+        private static final int PROTECTED = 3;
+        private final FrameData fd;
+        private final int type;
+        private final int size;
+        private Frame frame;
+        private int queue;
+        private volatile boolean referenced;
+
+        private Node(FrameData fd, int type, int size) {
+            this.fd = fd;
+            this.type = type;
+            this.size = size;
+        }
+    }
+
+    //queues keep unlinked nodes until they are polled or queue is compacted
+    private class Segment {
+        private final int type;
+        private final long budget;
+        private final long windowBudget;
+        private final long protectedBudget;
+        private final ArrayDeque<Node> window = new ArrayDeque<>();
+        private final ArrayDeque<Node> probation = new ArrayDeque<>();
+        private final ArrayDeque<Node> protect = new ArrayDeque<>();
+        private final LongAdder evictions = new LongAdder();
+        private volatile long resident;
+        private volatile int live;
+        private long windowBytes;
+        private long protectedBytes;
+        private int stale;
+        private long published;
+
+        private Segment(int type, long budget) {
+            this.type = type;
+            this.budget = budget;
+            this.windowBudget = Math.max(budget / 100, 1);
+            this.protectedBudget = (budget - windowBudget) * 8 / 10;
+        }
+
+        private ArrayDeque<Node> queue(int queue) {
+            return queue == Node.WINDOW ? window : queue == Node.PROBATION ? probation : protect;
+        }
+
+        private void push(Node n, int queue) {
+            n.queue = queue;
+            queue(queue).add(n);
+            if (queue == Node.WINDOW) {
+                windowBytes = windowBytes + n.size;
+            }
+            if (queue == Node.PROTECTED) {
+                protectedBytes = protectedBytes + n.size;
+                while (protectedBytes > protectedBudget) {
+                    final Node d = poll(Node.PROTECTED);
+                    if (d == null) {
+                        break;
+                    }
+                    push(d, Node.PROBATION);
+                }
+            }
+        }
+
+        //returns head of queue, skipping unlinked nodes
+        private Node poll(int queue) {
+            final ArrayDeque<Node> q = queue(queue);
+            Node n;
+            while ((n = q.poll()) != null) {
+                if (n.queue == queue) {
+                    detach(n);
+                    return n;
+                }
+                stale--;
+            }
+            return null;
+        }
+
+        private void detach(Node n) {
+            if (n.queue == Node.WINDOW) {
+                windowBytes = windowBytes - n.size;
+            }
+            if (n.queue == Node.PROTECTED) {
+                protectedBytes = protectedBytes - n.size;
+            }
+            n.queue = Node.NONE;
+        }
+
+        private void unlink(Node n) {
+            if (n.queue != Node.NONE) {
+                detach(n);
+                stale++;
+            }
+            n.fd.setPoolNode(null);
+            resident = resident - n.size;
+            live--;
+            if (stale > live + MAX_SCAN) {
+                window.removeIf(p -> p.queue != Node.WINDOW);
+                probation.removeIf(p -> p.queue != Node.PROBATION);
+                protect.removeIf(p -> p.queue != Node.PROTECTED);
+                stale = 0;
+            }
+        }
+
+        private Node victim() {
+            Node n = poll(Node.PROBATION);
+            if (n == null) {
+                n = poll(Node.PROTECTED);
+            }
+            if (n == null) {
+                n = poll(Node.WINDOW);
+            }
+            return n;
+        }
+
+        private void evict(Node candidate, List<Node> evicted) {
+            int scan = MAX_SCAN;
+            while (resident > budget && scan-- > 0) {
+                final Node v = victim();
+                if (v == null) {
+                    return;
+                }
+                if (v.referenced) {
+                    v.referenced = false;
+                    push(v, Node.PROTECTED);
+                    continue;
+                }
+                //admission: newest candidate is evicted instead of more frequently used victim
+                if (candidate != null && candidate != v && candidate.queue == Node.PROBATION && !candidate.referenced
+                        && sketch.frequency(candidate.fd.getFrameId()) < sketch.frequency(v.fd.getFrameId())
+                        && release(candidate, evicted)) {
+                    push(v, Node.PROBATION);
+                    candidate = null;
+                    continue;
+                }
+                if (!release(v, evicted)) {
+                    push(v, Node.PROBATION);
+                }
+            }
+        }
+
+        private boolean release(Node n, List<Node> evicted) {
+            if (isEvictable(type, n.fd) && (n.frame = n.fd.evictFrame()) != null) {
+                unlink(n);
+                evicted.add(n);
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+
+        private long published() {
+            final long e = evictions.sum();
+            final long r = e - published;
+            published = e;
+            return r;
+        }
+    }
+
+    //count-min sketch of access frequency with 4-bit counters, all counters are halved
+    //after sample of accesses (aging), counters are updated by CAS, so increments are not lost
+    //aging is performed once per sample by the thread which counted the last access of the sample
+    private static class FrequencySketch {
+        private static final long[] SEEDS = new long[]{0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private final AtomicLongArray table;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger size = new AtomicInteger();
+
+        private FrequencySketch(int capacity) {
+            final int c = Integer.highestOneBit(Math.max(capacity, 64) - 1) << 1;
+            this.table = new AtomicLongArray(c);
+            this.mask = c - 1;
+            this.sampleSize = 10 * c;
+        }
+
+        private int frequency(long e) {
+            int f = 15;
+            for (int i = 0; i < 4; i++) {
+                final long h = hash(e, i);
+                f = Math.min(f, (int) ((table.get((int) (h >>> 4) & mask) >>> ((h & 15) << 2)) & 15));
+            }
+            return f;
+        }
+
+        private void increment(long e) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                final long h = hash(e, i);
+                final int idx = (int) (h >>> 4) & mask;
+                final int offset = (int) (h & 15) << 2;
+                while (true) {
+                    final long v = table.get(idx);
+                    if (((v >>> offset) & 15) == 15) {
+                        break;
+                    }
+                    if (table.compareAndSet(idx, v, v + (1L << offset))) {
+                        added = true;
+                        break;
+                    }
+                }
+            }
+            if (added && size.incrementAndGet() == sampleSize) {
+                for (int i = 0; i < table.length(); i++) {
+                    long v;
+                    do {
+                        v = table.get(i);
+                    } while (!table.compareAndSet(i, v, (v >>> 1) & 0x7777777777777777L));
+                }
+                size.addAndGet(-sampleSize / 2);
+            }
+        }
+
+        private static long hash(long e, int i) {
+            long h = (e + SEEDS[i]) * SEEDS[(i + 1) & 3];
+            return h ^ (h >>> 32);
+        }
+    }
+
+}
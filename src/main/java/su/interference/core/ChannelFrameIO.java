@@ -0,0 +1,210 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+
+package su.interference.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Positional frame I/O based on FileChannel.read/write(ByteBuffer, position),
+ * concurrent reads and writes on the same datafile are not serialized.
+ * Uses own file descriptor: the channel closes on interrupt of any thread
+ * which uses it, in this case the channel is reopened and the operation repeated
+ * by all threads, interrupt status is restored for the interrupted thread only.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class ChannelFrameIO implements FrameIO {
+
+    private final String fileName;
+    private final String mode;
+    private volatile RandomAccessFile file;
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+    //channel position is used by gathering writes only
+    private final Object gather = new Object();
+    private final static Logger logger = LoggerFactory.getLogger(ChannelFrameIO.class);
+
+    public ChannelFrameIO(String fileName, String mode) throws IOException {
+        this.fileName = fileName;
+        this.mode = mode;
+        open();
+    }
+
+    private synchronized void open() throws IOException {
+        this.file = new RandomAccessFile(this.fileName, this.mode);
+        this.channel = this.file.getChannel();
+    }
+
+    private synchronized void reopen(FileChannel closed) throws IOException {
+        if (this.channel == closed) {
+            logger.warn("channel of " + this.fileName + " was closed by interrupt, reopen");
+            open();
+        }
+    }
+
+    //interrupted thread gets ClosedByInterruptException, other threads which use the channel
+    //get AsynchronousCloseException or ClosedChannelException, returns interrupt status of current thread
+    private boolean recover(FileChannel ch, ClosedChannelException e) throws IOException {
+        if (this.closed) {
+            throw e;
+        }
+        final boolean interrupted = Thread.interrupted();
+        reopen(ch);
+        return interrupted;
+    }
+
+    public byte[] read(long ptr, int size) throws IOException {
+        final byte[] b = new byte[size];
+        read(ptr, ByteBuffer.wrap(b));
+        return b;
+    }
+
+    public ByteBuffer readBuffer(long ptr, int size) throws IOException {
+        return ByteBuffer.wrap(read(ptr, size));
+    }
+
+    public void read(long ptr, ByteBuffer bb) throws IOException {
+        final int start = bb.position();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                final FileChannel ch = this.channel;
+                try {
+                    while (bb.hasRemaining()) {
+                        if (ch.read(bb, ptr + bb.position() - start) < 0) {
+                            break;
+                        }
+                    }
+                    return;
+                } catch (ClosedChannelException e) {
+                    interrupted = recover(ch, e) || interrupted;
+                    bb.position(start);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void write(long ptr, byte[] b) throws IOException {
+        write(ptr, ByteBuffer.wrap(b));
+    }
+
+    public void write(long ptr, ByteBuffer bb) throws IOException {
+        final int start = bb.position();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                final FileChannel ch = this.channel;
+                try {
+                    while (bb.hasRemaining()) {
+                        ch.write(bb, ptr + bb.position() - start);
+                    }
+                    return;
+                } catch (ClosedChannelException e) {
+                    interrupted = recover(ch, e) || interrupted;
+                    bb.position(start);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void write(long ptr, byte[][] b) throws IOException {
+        final ByteBuffer[] bbs = new ByteBuffer[b.length];
+        long size = 0;
+        for (int i = 0; i < b.length; i++) {
+            bbs[i] = ByteBuffer.wrap(b[i]);
+            size = size + b[i].length;
+        }
+        write(ptr, bbs, size);
+    }
+
+    private void write(long ptr, ByteBuffer[] bbs, long size) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                final FileChannel ch = this.channel;
+                try {
+                    synchronized (this.gather) {
+                        ch.position(ptr);
+                        long written = 0;
+                        while (written < size) {
+                            written = written + ch.write(bbs);
+                        }
+                    }
+                    return;
+                } catch (ClosedChannelException e) {
+                    interrupted = recover(ch, e) || interrupted;
+                    for (ByteBuffer bb : bbs) {
+                        bb.rewind();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long length() throws IOException {
+        return this.channel.size();
+    }
+
+    public synchronized void extend(long size) throws IOException {
+        this.file.setLength(this.file.length()+size);
+    }
+
+    public void force() throws IOException {
+        this.channel.force(false);
+    }
+
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        this.channel.close();
+        this.file.close();
+    }
+
+    protected FileChannel getChannel() {
+        return this.channel;
+    }
+
+}
@@ -24,6 +24,10 @@
 
 package su.interference.core;
 
+import su.interference.persistent.FrameData;
+import su.interference.persistent.UndoChunk;
+
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -32,42 +36,226 @@ import java.util.*;
  */
 
 public class ChunkMap {
+    //decoded chunks
     private final HashMap<Integer, Chunk> hmap;
-    private final HashMap<ValueSet, List<Chunk>> imap;
-    private final List<Chunk> list;
+    //index frames only, rows ordered by key (stable for equal keys)
+    //rows loaded from datafile are stored in key order and decoded on first access
+    private final List<Slot> list;
     private final Frame frame;
-    private volatile boolean sorted;
     private volatile int used;
+    //slot directory of rows which are not decoded yet (frame loaded from datafile)
+    private ByteBuffer raw;
+    private int[] slots;
+    private int[] ptrs;
+    private int pending;
+    private int hsize;
+    private List<FrameData> uframes;
+    private Map<Integer, UndoChunk> ucs;
+    private boolean leaf;
 
     public ChunkMap(Frame frame) {
         hmap = new HashMap<>();
-        imap = frame instanceof IndexFrame ? new HashMap<>() : null;
         list = frame instanceof IndexFrame ? new ArrayList<>() : null;
         this.frame = frame;
     }
 
-    @SuppressWarnings("unchecked")
+    //registers encoded rows of frame without decoding them
+    //rows are materialized to DataChunk on first access by ptr (getByPtr) or by any other access to whole map
+    //rows of index frame are materialized on first access by position or during binary search by key
+    protected synchronized void load(ByteBuffer bb, int start, int hsize, List<FrameData> uframes) {
+        final int length = bb.capacity();
+        int[] slots_ = new int[16];
+        int[] ptrs_ = new int[16];
+        int cnt = 0;
+        int ptr = start;
+        while (length >= ptr + hsize) {
+            final int p = bb.getShort(ptr + 12) & 0xFFFF;
+            final int len = bb.getShort(ptr + 10) & 0xFFFF;
+            if (p <= 0 || len <= 0) {
+                break;
+            }
+            if (list != null) {
+                list.add(new Slot(ptr, p));
+            } else {
+                if (cnt == slots_.length) {
+                    slots_ = Arrays.copyOf(slots_, cnt * 2);
+                    ptrs_ = Arrays.copyOf(ptrs_, cnt * 2);
+                }
+                slots_[cnt] = ptr;
+                ptrs_[cnt] = p;
+            }
+            cnt++;
+            used = used + hsize + len;
+            ptr = ptr + hsize + len;
+        }
+        if (cnt > 0) {
+            //mapped buffers may be reused by datafile, so keep heap copy of frame bytes only
+            if (bb.hasArray()) {
+                this.raw = bb;
+            } else {
+                final byte[] b = new byte[length];
+                final ByteBuffer src = bb.duplicate();
+                src.position(0);
+                src.get(b);
+                this.raw = ByteBuffer.wrap(b);
+            }
+            if (list == null) {
+                this.slots = slots_;
+                this.ptrs = ptrs_;
+            }
+            this.pending = cnt;
+            this.hsize = hsize;
+            this.uframes = uframes;
+            this.leaf = frame instanceof IndexFrame && frame.getType() == IndexFrame.INDEX_FRAME_LEAF;
+        }
+    }
+
+    //undo chunks of rows changed by running transactions, collected on first decode
+    private Map<Integer, UndoChunk> getUndoChunks() throws Exception {
+        if (ucs == null) {
+            ucs = new HashMap<>();
+            final long frameId = frame.getFile() + frame.getPointer();
+            for (FrameData uframe : uframes) {
+                for (Chunk udc : uframe.getDataFrame().getChunks()) {
+                    final UndoChunk uc = (UndoChunk) udc.getEntity();
+                    if (frameId == uc.getFile() + uc.getFrame()) {
+                        ucs.put(uc.getPtr(), uc);
+                    }
+                }
+            }
+            uframes = null;
+        }
+        return ucs;
+    }
+
+    private DataChunk decode(int pos) {
+        try {
+            final RowHeader h = new RowHeader(raw, pos, hsize, frame.getFile(), frame.getPointer());
+            final DataChunk dc = new DataChunk(raw, pos, h, frame.getDataObject(), frame.getEntityClass());
+            if (leaf && IndexFrame.INITIALIZE_DURING_CONSTRUCT == 1) {
+                dc.getEntity();
+            }
+            final UndoChunk uc = getUndoChunks().get(h.getPtr());
+            if (uc != null) {
+                dc.setUndoChunk(uc);
+            }
+            hmap.put(h.getPtr(), dc);
+            return dc;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void decoded() {
+        pending--;
+        if (pending == 0) {
+            raw = null;
+            slots = null;
+            ptrs = null;
+            uframes = null;
+            ucs = null;
+        }
+    }
+
+    //data frames only
+    private void decodeSlot(int slot) {
+        decode(slots[slot]);
+        slots[slot] = -1;
+        decoded();
+    }
+
+    //index frames only
+    private Chunk chunk(Slot s) {
+        if (s.chunk == null) {
+            s.chunk = decode(s.pos);
+            decoded();
+        }
+        return s.chunk;
+    }
+
+    private void materialize() {
+        if (pending > 0) {
+            if (list != null) {
+                for (int i = 0; pending > 0 && i < list.size(); i++) {
+                    chunk(list.get(i));
+                }
+            } else {
+                for (int i = 0; pending > 0 && i < slots.length; i++) {
+                    if (slots[i] > 0) {
+                        decodeSlot(i);
+                    }
+                }
+            }
+        }
+    }
+
+    //list of index frame is kept ordered on insert and rows of index frame are stored in key order (see Frame.getFrame),
+    //so there is nothing to sort
     protected synchronized void sort() {
-        if (frame instanceof IndexFrame) {
-            Collections.sort(list);
-            sorted = true;
+    }
+
+    //first position of list which key is greater or equal than given key
+    //partial keys compared by prefix (ValueSet.compareTo)
+    private int lowerBound(ValueSet key) {
+        int lo = 0;
+        int hi = list.size();
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (chunk(list.get(mid)).getDcs().compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    //first position of list which key is greater than given key
+    private int upperBound(ValueSet key) {
+        int lo = 0;
+        int hi = list.size();
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (chunk(list.get(mid)).getDcs().compareTo(key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int indexOf(Chunk c) {
+        for (int i = lowerBound(c.getDcs()); i < list.size(); i++) {
+            final Chunk c_ = chunk(list.get(i));
+            if (c_ == c) {
+                return i;
+            }
+            if (c_.getDcs().compareTo(c.getDcs()) != 0) {
+                break;
+            }
+        }
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).chunk == c) {
+                return i;
+            }
         }
+        return -1;
     }
 
     protected synchronized void add(Chunk c) {
+        if (list == null) {
+            materialize();
+        }
         hmap.put(c.getHeader().getPtr(), c);
-        if (frame instanceof IndexFrame) {
-            if (imap.get(c.getDcs()) == null) {
-                imap.put(c.getDcs(), new ArrayList<>());
-            }
-            imap.get(c.getDcs()).add(c);
-            list.add(c);
+        if (list != null) {
+            list.add(upperBound(c.getDcs()), new Slot(c));
         }
-        sorted = false;
         used = used + c.getBytesAmount();
     }
 
     protected synchronized void check() {
+        materialize();
         for (Map.Entry<Integer, Chunk> entry : hmap.entrySet()) {
             Chunk c = entry.getValue();
             if (c.getHeader().getPtr() != entry.getKey()) {
@@ -76,65 +264,90 @@ public class ChunkMap {
         }
     }
 
+    //returns snapshot, frame may be changed concurrently during iteration
     protected synchronized Collection<Chunk> getChunks() {
-        if (frame instanceof IndexFrame) {
-            return list;
+        materialize();
+        if (list != null) {
+            final List<Chunk> r = new ArrayList<>(list.size());
+            for (Slot s : list) {
+                r.add(s.chunk);
+            }
+            return r;
         }
-        return hmap.values();
+        return new ArrayList<>(hmap.values());
     }
 
     protected synchronized Chunk getByPtr(int i) {
-        return hmap.get(i);
+        final Chunk c = hmap.get(i);
+        if (c == null && pending > 0) {
+            if (list != null) {
+                for (Slot s : list) {
+                    if (s.ptr == i && s.chunk == null) {
+                        return chunk(s);
+                    }
+                }
+            } else {
+                for (int s = 0; s < ptrs.length; s++) {
+                    if (ptrs[s] == i && slots[s] > 0) {
+                        decodeSlot(s);
+                        return hmap.get(i);
+                    }
+                }
+            }
+        }
+        return c;
     }
 
     // index only
     protected synchronized Chunk get(int i) {
-        return list.get(i);
+        return chunk(list.get(i));
     }
 
-    //for unique indexes
+    // index only
     protected synchronized List<Chunk> getByKey(ValueSet key) {
-        return imap.get(key);
+        return getByKey(key, false);
     }
 
-    protected synchronized void removeByPtr(int i) {
-        final Chunk c = hmap.remove(i);
-        if (frame instanceof IndexFrame) {
-            int i_ = 0;
-            for (int i__ = 0; i__ <  imap.get(c.getDcs()).size(); i__++) {
-                if (imap.get(c.getDcs()).get(i__).getHeader().getPtr() == c.getHeader().getPtr()) {
-                    i_ = i__;
-                }
+    // index only - chunks with given key, next = include first chunk with greater key
+    protected synchronized List<Chunk> getByKey(ValueSet key, boolean next) {
+        final List<Chunk> r = new ArrayList<>();
+        for (int i = lowerBound(key); i < list.size(); i++) {
+            final Chunk c = chunk(list.get(i));
+            final boolean eq = c.getDcs().compareTo(key) == 0;
+            if (eq || next) {
+                r.add(c);
             }
-            imap.get(c.getDcs()).remove(i_);
-            if (imap.get(c.getDcs()).size() == 0) {
-                imap.remove(c.getDcs());
+            if (!eq) {
+                break;
             }
-            list.remove(c);
         }
-        sorted = false;
-        used = used - c.getBytesAmount();
+        return r.size() == 0 ? null : r;
+    }
+
+    // index only - first chunk which key is greater or equal than given key
+    protected synchronized Chunk ceiling(ValueSet key) {
+        final int i = lowerBound(key);
+        return i < list.size() ? chunk(list.get(i)) : null;
+    }
+
+    protected synchronized void removeByPtr(int i) {
+        final Chunk c = getByPtr(i);
         if (c == null) {
             throw new RuntimeException("Internal error during remove object from frame");
         }
+        hmap.remove(i);
+        if (list != null) {
+            list.remove(indexOf(c));
+        }
+        used = used - c.getBytesAmount();
     }
 
     // index only
     protected synchronized void remove(int i) {
-        final Chunk c = list.get(i);
+        final Chunk c = chunk(list.get(i));
         list.remove(i);
         hmap.remove(c.getHeader().getPtr());
-        if (frame instanceof IndexFrame) {
-            int i_ = 0;
-            for (int i__ = 0; i__ <  imap.get(c.getDcs()).size(); i__++) {
-                if (imap.get(c.getDcs()).get(i__).getHeader().getPtr() == c.getHeader().getPtr()) {
-                    i_ = i__;
-                }
-            }
-            imap.get(c.getDcs()).remove(i_);
-        }
         used = used - c.getBytesAmount();
-        sorted = false;
     }
 
     //index only
@@ -143,19 +356,43 @@ public class ChunkMap {
     }
 
     protected synchronized void clear() {
+        pending = 0;
+        raw = null;
+        slots = null;
+        ptrs = null;
+        uframes = null;
+        ucs = null;
         hmap.clear();
-        list.clear();
-        imap.clear();
+        if (list != null) {
+            list.clear();
+        }
         used = 0;
-        sorted = false;
     }
 
     protected synchronized boolean isSorted() {
-        return sorted;
+        return list != null;
     }
 
     protected int getUsed() {
         return used;
     }
 
+    //row of index frame: position of encoded row in frame bytes or decoded chunk
+    private static class Slot {
+        private final int pos;
+        private final int ptr;
+        private Chunk chunk;
+
+        private Slot(int pos, int ptr) {
+            this.pos = pos;
+            this.ptr = ptr;
+        }
+
+        private Slot(Chunk c) {
+            this.pos = -1;
+            this.ptr = c.getHeader().getPtr();
+            this.chunk = c;
+        }
+    }
+
 }
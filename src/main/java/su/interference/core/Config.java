@@ -54,6 +54,8 @@ public class Config {
     private static final String P_DISKIO_MODE = "diskio.mode";
     private static final String P_SYNC_LOCK_ENABLE = "sync.lock.enable";
     private static final String P_SYNC_PERIOD = "sync.period";
+    private static final String P_SYNC_RATE = "sync.rate";
+    private static final String P_EXTENT_SIZE = "extent.size";
     private static final String P_RETRIEVE_QUEUE_SIZE = "retrieve.queue.size";
     private static final String P_RETRIEVE_THREADS_AMOUNT = "retrieve.threads.amount";
     private static final String P_CODEPAGE = "codepage";
@@ -68,10 +70,27 @@ public class Config {
     private static final String P_CLEANUP_TIMEOUT = "cleanup.frames.timeout";
     private static final String P_CLEANUP_PROTECTION_THR = "cleanup.data.threshold";
     private static final String P_IX_CLEANUP_PROTECTION_THR = "cleanup.ix.threshold";
-    private static final String P_HEAP_USE_THR_DATA = "cleanup.heap.data.threshold";
-    private static final String P_HEAP_USE_THR_INDX = "cleanup.heap.ix.threshold";
-    private static final String P_HEAP_USE_THR_TEMP = "cleanup.heap.temp.threshold";
-    private static final String P_HEAP_USE_THR_UNDO = "cleanup.heap.undo.threshold";
+    // buffer pool
+    private static final String P_BUFFER_DATA_SIZE = "buffer.data.size";
+    private static final String P_BUFFER_INDX_SIZE = "buffer.ix.size";
+    private static final String P_BUFFER_TEMP_SIZE = "buffer.temp.size";
+    private static final String P_BUFFER_UNDO_SIZE = "buffer.undo.size";
+    private static final String P_BUFFER_OFFHEAP_SIZE = "buffer.offheap.size";
+    // journal
+    private static final String P_JOURNAL_REDO_ENABLE = "journal.redo.enable";
+    // commit
+    private static final String P_COMMIT_GROUP_ENABLE = "commit.group.enable";
+    private static final String P_COMMIT_GROUP_WINDOW = "commit.group.window";
+    private static final String P_COMMIT_GROUP_MAX = "commit.group.max";
+    // checksum
+    private static final String P_CHECKSUM_ENABLE = "checksum.enable";
+    private static final String P_SCRUB_ENABLE = "scrub.enable";
+    private static final String P_SCRUB_RATE = "scrub.rate";
+    private static final String P_SCRUB_PERIOD = "scrub.period";
+    // sql
+    private static final String P_SQL_PLAN_CACHE_SIZE = "sql.plan.cache.size";
+    private static final String P_HASH_JOIN_MEMORY = "hash.join.memory";
+    private static final String P_HASH_GROUP_MEMORY = "hash.group.memory";
     private static final int MAX_NODE_ID = 64;
     private static final int MAX_FILES_AMOUNT = 32;
 
@@ -86,8 +105,11 @@ public class Config {
     private static final int FRAMESIZE2_DEFAULT=16384;
     private static final int FILES_AMOUNT_DEFAULT=4;
     private static final String DISKIO_MODE_DEFAULT="rws";
+    private static final int DISKIO_ENGINE_DEFAULT=FrameIO.ENGINE_RAF;
     private static final boolean SYNC_LOCK_ENABLE_DEFAULT=false;
     private static final int SYNC_PERIOD_DEFAULT=2000;
+    private static final int SYNC_RATE_DEFAULT=0;
+    private static final int EXTENT_SIZE_DEFAULT=16;
     private static final int RETRIEVE_QUEUE_SIZE_DEFAULT=100000;
     private static final int RETRIEVE_THREADS_AMOUNT_DEFAULT=8;
     private static final String CODEPAGE_DEFAULT="UTF8";
@@ -102,10 +124,27 @@ public class Config {
     private static final int CLEANUP_TIMEOUT_DEFAULT = 3000;
     private static final int CLEANUP_PROTECTION_THR_DEFAULT = 1000;
     private static final int IX_CLEANUP_PROTECTION_THR_DEFAULT = 2000;
-    private static final int HEAP_USE_THR_DATA_DEFAULT = 60;
-    private static final int HEAP_USE_THR_INDX_DEFAULT = 60;
-    private static final int HEAP_USE_THR_TEMP_DEFAULT = 40;
-    private static final int HEAP_USE_THR_UNDO_DEFAULT = 50;
+    // buffer pool (MB, default values are shares of max heap size)
+    private static final int BUFFER_DATA_SIZE_DEFAULT = (int) (Runtime.getRuntime().maxMemory() / 1048576 / 4);
+    private static final int BUFFER_INDX_SIZE_DEFAULT = (int) (Runtime.getRuntime().maxMemory() / 1048576 / 4);
+    private static final int BUFFER_TEMP_SIZE_DEFAULT = (int) (Runtime.getRuntime().maxMemory() / 1048576 / 10);
+    private static final int BUFFER_UNDO_SIZE_DEFAULT = (int) (Runtime.getRuntime().maxMemory() / 1048576 / 10);
+    private static final int BUFFER_OFFHEAP_SIZE_DEFAULT = (int) (Runtime.getRuntime().maxMemory() / 1048576 / 4);
+    // journal
+    private static final boolean JOURNAL_REDO_ENABLE_DEFAULT = false;
+    // commit
+    private static final boolean COMMIT_GROUP_ENABLE_DEFAULT = false;
+    private static final int COMMIT_GROUP_WINDOW_DEFAULT = 2;
+    private static final int COMMIT_GROUP_MAX_DEFAULT = 256;
+    // checksum
+    private static final boolean CHECKSUM_ENABLE_DEFAULT = true;
+    private static final boolean SCRUB_ENABLE_DEFAULT = false;
+    private static final int SCRUB_RATE_DEFAULT = 10;
+    private static final int SCRUB_PERIOD_DEFAULT = 3600000;
+    // sql
+    private static final int SQL_PLAN_CACHE_SIZE_DEFAULT = 256;
+    private static final int HASH_JOIN_MEMORY_DEFAULT = 64;
+    private static final int HASH_GROUP_MEMORY_DEFAULT = 64;
     // locks and processing
     private static final boolean IGNORE_COMMAND_CHANNEL_FAILURES_DEFAULT = true;
 
@@ -120,8 +159,11 @@ public class Config {
     public final int FRAMESIZE2;
     public final int FILES_AMOUNT;
     public final String DISKIO_MODE;
+    public final int DISKIO_ENGINE;
     public final boolean SYNC_LOCK_ENABLE;
     public final int SYNC_PERIOD;
+    public final int SYNC_RATE;
+    public final int EXTENT_SIZE;
     public final int RETRIEVE_QUEUE_SIZE;
     public final int RETRIEVE_THREADS_AMOUNT;
     public final String CODEPAGE;
@@ -136,10 +178,29 @@ public class Config {
     public final int CLEANUP_TIMEOUT;
     public final int CLEANUP_PROTECTION_THR;
     public final int IX_CLEANUP_PROTECTION_THR;
-    public final int HEAP_USE_THR_DATA;
-    public final int HEAP_USE_THR_INDX;
-    public final int HEAP_USE_THR_TEMP;
-    public final int HEAP_USE_THR_UNDO;
+    // buffer pool
+    public final int BUFFER_DATA_SIZE;
+    public final int BUFFER_INDX_SIZE;
+    public final int BUFFER_TEMP_SIZE;
+    public final int BUFFER_UNDO_SIZE;
+    public final int BUFFER_OFFHEAP_SIZE;
+    // journal
+    public final boolean JOURNAL_REDO_ENABLE;
+    // commit
+    public final boolean COMMIT_GROUP_ENABLE;
+    public final int COMMIT_GROUP_WINDOW;
+    public final int COMMIT_GROUP_MAX;
+    // checksum
+    public final boolean CHECKSUM_ENABLE;
+    public final boolean SCRUB_ENABLE;
+    public final int SCRUB_RATE;
+    public final int SCRUB_PERIOD;
+    // sql
+    public final int SQL_PLAN_CACHE_SIZE;
+    // build side of hash join in megabytes, larger builds are partitioned to temp frames
+    public final int HASH_JOIN_MEMORY;
+    // groups of hash group by in megabytes, larger group sets are partitioned to temp frames
+    public final int HASH_GROUP_MEMORY;
     // internal
     public final int TEST_DISTRIBUTE_MODE = 1;
     public final int CHECK_AVAIL_FRAME_TIMEOUT = 3000;
@@ -195,8 +256,11 @@ public class Config {
             DATEFORMAT = validateDateFormat(p.getProperty(P_DATEFORMAT));
             FILES_AMOUNT = validateFilesAmount(p.getProperty(P_FILES_AMOUNT));
             DISKIO_MODE = validateDiskioMode(p.getProperty(P_DISKIO_MODE));
+            DISKIO_ENGINE = validateDiskioEngine(p.getProperty(P_DISKIO_MODE));
             SYNC_LOCK_ENABLE = validateSyncLock(p.getProperty(P_SYNC_LOCK_ENABLE));
             SYNC_PERIOD = validateSyncPeriod(p.getProperty(P_SYNC_PERIOD));
+            SYNC_RATE = validateInt(p.getProperty(P_SYNC_RATE), "sync rate", SYNC_RATE_DEFAULT);
+            EXTENT_SIZE = validateInt(p.getProperty(P_EXTENT_SIZE), "extent size", EXTENT_SIZE_DEFAULT);
             RETRIEVE_QUEUE_SIZE = validateQueueSize(p.getProperty(P_RETRIEVE_QUEUE_SIZE));
             RETRIEVE_THREADS_AMOUNT = validateThreadsAmount(p.getProperty(P_RETRIEVE_THREADS_AMOUNT));
             // transport
@@ -209,10 +273,27 @@ public class Config {
             CLEANUP_TIMEOUT = validateInt(p.getProperty(P_CLEANUP_TIMEOUT), "cleanup timeout", CLEANUP_TIMEOUT_DEFAULT);
             CLEANUP_PROTECTION_THR = validateInt(p.getProperty(P_CLEANUP_PROTECTION_THR), "data cleanup threshold", CLEANUP_PROTECTION_THR_DEFAULT);
             IX_CLEANUP_PROTECTION_THR = validateInt(p.getProperty(P_IX_CLEANUP_PROTECTION_THR), "index cleanup threshold", IX_CLEANUP_PROTECTION_THR_DEFAULT);
-            HEAP_USE_THR_DATA = validatePercent(p.getProperty(P_HEAP_USE_THR_DATA), "heap data cleanup threshold", HEAP_USE_THR_DATA_DEFAULT);
-            HEAP_USE_THR_INDX = validatePercent(p.getProperty(P_HEAP_USE_THR_INDX), "heap index cleanup threshold", HEAP_USE_THR_INDX_DEFAULT);
-            HEAP_USE_THR_TEMP = validatePercent(p.getProperty(P_HEAP_USE_THR_TEMP), "heap temp cleanup threshold", HEAP_USE_THR_TEMP_DEFAULT);
-            HEAP_USE_THR_UNDO = validatePercent(p.getProperty(P_HEAP_USE_THR_UNDO), "heap undo cleanup threshold", HEAP_USE_THR_UNDO_DEFAULT);
+            // buffer pool
+            BUFFER_DATA_SIZE = validateInt(p.getProperty(P_BUFFER_DATA_SIZE), "data buffer size", BUFFER_DATA_SIZE_DEFAULT);
+            BUFFER_INDX_SIZE = validateInt(p.getProperty(P_BUFFER_INDX_SIZE), "index buffer size", BUFFER_INDX_SIZE_DEFAULT);
+            BUFFER_TEMP_SIZE = validateInt(p.getProperty(P_BUFFER_TEMP_SIZE), "temp buffer size", BUFFER_TEMP_SIZE_DEFAULT);
+            BUFFER_UNDO_SIZE = validateInt(p.getProperty(P_BUFFER_UNDO_SIZE), "undo buffer size", BUFFER_UNDO_SIZE_DEFAULT);
+            BUFFER_OFFHEAP_SIZE = validateInt(p.getProperty(P_BUFFER_OFFHEAP_SIZE), "off-heap buffer size", BUFFER_OFFHEAP_SIZE_DEFAULT);
+            // journal
+            JOURNAL_REDO_ENABLE = validateEnableFlag(p.getProperty(P_JOURNAL_REDO_ENABLE), "redo journal enable", JOURNAL_REDO_ENABLE_DEFAULT);
+            // commit
+            COMMIT_GROUP_ENABLE = validateEnableFlag(p.getProperty(P_COMMIT_GROUP_ENABLE), "group commit enable", COMMIT_GROUP_ENABLE_DEFAULT);
+            COMMIT_GROUP_WINDOW = validateInt(p.getProperty(P_COMMIT_GROUP_WINDOW), "group commit window", COMMIT_GROUP_WINDOW_DEFAULT);
+            COMMIT_GROUP_MAX = validateInt(p.getProperty(P_COMMIT_GROUP_MAX), "group commit max batch size", COMMIT_GROUP_MAX_DEFAULT);
+            // checksum
+            CHECKSUM_ENABLE = validateEnableFlag(p.getProperty(P_CHECKSUM_ENABLE), "frame checksum enable", CHECKSUM_ENABLE_DEFAULT);
+            SCRUB_ENABLE = validateEnableFlag(p.getProperty(P_SCRUB_ENABLE), "scrub enable", SCRUB_ENABLE_DEFAULT);
+            SCRUB_RATE = validateInt(p.getProperty(P_SCRUB_RATE), "scrub rate", SCRUB_RATE_DEFAULT);
+            SCRUB_PERIOD = validateInt(p.getProperty(P_SCRUB_PERIOD), "scrub period", SCRUB_PERIOD_DEFAULT);
+            // sql
+            SQL_PLAN_CACHE_SIZE = validateInt(p.getProperty(P_SQL_PLAN_CACHE_SIZE), "sql plan cache size", SQL_PLAN_CACHE_SIZE_DEFAULT);
+            HASH_JOIN_MEMORY = validateInt(p.getProperty(P_HASH_JOIN_MEMORY), "hash join memory", HASH_JOIN_MEMORY_DEFAULT);
+            HASH_GROUP_MEMORY = validateInt(p.getProperty(P_HASH_GROUP_MEMORY), "hash group memory", HASH_GROUP_MEMORY_DEFAULT);
         } else {
             logger.warn("use default configuration values");
             DB_PATH = DB_PATH_DEFAULT;
@@ -228,8 +309,11 @@ public class Config {
             DATEFORMAT = DATEFORMAT_DEFAULT;
             FILES_AMOUNT = FILES_AMOUNT_DEFAULT;
             DISKIO_MODE = DISKIO_MODE_DEFAULT;
+            DISKIO_ENGINE = DISKIO_ENGINE_DEFAULT;
             SYNC_LOCK_ENABLE = SYNC_LOCK_ENABLE_DEFAULT;
             SYNC_PERIOD = SYNC_PERIOD_DEFAULT;
+            SYNC_RATE = SYNC_RATE_DEFAULT;
+            EXTENT_SIZE = EXTENT_SIZE_DEFAULT;
             RETRIEVE_QUEUE_SIZE = RETRIEVE_QUEUE_SIZE_DEFAULT;
             RETRIEVE_THREADS_AMOUNT = RETRIEVE_THREADS_AMOUNT_DEFAULT;
             // transport
@@ -242,10 +326,27 @@ public class Config {
             CLEANUP_TIMEOUT = CLEANUP_TIMEOUT_DEFAULT;
             CLEANUP_PROTECTION_THR = CLEANUP_PROTECTION_THR_DEFAULT;
             IX_CLEANUP_PROTECTION_THR = IX_CLEANUP_PROTECTION_THR_DEFAULT;
-            HEAP_USE_THR_DATA = HEAP_USE_THR_DATA_DEFAULT;
-            HEAP_USE_THR_INDX = HEAP_USE_THR_INDX_DEFAULT;
-            HEAP_USE_THR_TEMP = HEAP_USE_THR_TEMP_DEFAULT;
-            HEAP_USE_THR_UNDO = HEAP_USE_THR_UNDO_DEFAULT;
+            // buffer pool
+            BUFFER_DATA_SIZE = BUFFER_DATA_SIZE_DEFAULT;
+            BUFFER_INDX_SIZE = BUFFER_INDX_SIZE_DEFAULT;
+            BUFFER_TEMP_SIZE = BUFFER_TEMP_SIZE_DEFAULT;
+            BUFFER_UNDO_SIZE = BUFFER_UNDO_SIZE_DEFAULT;
+            BUFFER_OFFHEAP_SIZE = BUFFER_OFFHEAP_SIZE_DEFAULT;
+            // journal
+            JOURNAL_REDO_ENABLE = JOURNAL_REDO_ENABLE_DEFAULT;
+            // commit
+            COMMIT_GROUP_ENABLE = COMMIT_GROUP_ENABLE_DEFAULT;
+            COMMIT_GROUP_WINDOW = COMMIT_GROUP_WINDOW_DEFAULT;
+            COMMIT_GROUP_MAX = COMMIT_GROUP_MAX_DEFAULT;
+            // checksum
+            CHECKSUM_ENABLE = CHECKSUM_ENABLE_DEFAULT;
+            SCRUB_ENABLE = SCRUB_ENABLE_DEFAULT;
+            SCRUB_RATE = SCRUB_RATE_DEFAULT;
+            SCRUB_PERIOD = SCRUB_PERIOD_DEFAULT;
+            // sql
+            SQL_PLAN_CACHE_SIZE = SQL_PLAN_CACHE_SIZE_DEFAULT;
+            HASH_JOIN_MEMORY = HASH_JOIN_MEMORY_DEFAULT;
+            HASH_GROUP_MEMORY = HASH_GROUP_MEMORY_DEFAULT;
         }
         System.setProperty("com.sun.management.jmxremote.port","8111");
         System.setProperty("com.sun.management.jmxremote.authenticate","false");
@@ -402,9 +503,9 @@ public class Config {
             logger.error("diskio mode is not valid - use default");
             return DISKIO_MODE_DEFAULT;
         }
-        if (mode.toUpperCase().equals("SYNC")) {
+        if (mode.toUpperCase().equals("SYNC") || mode.toUpperCase().equals("CHANNEL") || mode.toUpperCase().equals("MMAP")) {
             return "rws";
-        } else if (mode.toUpperCase().equals("ASYNC")) {
+        } else if (mode.toUpperCase().equals("ASYNC") || mode.toUpperCase().equals("CHANNEL_ASYNC") || mode.toUpperCase().equals("MMAP_ASYNC")) {
             return "rw";
         } else {
             logger.warn("diskio mode is not valid - use default");
@@ -412,6 +513,19 @@ public class Config {
         }
     }
 
+    private static int validateDiskioEngine(String mode) {
+        if (mode==null||mode.equals("")) {
+            return DISKIO_ENGINE_DEFAULT;
+        }
+        if (mode.toUpperCase().equals("CHANNEL") || mode.toUpperCase().equals("CHANNEL_ASYNC")) {
+            return FrameIO.ENGINE_CHANNEL;
+        }
+        if (mode.toUpperCase().equals("MMAP") || mode.toUpperCase().equals("MMAP_ASYNC")) {
+            return FrameIO.ENGINE_MMAP;
+        }
+        return DISKIO_ENGINE_DEFAULT;
+    }
+
     private static int validateSyncPeriod(String value) {
         try {
             int p = Integer.valueOf(value);
@@ -448,16 +562,4 @@ public class Config {
         return def;
     }
 
-    private static int validatePercent(String value, String description, int def) {
-        try {
-            int p = Integer.valueOf(value);
-            if (p > 0 && p <= 100) {
-                return p;
-            }
-        } catch(NumberFormatException e) {
-            logger.warn(description + " value is not valid - use default value");
-        }
-        return def;
-    }
-
 }
@@ -36,6 +36,7 @@ import su.interference.serialize.CustomSerializer;
 import javax.persistence.*;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -365,6 +366,17 @@ public class DataChunk implements Chunk {
         this.chunk = bsc.getBytes();
     }
 
+    //de-serialize chunk at the given position of frame buffer with already decoded header
+    public DataChunk (ByteBuffer bb, int pos, RowHeader h, Table t, Class c)  {
+        this.t = t;
+        this.class_= c;
+        this.header = h;
+        this.state = INIT_STATE;
+        this.chunk = new byte[h.getLen()];
+        bb.position(pos+h.getHeaderSize());
+        bb.get(this.chunk);
+    }
+
     //constructor for clone method - de-serialize chunk only without header
     public DataChunk (byte[] b, Table t, RowHeader h, DataChunk source) {
         this.chunk  = b;
@@ -406,7 +418,8 @@ public class DataChunk implements Chunk {
                     throw new InternalException();
                 }
                 if (t != null) {
-                    if (!t.getName().equals(c.getName())) {
+                    //result set tables of the same shape share one class
+                    if (!t.getName().equals(c.getName()) && t.getTableClass() != c) {
                         throw new InternalException();
                     }
                 }
@@ -464,7 +477,8 @@ public class DataChunk implements Chunk {
                     throw new InternalException();
                 }
                 if (t != null) {
-                    if (!t.getName().equals(c.getName())) {
+                    //result set tables of the same shape share one class
+                    if (!t.getName().equals(c.getName()) && t.getTableClass() != c) {
                         throw new InternalException();
                     }
                 }
@@ -745,12 +759,12 @@ public class DataChunk implements Chunk {
         }
 
         final DataChunk dc = new DataChunk(uc, s);
-        final int p = ub.getDataFrame().insertChunk(dc, s, true, llt);
+        final int p = ub.insertChunk(dc, s, true, llt);
         if (p == 0) {
             final Table t = Instance.getInstance().getTableByName(UndoChunk.class.getName());
             final FrameData nb = t.createNewFrame(ub, ubw, ub.getFile(), 0, 0, false, false, false, s, llt);
             s.getTransaction().setNewLB(ub, nb);
-            nb.getDataFrame().insertChunk(dc, s, true, llt);
+            nb.insertChunk(dc, s, true, llt);
             dc.uframe = nb;
         } else {
             dc.uframe = ub;
@@ -29,7 +29,6 @@ import su.interference.persistent.Table;
 import su.interference.persistent.Session;
 import su.interference.persistent.UndoChunk;
 import su.interference.exception.*;
-import su.interference.serialize.ByteString;
 
 import java.util.*;
 
@@ -51,39 +50,9 @@ public class DataFrame extends Frame {
     public DataFrame(int file, long pointer, int size, FrameData bd, Table t, Class c, List<FrameData> uframes) throws Exception {
         super(null, file, pointer, size, bd, t, c);
 
-        Map<Integer, UndoChunk> ucs = new HashMap<>();
-        for (FrameData uframe : uframes) {
-            final DataFrame uf = uframe.getDataFrame();
-            for (Chunk udc : uf.getChunks()) {
-                UndoChunk uc = (UndoChunk) udc.getEntity();
-                final long frameId = file + pointer;
-                final long frameId_ = uc.getFile() + uc.getFrame();
-                if (frameId == frameId_) {
-                    ucs.put(uc.getPtr(), uc);
-                }
-            }
-        }
-
-        int ptr = FRAME_HEADER_SIZE;
-        final ByteString bs = new ByteString(this.b);
-        while (ptr<this.b.length) {
-            if (this.b.length>=ptr+ROW_HEADER_SIZE) {
-                final RowHeader h = new RowHeader(bs.substring(ptr, ptr+ROW_HEADER_SIZE), this.getFile(), this.getPointer());
-                if ((h.getPtr()>0)&&(h.getLen()>0)) {
-                    final DataChunk dc = new DataChunk(bs.substring(ptr, ptr+ROW_HEADER_SIZE+h.getLen()), this.getFile(), this.getPointer(), ROW_HEADER_SIZE, this.getDataObject(), this.getEntityClass());
-                    if (ucs.get(dc.getHeader().getPtr()) != null) {
-                        dc.setUndoChunk(ucs.get(dc.getHeader().getPtr()));
-                    }
-                    data.add(dc);
-                    ptr = ptr + ROW_HEADER_SIZE + h.getLen();
-                } else {
-                    ptr = this.b.length;
-                }
-            } else {
-                ptr = this.b.length;
-            }
-        }
-        this.b = null; //throw bytes to GC
+        //rows and undo chunks of running transactions are decoded on demand
+        data.load(this.buf, FRAME_HEADER_SIZE, ROW_HEADER_SIZE, uframes);
+        this.buf = null;
     }
 
     //constructor for replication service - data frames
@@ -91,24 +60,24 @@ public class DataFrame extends Frame {
         super(b, file, pointer, t);
 
         int ptr = FRAME_HEADER_SIZE;
-        final ByteString bs = new ByteString(this.b);
+        final int length = this.buf.capacity();
 
-        while (ptr<this.b.length) {
-            if (this.b.length>=ptr+ROW_HEADER_SIZE) {
-                final RowHeader h = new RowHeader(bs.substring(ptr, ptr+ROW_HEADER_SIZE), this.getFile(), this.getPointer());
+        while (ptr<length) {
+            if (length>=ptr+ROW_HEADER_SIZE) {
+                final RowHeader h = new RowHeader(this.buf, ptr, ROW_HEADER_SIZE, this.getFile(), this.getPointer());
                 if ((h.getPtr()>0)&&(h.getLen()>0)) {
-                    final DataChunk dc = new DataChunk(bs.substring(ptr, ptr+ROW_HEADER_SIZE+h.getLen()), this.getFile(), this.getPointer(), ROW_HEADER_SIZE, this.getDataObject(), this.getEntityClass());
+                    final DataChunk dc = new DataChunk(this.buf, ptr, h, this.getDataObject(), this.getEntityClass());
                     dc.getHeader().setTran(dc.getHeader().getTran());
                     data.add(dc);
                     ptr = ptr + ROW_HEADER_SIZE + h.getLen();
                 } else {
-                    ptr = this.b.length;
+                    ptr = length;
                 }
             } else {
-                ptr = this.b.length;
+                ptr = length;
             }
         }
-        this.b = null; //throw bytes to GC
+        this.buf = null; //throw bytes to GC
     }
 
     // constructor for replication service - undo frames
@@ -120,13 +89,13 @@ public class DataFrame extends Frame {
         }
 
         int ptr = FRAME_HEADER_SIZE;
-        final ByteString bs = new ByteString(this.b);
-        while (ptr<this.b.length) {
-            if (this.b.length>=ptr+ROW_HEADER_SIZE) {
-                final RowHeader h = new RowHeader(bs.substring(ptr, ptr+ROW_HEADER_SIZE), this.getFile(), this.getPointer());
+        final int length = this.buf.capacity();
+        while (ptr<length) {
+            if (length>=ptr+ROW_HEADER_SIZE) {
+                final RowHeader h = new RowHeader(this.buf, ptr, ROW_HEADER_SIZE, this.getFile(), this.getPointer());
                 if ((h.getPtr()>0)&&(h.getLen()>0)) {
                     //replace framepointers
-                    final DataChunk dc = new DataChunk(bs.substring(ptr, ptr+ROW_HEADER_SIZE+h.getLen()), this.getFile(), this.getPointer(), ROW_HEADER_SIZE, this.getDataObject(), this.getEntityClass());
+                    final DataChunk dc = new DataChunk(this.buf, ptr, h, this.getDataObject(), this.getEntityClass());
                     final UndoChunk uc = (UndoChunk)dc.getEntity();
                     final long allocId = imap.get(uc.getFile() + uc.getFrame());
                     final long bptr = hmap.get(allocId) != null ? hmap.get(allocId) : Instance.getInstance().getFrameByAllocId(allocId).getFrameId();
@@ -136,13 +105,13 @@ public class DataFrame extends Frame {
                     data.add(dc);
                     ptr = ptr + ROW_HEADER_SIZE + h.getLen();
                 } else {
-                    ptr = this.b.length;
+                    ptr = length;
                 }
             } else {
-                ptr = this.b.length;
+                ptr = length;
             }
         }
-        this.b = null; //throw bytes to GC
+        this.buf = null; //throw bytes to GC
     }
 
     // allocate map for undo frames
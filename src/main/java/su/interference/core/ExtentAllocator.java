@@ -0,0 +1,157 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import su.interference.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Space of datafile is handed out from the range, which is preallocated ahead of demand:
+ * when the free range falls below half of extent, next zero-filled extent is written
+ * to the end of file in the background. Allocation extends file synchronously
+ * only if preallocation does not keep up with it.
+ * Space is claimed by preallocation (one zero block at a time) and by synchronous
+ * extension without locks, claimed ranges become ready in order of claims.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class ExtentAllocator {
+
+    private static final int ZERO_BLOCK_SIZE = 1048576;
+    private static final byte[] zeros = new byte[ZERO_BLOCK_SIZE];
+    private static final ExecutorService pool = Executors.newSingleThreadExecutor(r -> {
+        final Thread t = new Thread(r, "interference-extent-thread");
+        t.setDaemon(true);
+        return t;
+    });
+    private final String name;
+    private final FrameIO io;
+    private final long extent;
+    //end of space which is ready for allocation
+    private final AtomicLong limit;
+    //end of space which is ready or claimed by preallocation or extension
+    private final AtomicLong claimed;
+    private volatile boolean closed;
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+    private final static Logger logger = LoggerFactory.getLogger(ExtentAllocator.class);
+
+    public ExtentAllocator(String name, FrameIO io, long extent) throws IOException {
+        this.name = name;
+        this.io = io;
+        this.extent = extent;
+        this.limit = new AtomicLong(io.length());
+        this.claimed = new AtomicLong(this.limit.get());
+    }
+
+    //must be called under monitor of datafile before allocation of space up to end
+    public void reserve(long end) throws IOException {
+        if (end > limit.get()) {
+            Metrics.get("extentWaits").put();
+            extend(end);
+        }
+        if (limit.get() - end < extent / 2 && pending.compareAndSet(false, true)) {
+            pool.execute(this::preallocate);
+        }
+    }
+
+    //space which is not claimed yet is extended without zero-fill,
+    //space claimed by running preallocation becomes ready after write of current zero block
+    private void extend(long end) throws IOException {
+        while (true) {
+            final long from = claimed.get();
+            if (from >= end) {
+                break;
+            }
+            final long to = Math.max(end, from + extent);
+            if (claimed.compareAndSet(from, to)) {
+                try {
+                    final long length = io.length();
+                    if (to > length) {
+                        io.extend(to - length);
+                    }
+                } finally {
+                    publish(from, to);
+                }
+                break;
+            }
+        }
+        while (limit.get() < end) {
+            Thread.yield();
+        }
+    }
+
+    //ranges are claimed in order, so range is published after all previously claimed ranges
+    private void publish(long from, long to) {
+        while (limit.get() < from) {
+            Thread.yield();
+        }
+        limit.accumulateAndGet(to, Math::max);
+    }
+
+    private void preallocate() {
+        try {
+            final long end = claimed.get() + extent;
+            while (!closed) {
+                final long ptr = claimed.get();
+                if (ptr >= end) {
+                    Metrics.get("extentPreallocations").put();
+                    break;
+                }
+                final int len = (int) Math.min(ZERO_BLOCK_SIZE, end - ptr);
+                if (claimed.compareAndSet(ptr, ptr + len)) {
+                    try {
+                        io.write(ptr, len == ZERO_BLOCK_SIZE ? zeros : Arrays.copyOf(zeros, len));
+                    } finally {
+                        publish(ptr, ptr + len);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("preallocation of extent for " + name + " failed", e);
+        } finally {
+            pending.set(false);
+        }
+    }
+
+    //zero block which is written by running preallocation is completed before file will be closed
+    public void close() {
+        closed = true;
+        while (limit.get() < claimed.get()) {
+            Thread.yield();
+        }
+        logger.debug("extent allocator of " + name + " closed with limit " + limit.get());
+    }
+
+}
@@ -28,8 +28,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import su.interference.persistent.*;
 import su.interference.exception.*;
-import su.interference.serialize.ByteString;
+import su.interference.metrics.Metrics;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -58,7 +59,7 @@ public class Frame implements Comparable {
     private volatile long res06;
     private volatile long res07;
     private volatile long res08;
-    private volatile int res09;
+    private volatile int checksum;
     //non-persistent
     private final int frameSize;
 
@@ -72,7 +73,8 @@ public class Frame implements Comparable {
 
     protected final ChunkMap data = new ChunkMap(this);
     private final ConcurrentHashMap<Long, byte[]> snap = new ConcurrentHashMap<Long, byte[]>();
-    protected byte[] b;
+    private final ConcurrentHashMap<Long, ValueSet> snapKeys = new ConcurrentHashMap<Long, ValueSet>();
+    protected ByteBuffer buf;
 
     private FrameData frameData;
     private Table dataObject;
@@ -143,28 +145,13 @@ public class Frame implements Comparable {
         if (b.length<MIN_FRAME_SIZE) {
             throw new InternalException();
         }
-        this.b = b;
+        this.buf = ByteBuffer.wrap(b);
         this.frameSize = b.length;
-        final ByteString bs = new ByteString(b);
-        this.file = bs.getIntFromBytes(0);
-        this.pointer = bs.getLongFromBytes(4);
-        this.objectId = bs.getIntFromBytes(12);
-        this.type = bs.getIntFromBytes(16);
-        this.cptr = bs.getIntFromBytes(20);
-        this.bytesAmount = bs.getIntFromBytes(24);
-        this.rowCntr = bs.getIntFromBytes(28);
-        this.sptr  = bs.getIntFromBytes(32);
-        this.allocFile = bs.getIntFromBytes(36);
-        this.allocPointer = bs.getLongFromBytes(40);
-        this.res01 = bs.getIntFromBytes(48);
-        this.res02 = bs.getIntFromBytes(52);
-        this.res03 = bs.getIntFromBytes(56);
-        this.res04 = bs.getIntFromBytes(60);
-        this.res05 = bs.getIntFromBytes(64);
-        this.res06 = bs.getLongFromBytes(68);
-        this.res07 = bs.getLongFromBytes(76);
-        this.res08 = bs.getLongFromBytes(84);
-        this.res09 = bs.getIntFromBytes(92);
+        this.file = buf.getInt(0);
+        this.pointer = buf.getLong(4);
+        this.allocFile = buf.getInt(36);
+        this.allocPointer = buf.getLong(40);
+        decodeHeader();
 
         if ((this.file==0)&&(this.pointer==0)) {
             throw new EmptyFrameHeaderFound();
@@ -175,7 +162,7 @@ public class Frame implements Comparable {
         if (this.bytesAmount<FRAME_HEADER_SIZE) {
             throw new InvalidFrameHeader();
         }
-        if (this.b.length<this.bytesAmount) {
+        if (this.frameSize<this.bytesAmount) {
             throw new InvalidFrame();
         }
     }
@@ -189,28 +176,13 @@ public class Frame implements Comparable {
         if (b.length<MIN_FRAME_SIZE) {
             throw new InternalException();
         }
-        this.b = b;
+        this.buf = ByteBuffer.wrap(b);
         this.frameSize = b.length;
         this.file = file;
         this.pointer = pointer;
-        final ByteString bs = new ByteString(b);
-        this.objectId = bs.getIntFromBytes(12);
-        this.type = bs.getIntFromBytes(16);
-        this.cptr = bs.getIntFromBytes(20);
-        this.bytesAmount = bs.getIntFromBytes(24);
-        this.rowCntr = bs.getIntFromBytes(28);
-        this.sptr  = bs.getIntFromBytes(32);
-        this.allocFile = bs.getIntFromBytes(36);
-        this.allocPointer = bs.getLongFromBytes(40);
-        this.res01 = bs.getIntFromBytes(48);
-        this.res02 = bs.getIntFromBytes(52);
-        this.res03 = bs.getIntFromBytes(56);
-        this.res04 = bs.getIntFromBytes(60);
-        this.res05 = bs.getIntFromBytes(64);
-        this.res06 = bs.getLongFromBytes(68);
-        this.res07 = bs.getLongFromBytes(76);
-        this.res08 = bs.getLongFromBytes(84);
-        this.res09 = bs.getIntFromBytes(92);
+        this.allocFile = buf.getInt(36);
+        this.allocPointer = buf.getLong(40);
+        decodeHeader();
 
         if ((this.file==0)&&(this.pointer==0)) {
             throw new EmptyFrameHeaderFound();
@@ -221,7 +193,7 @@ public class Frame implements Comparable {
         if (this.bytesAmount<FRAME_HEADER_SIZE) {
             throw new InvalidFrameHeader();
         }
-        if (this.b.length<this.bytesAmount) {
+        if (this.frameSize<this.bytesAmount) {
             throw new InvalidFrame();
         }
     }
@@ -233,45 +205,39 @@ public class Frame implements Comparable {
             this.frameData = bd;
             this.dataObject = dataObject==null?bd.getDataObject():dataObject;
         }
-        if (bb==null) {
+        final byte[] cached = bb == null && bd != null ? OffHeapFrameCache.getCache().take(bd.getFrameId()) : null;
+        if (cached != null) {
+            this.buf = ByteBuffer.wrap(cached);
+        } else if (bb==null) {
+            //buffer may be a view of mapped region of datafile (diskio.mode=mmap)
             final DataFile df = Storage.getStorage().getDataFileById(file);
-            this.b = df.readData(pointer, bd==null?size:bd.getSize());
+            this.buf = df.readBuffer(pointer, bd==null?size:bd.getSize());
         } else {
-            this.b = bb;
+            this.buf = ByteBuffer.wrap(bb);
         }
 //        this.dataObject = t;
-        if (this.b.length<FRAME_HEADER_SIZE) {
+        if (this.buf.capacity()<FRAME_HEADER_SIZE) {
             throw new InvalidFrameHeader();
         }
-        if (this.b.length<MIN_FRAME_SIZE) {
+        if (this.buf.capacity()<MIN_FRAME_SIZE) {
             throw new InternalException();
         }
-        this.frameSize = b.length;
-        final ByteString bs = new ByteString(b);
-        this.file = bs.getIntFromBytes(0);
-        this.pointer = bs.getLongFromBytes(4);
-        this.objectId = bs.getIntFromBytes(12);
-        this.type = bs.getIntFromBytes(16);
-        this.cptr = bs.getIntFromBytes(20);
-        this.bytesAmount = bs.getIntFromBytes(24);
-        this.rowCntr = bs.getIntFromBytes(28);
-        this.sptr  = bs.getIntFromBytes(32);
-        this.allocFile = bs.getIntFromBytes(36);
-        this.allocPointer = bs.getLongFromBytes(40);
-        this.res01 = bs.getIntFromBytes(48);
-        this.res02 = bs.getIntFromBytes(52);
-        this.res03 = bs.getIntFromBytes(56);
-        this.res04 = bs.getIntFromBytes(60);
-        this.res05 = bs.getIntFromBytes(64);
-        this.res06 = bs.getLongFromBytes(68);
-        this.res07 = bs.getLongFromBytes(76);
-        this.res08 = bs.getLongFromBytes(84);
-        this.res09 = bs.getIntFromBytes(92);
+        this.frameSize = buf.capacity();
+        this.file = buf.getInt(0);
+        this.pointer = buf.getLong(4);
+        this.allocFile = buf.getInt(36);
+        this.allocPointer = buf.getLong(40);
+        decodeHeader();
 
         if ((this.file==0)&&(this.pointer==0)) {
             logger.error("empty frame header frameId = " + (bd == null ? "N/A" : bd.getFrameId()) + " allocId = " + (bd == null ? "N/A" : bd.getAllocId()));
             throw new EmptyFrameHeaderFound();
         }
+        if (Config.getConfig().CHECKSUM_ENABLE && !FrameChecksum.verify(this.buf)) {
+            logger.error("invalid frame checksum frameId = " + (bd == null ? "N/A" : bd.getFrameId()) + " allocId = " + (bd == null ? "N/A" : bd.getAllocId()));
+            Metrics.get("frameChecksumErrors").put();
+            throw new InvalidFrame();
+        }
         if ((this.file!=file)||(this.pointer!=pointer)) {
             logger.error("invalid frame header frameId = " + (bd == null ? "N/A" : bd.getFrameId()) + " allocId = " + (bd == null ? "N/A" : bd.getAllocId()));
             throw new InvalidFrameHeader();
@@ -282,14 +248,36 @@ public class Frame implements Comparable {
         if (this.bytesAmount<FRAME_HEADER_SIZE) {
             throw new InvalidFrameHeader();
         }
-        if (this.b.length<this.bytesAmount) {
+        if (this.frameSize<this.bytesAmount) {
             throw new InvalidFrame();
         }
     }
 
+    //decodes header fields except of frame and alloc pointers from the source buffer
+    private void decodeHeader() {
+        this.objectId = buf.getInt(12);
+        this.type = buf.getInt(16);
+        this.cptr = buf.getInt(20);
+        this.bytesAmount = buf.getInt(24);
+        this.rowCntr = buf.getInt(28);
+        this.sptr  = buf.getInt(32);
+        this.res01 = buf.getInt(48);
+        this.res02 = buf.getInt(52);
+        this.res03 = buf.getInt(56);
+        this.res04 = buf.getInt(60);
+        this.res05 = buf.getInt(64);
+        this.res06 = buf.getLong(68);
+        this.res07 = buf.getLong(76);
+        this.res08 = buf.getLong(84);
+        this.checksum = buf.getInt(FrameChecksum.CHECKSUM_OFFSET);
+    }
+
+    //chunks and frame header are written directly into the result array, header is written last
+    //because bytes amount is known after all chunks are written
     public synchronized byte[] getFrame() throws InvalidFrame {
-        final ByteString res = new ByteString();
-        final ByteString res2 = new ByteString();
+        final byte[] res = new byte[getFrameSize()];
+        final ByteBuffer bb = ByteBuffer.wrap(res);
+        bb.position(FRAME_HEADER_SIZE);
         int used = FRAME_HEADER_SIZE;
         final long sync = LLT.getSyncId();
 
@@ -297,62 +285,104 @@ public class Frame implements Comparable {
             for (Chunk c : data.getChunks()) {
                 final byte[] chunk_ = c.getChunk();
                 c.getHeader().setLen(chunk_.length);
-                res2.append(c.getHeader().getHeader());
-                res2.append(chunk_);
                 used = used + c.getBytesAmount();
+                if (used <= res.length) {
+                    c.getHeader().putHeader(bb);
+                    bb.put(chunk_);
+                }
             }
         } else {
             if (sync==0) {
                 throw new InvalidFrame();
             }
+            final List<Long> snaps = new ArrayList<>();
+            for (Map.Entry<Long, byte[]> entry : snap.entrySet()) {
+                if (entry.getKey() > sync) {
+                    snaps.add(entry.getKey());
+                }
+            }
+            //rows of index frame are stored in key order (see ChunkMap.load), so snaps are merged by key
+            final boolean merge = this instanceof IndexFrame;
+            if (merge) {
+                snaps.sort((k1, k2) -> snapKeys.get(k1).compareTo(snapKeys.get(k2)));
+            }
+            int i = 0;
             for (Chunk c : data.getChunks()) {
                 if (c.getHeader().getLltId() < sync) {
+                    while (merge && i < snaps.size() && snapKeys.get(snaps.get(i)).compareTo(c.getDcs()) < 0) {
+                        used = putSnap(bb, snap.get(snaps.get(i)), used);
+                        i++;
+                    }
                     final byte[] chunk_ = c.getChunk();
 //                    c.getHeader().setLen(chunk_.length);
-                    res2.append(c.getHeader().getHeader());
-                    res2.append(chunk_);
                     used = used + c.getBytesAmount();
+                    if (used <= res.length) {
+                        c.getHeader().putHeader(bb);
+                        bb.put(chunk_);
+                    }
                 }
             }
-            for (Map.Entry<Long, byte[]> entry : snap.entrySet()) {
-                if (entry.getKey() > sync) {
-                    res2.append(entry.getValue());
-                    used = used + entry.getValue().length;
-                }
+            for (; i < snaps.size(); i++) {
+                used = putSnap(bb, snap.get(snaps.get(i)), used);
             }
         }
 
         this.bytesAmount = used;
 
-        res.addBytesFromInt(this.file);
-        res.addBytesFromLong(this.pointer);
-        res.addBytesFromInt(this.objectId);
-        res.addBytesFromInt(this.type);
-        res.addBytesFromInt(this.cptr);
-        res.addBytesFromInt(this.bytesAmount);
-        res.addBytesFromInt(this.rowCntr);
-        res.addBytesFromInt(this.sptr);
-        res.addBytesFromInt(this.allocFile);
-        res.addBytesFromLong(this.allocPointer);
-        res.addBytesFromInt(this.res01);
-        res.addBytesFromInt(this.res02);
-        res.addBytesFromInt(this.res03);
-        res.addBytesFromInt(this.res04);
-        res.addBytesFromInt(this.res05);
-        res.addBytesFromLong(this.res06);
-        res.addBytesFromLong(this.res07);
-        res.addBytesFromLong(this.res08);
-        res.addBytesFromInt(this.res09);
-        res.append(res2.getBytes());
-        
         if (used > getFrameSize()) {
             logger.error("Build snapshot for "+this.getClass().getName()+":"+this.getObjectId()+":"+this.getPtr()+" with used length="+used+" failed, not enough size for expected framesize="+getFrameSize()+"");
             throw new InvalidFrame();
         }
-        if (used < getFrameSize()) {
-            res.append(new byte[getFrameSize()-used]);
+
+        bb.position(0);
+        bb.putInt(this.file);
+        bb.putLong(this.pointer);
+        bb.putInt(this.objectId);
+        bb.putInt(this.type);
+        bb.putInt(this.cptr);
+        bb.putInt(this.bytesAmount);
+        bb.putInt(this.rowCntr);
+        bb.putInt(this.sptr);
+        bb.putInt(this.allocFile);
+        bb.putLong(this.allocPointer);
+        bb.putInt(this.res01);
+        bb.putInt(this.res02);
+        bb.putInt(this.res03);
+        bb.putInt(this.res04);
+        bb.putInt(this.res05);
+        bb.putLong(this.res06);
+        bb.putLong(this.res07);
+        bb.putLong(this.res08);
+        bb.putInt(0);
+        if (Config.getConfig().CHECKSUM_ENABLE) {
+            FrameChecksum.put(res);
         }
-        return res.getBytes();
+        return res;
+    }
+
+    private static int putSnap(ByteBuffer bb, byte[] b, int used) {
+        if (used + b.length <= bb.capacity()) {
+            bb.put(b);
+        }
+        return used + b.length;
+    }
+
+    //called under frame lock
+    private void addSnap(LLT llt, Chunk c) {
+        if (this instanceof IndexFrame) {
+            snapKeys.put(llt.getId(), c.getDcs());
+        }
+        snap.put(llt.getId(), getSnap(c));
+    }
+
+    //row image (header and chunk) for snapshot of frame
+    private static byte[] getSnap(Chunk c) {
+        final byte[] header_ = c.getHeader().getHeader();
+        final byte[] chunk_ = c.getChunk();
+        final byte[] res = new byte[header_.length + chunk_.length];
+        System.arraycopy(header_, 0, res, 0, header_.length);
+        System.arraycopy(chunk_, 0, res, header_.length, chunk_.length);
+        return res;
     }
 
     public boolean equals (Frame bl) {
@@ -378,6 +408,7 @@ public class Frame implements Comparable {
         for (Map.Entry<Long, byte[]> entry : snap.entrySet()) {
             if (entry.getKey() == id) {
                 snap.remove(entry.getKey());
+                snapKeys.remove(entry.getKey());
             }
         }
     }
@@ -432,10 +463,7 @@ public class Frame implements Comparable {
         final Transaction tran = s.getTransaction();
         final long sync = LLT.getSyncId();
         if (chunk.getHeader().getLltId() < sync) {
-            final ByteString sc = new ByteString();
-            sc.append(chunk.getHeader().getHeader());
-            sc.append(chunk.getChunk());
-            if (!Config.getConfig().SYNC_LOCK_ENABLE) { snap.put(llt.getId(), sc.getBytes()); }
+            if (!Config.getConfig().SYNC_LOCK_ENABLE) { addSnap(llt, chunk); }
             chunk.getHeader().setLltId(llt==null?0:llt.getId());
         }
         if (llt!=null) { llt.add(this); }
@@ -464,10 +492,7 @@ public class Frame implements Comparable {
         }
         final Header header = chunk.getHeader();
         if (header.getLltId() < sync) {
-            final ByteString sc = new ByteString();
-            sc.append(chunk.getHeader().getHeader());
-            sc.append(chunk.getChunk());
-            if (!Config.getConfig().SYNC_LOCK_ENABLE) { snap.put(llt.getId(), sc.getBytes()); }
+            if (!Config.getConfig().SYNC_LOCK_ENABLE) { addSnap(llt, chunk); }
             header.setLltId(llt==null?0:llt.getId());
         }
         header.setTran(tran);
@@ -496,10 +521,7 @@ public class Frame implements Comparable {
             }
         } else {
             if (chunk.getHeader().getLltId() < sync) {
-                final ByteString sc = new ByteString();
-                sc.append(chunk.getHeader().getHeader());
-                sc.append(chunk.getChunk());
-                if (!Config.getConfig().SYNC_LOCK_ENABLE) { snap.put(llt.getId(), sc.getBytes()); }
+                if (!Config.getConfig().SYNC_LOCK_ENABLE) { addSnap(llt, chunk); }
                 chunk.getHeader().setLltId(llt == null ? 0 : llt.getId());
             }
             if (llt != null) { llt.add(this); }
@@ -742,5 +764,10 @@ public class Frame implements Comparable {
         this.res08 = res08;
     }
 
+    //checksum of frame, which has been read from disk
+    public int getChecksum() {
+        return checksum;
+    }
+
 
 }
@@ -0,0 +1,154 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.core;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C checksum of frame, stored in the frame header (res09).
+ * Checksum is calculated over used bytes of frame (bytes amount) with zeroed
+ * checksum field, so frame may be verified by the first bytes only (system frame).
+ * Zero value means frame without checksum (written by previous versions).
+ * java.util.zip.CRC32C is used if available (Java 9+), otherwise the table
+ * implementation of the same polynomial, so checksums do not depend on JVM.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class FrameChecksum {
+
+    public static final int CHECKSUM_OFFSET = 92;
+    private static final int BYTES_AMOUNT_OFFSET = 24;
+    private static final byte[] ZERO = new byte[4];
+    private static final Supplier<Checksum> factory = factory();
+    private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[4096]);
+
+    public static int get(byte[] b) {
+        final int amount = ByteBuffer.wrap(b).getInt(BYTES_AMOUNT_OFFSET);
+        final Checksum crc = factory.get();
+        crc.update(b, 0, CHECKSUM_OFFSET);
+        crc.update(ZERO, 0, ZERO.length);
+        crc.update(b, CHECKSUM_OFFSET + 4, amount - CHECKSUM_OFFSET - 4);
+        return (int) crc.getValue();
+    }
+
+    //calculates and writes checksum to frame header
+    public static void put(byte[] b) {
+        ByteBuffer.wrap(b).putInt(CHECKSUM_OFFSET, get(b));
+    }
+
+    //buffer may be a view of mapped region of datafile
+    public static boolean verify(ByteBuffer bb) {
+        final int stored = bb.getInt(CHECKSUM_OFFSET);
+        if (stored == 0) {
+            return true;
+        }
+        final int amount = bb.getInt(BYTES_AMOUNT_OFFSET);
+        if (amount < Frame.FRAME_HEADER_SIZE || amount > bb.capacity()) {
+            return false;
+        }
+        final Checksum crc = factory.get();
+        if (bb.hasArray()) {
+            final byte[] b = bb.array();
+            final int off = bb.arrayOffset();
+            crc.update(b, off, CHECKSUM_OFFSET);
+            crc.update(ZERO, 0, ZERO.length);
+            crc.update(b, off + CHECKSUM_OFFSET + 4, amount - CHECKSUM_OFFSET - 4);
+        } else {
+            final byte[] b = scratch.get();
+            final ByteBuffer src = bb.duplicate();
+            src.clear();
+            src.limit(amount);
+            while (src.hasRemaining()) {
+                final int pos = src.position();
+                final int len = Math.min(b.length, src.remaining());
+                src.get(b, 0, len);
+                if (pos <= CHECKSUM_OFFSET && pos + len >= CHECKSUM_OFFSET + 4) {
+                    System.arraycopy(ZERO, 0, b, CHECKSUM_OFFSET - pos, ZERO.length);
+                }
+                crc.update(b, 0, len);
+            }
+        }
+        return (int) crc.getValue() == stored;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Checksum> factory() {
+        try {
+            final Constructor<? extends Checksum> c = ((Class<? extends Checksum>) Class.forName("java.util.zip.CRC32C")).getDeclaredConstructor();
+            c.newInstance();
+            return () -> {
+                try {
+                    return c.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        } catch (ReflectiveOperationException e) {
+            return CRC32C::new;
+        }
+    }
+
+    //CRC-32C (Castagnoli), reflected polynomial 0x82F63B78
+    private static class CRC32C implements Checksum {
+        private static final int[] table = new int[256];
+        private int crc = 0xFFFFFFFF;
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                int r = i;
+                for (int k = 0; k < 8; k++) {
+                    r = (r & 1) != 0 ? (r >>> 1) ^ 0x82F63B78 : r >>> 1;
+                }
+                table[i] = r;
+            }
+        }
+
+        public void update(int b) {
+            crc = (crc >>> 8) ^ table[(crc ^ b) & 0xFF];
+        }
+
+        public void update(byte[] b, int off, int len) {
+            int c = crc;
+            for (int i = off; i < off + len; i++) {
+                c = (c >>> 8) ^ table[(c ^ b[i]) & 0xFF];
+            }
+            crc = c;
+        }
+
+        public long getValue() {
+            return (~crc) & 0xFFFFFFFFL;
+        }
+
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
+
+}
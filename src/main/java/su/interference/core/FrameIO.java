@@ -0,0 +1,55 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+
+package su.interference.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Low-level positional frame I/O of single datafile.
+ * Implementations are selected by diskio.mode parameter.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public interface FrameIO {
+
+    int ENGINE_RAF = 1;
+    int ENGINE_CHANNEL = 2;
+    int ENGINE_MMAP = 3;
+
+    byte[] read(long ptr, int size) throws IOException;
+    ByteBuffer readBuffer(long ptr, int size) throws IOException;
+    void write(long ptr, byte[] b) throws IOException;
+    //writes contiguous frames starting at ptr by single operation
+    void write(long ptr, byte[][] b) throws IOException;
+    long length() throws IOException;
+    void extend(long size) throws IOException;
+    void force() throws IOException;
+    void close() throws IOException;
+
+}
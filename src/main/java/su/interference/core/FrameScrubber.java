@@ -0,0 +1,127 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import su.interference.metrics.Metrics;
+import su.interference.persistent.DataFile;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Low-priority process, which reads datafiles sequentially with limited rate
+ * and reports frames with invalid checksum.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class FrameScrubber implements Runnable, ManagedProcess {
+    private volatile boolean f = true;
+    CountDownLatch latch;
+    private final static Logger logger = LoggerFactory.getLogger(FrameScrubber.class);
+
+    public void run () {
+        Thread.currentThread().setName("interference-scrub-thread-"+Thread.currentThread().getId());
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        while (f) {
+            latch = new CountDownLatch(1);
+            try {
+                if (Config.getConfig().SCRUB_ENABLE && Config.getConfig().CHECKSUM_ENABLE) {
+                    scrub();
+                }
+            } catch(Exception e) {
+                logger.error("exception occured during scrub process", e);
+            }
+
+            try {
+                //period may be long, stop must not wait for it
+                long wait = Config.getConfig().SCRUB_PERIOD;
+                while (f && wait > 0) {
+                    Thread.sleep(Math.min(wait, 1000));
+                    wait = wait - 1000;
+                }
+            } catch (InterruptedException e) {
+                logger.error("exception occured", e);
+            }
+            latch.countDown();
+        }
+    }
+
+    public void stop() throws InterruptedException{
+        f = false;
+        if (latch != null) {
+            latch.await();
+        }
+    }
+
+    private void scrub() throws Exception {
+        final RateLimiter limiter = new RateLimiter(Config.getConfig().SCRUB_RATE * 1048576L);
+        final List<DataFile> files = new ArrayList<>(Storage.getStorage().getFiles().values());
+        int frames = 0;
+        int bad = 0;
+        for (DataFile df : files) {
+            final int size = df.getType() == Storage.INDXFILE_TYPEID ? Config.getConfig().FRAMESIZE2 : Config.getConfig().FRAMESIZE;
+            //first frame of datafile is the system frame
+            long ptr = Config.getConfig().FRAMESIZE;
+            while (f && ptr + size <= df.length()) {
+                limiter.acquire(size);
+                if (!verify(df, ptr, size)) {
+                    //frame may be written concurrently, check again while writes to datafile are locked
+                    final Lock lock = df.getWriteLock().writeLock();
+                    lock.lock();
+                    try {
+                        if (!verify(df, ptr, size)) {
+                            logger.error("invalid frame checksum in datafile " + df.getFileName() + " frameId = " + (ptr + df.getFileId()));
+                            Metrics.get("scrubBadFrames").put();
+                            bad++;
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                Metrics.get("scrubFrames").put();
+                frames++;
+                ptr = ptr + size;
+            }
+        }
+        logger.info("scrub procedure completed, " + frames + " frames checked, " + bad + " frames with invalid checksum found");
+    }
+
+    private boolean verify(DataFile df, long ptr, int size) throws Exception {
+        final ByteBuffer bb = df.readBuffer(ptr, size);
+        //frame is not allocated
+        if (bb.getInt(0) == 0 && bb.getLong(4) == 0) {
+            return true;
+        }
+        return FrameChecksum.verify(bb);
+    }
+
+}
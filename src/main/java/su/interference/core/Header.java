@@ -26,6 +26,8 @@ package su.interference.core;
 
 import su.interference.persistent.Transaction;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author Yuriy Glotanov
  * @since 1.0
@@ -47,6 +49,7 @@ public interface Header {
     void setPtr(int ptr);
     long getFramePtr();
     byte[] getHeader();
+    void putHeader(ByteBuffer bb);
     RowId getRowID();
     void setRowID(RowId rowID);
     long getLltId();
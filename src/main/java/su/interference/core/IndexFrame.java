@@ -28,7 +28,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import su.interference.exception.*;
 import su.interference.persistent.*;
-import su.interference.serialize.ByteString;
 
 import java.util.*;
 
@@ -65,44 +64,9 @@ public class IndexFrame extends Frame {
         super(null, file, pointer, size, bd, t, c);
         this.terminate = false;
 
-        Map<Integer, UndoChunk> ucs = new HashMap<>();
-        for (FrameData uframe : uframes) {
-            final DataFrame uf = uframe.getDataFrame();
-            for (Chunk udc : uf.getChunks()) {
-                UndoChunk uc = (UndoChunk) udc.getEntity();
-                final long frameId = file + pointer;
-                final long frameId_ = uc.getFile() + uc.getFrame();
-                if (frameId == frameId_) {
-                    ucs.put(uc.getPtr(), uc);
-                }
-            }
-        }
-
-        int ptr = FRAME_HEADER_SIZE;
-        final ByteString bs = new ByteString(this.b);
-        while (ptr<this.b.length) {
-            if (this.b.length>=ptr+INDEX_HEADER_SIZE) {
-                RowHeader h = new RowHeader(bs.substring(ptr, ptr+INDEX_HEADER_SIZE), this.getFile(), this.getPointer());
-                if ((h.getPtr()>0)&&(h.getLen()>0)) {
-                    final DataChunk dc = new DataChunk(bs.substring(ptr, ptr+INDEX_HEADER_SIZE+h.getLen()), this.getFile(), this.getPointer(), INDEX_HEADER_SIZE, this.getDataObject(), this.getEntityClass());
-                    if (this.getType()==INDEX_FRAME_LEAF) {
-                        if (INITIALIZE_DURING_CONSTRUCT == 1) {
-                            final IndexChunk ib = (IndexChunk) dc.getEntity();
-                        }
-                    }
-                    if (ucs.get(dc.getHeader().getPtr()) != null) {
-                        dc.setUndoChunk(ucs.get(dc.getHeader().getPtr()));
-                    }
-                    data.add(dc);
-                    ptr = ptr + INDEX_HEADER_SIZE + h.getLen();
-                } else {
-                    ptr = this.b.length;
-                }
-            } else {
-                ptr = this.b.length;
-            }
-        }
-        this.b = null; //throw bytes to GC
+        //rows and undo chunks of running transactions are decoded on demand
+        data.load(this.buf, FRAME_HEADER_SIZE, INDEX_HEADER_SIZE, uframes);
+        this.buf = null;
     }
 
     //constructor for replication service
@@ -111,10 +75,10 @@ public class IndexFrame extends Frame {
         int ptr = FRAME_HEADER_SIZE;
         this.terminate = false;
 
-        final ByteString bs = new ByteString(this.b);
-        while (ptr<this.b.length) {
-            if (this.b.length>=ptr+INDEX_HEADER_SIZE) {
-                RowHeader h = new RowHeader(bs.substring(ptr, ptr+INDEX_HEADER_SIZE), this.getFile(), this.getPointer());
+        final int length = this.buf.capacity();
+        while (ptr<length) {
+            if (length>=ptr+INDEX_HEADER_SIZE) {
+                RowHeader h = new RowHeader(this.buf, ptr, INDEX_HEADER_SIZE, this.getFile(), this.getPointer());
                 if ((h.getPtr()>0)&&(h.getLen()>0)) {
                     //replace framepointers
                     if (h.getFramePtr() > 0) { //IOT does not contains frameptr
@@ -124,18 +88,17 @@ public class IndexFrame extends Frame {
                         h.getFramePtrRowId().setFileId((int) fbptr);
                         h.getFramePtrRowId().setFramePointer(bptr - fbptr);
                     }
-                    final DataChunk dc = new DataChunk(bs.substring(ptr, ptr+INDEX_HEADER_SIZE+h.getLen()), this.getFile(), this.getPointer(), INDEX_HEADER_SIZE, this.getDataObject(), this.getEntityClass());
-                    dc.setHeader(h);
+                    final DataChunk dc = new DataChunk(this.buf, ptr, h, this.getDataObject(), this.getEntityClass());
                     data.add(dc);
                     ptr = ptr + INDEX_HEADER_SIZE + h.getLen();
                 } else {
-                    ptr = this.b.length;
+                    ptr = length;
                 }
             } else {
-                ptr = this.b.length;
+                ptr = length;
             }
         }
-        this.b = null; //throw bytes to GC
+        this.buf = null; //throw bytes to GC
     }
 
     @Override
@@ -299,31 +262,17 @@ public class IndexFrame extends Frame {
     //accepted only to node element lists
     //for unique indexes
     public synchronized DataChunk getChildElementPtr(ValueSet value) throws InternalException {
-        //todo if (!this.sorted) {
-            this.sort();
-        //}
-        for (Chunk ie : this.data.getChunks()) {
-            if (((DataChunk)ie).getDcs().compareTo(value)>=0) {
-                return ((DataChunk)ie); //known as ptr for node element
-            }
-        }
-        return null;
+        return (DataChunk)this.data.ceiling(value); //known as ptr for node element
     }
 
     //accepted only to node element lists
     //for non-unique indexes
     public synchronized ArrayList<Long> getChildElementsPtr(ValueSet value) throws InternalException {
-        //todo if (!this.sorted) {
-            this.sort();
-        //}
         ArrayList<Long> r = new ArrayList<Long>();
-        for (Chunk ie : this.data.getChunks()) {
-            if (((DataChunk)ie).getDcs().compareTo(value) == 0) {
-                r.add (((DataChunk)ie).getHeader().getFramePtr()); //known as ptr for node element
-            }
-            if (((DataChunk)ie).getDcs().compareTo(value) > 0) {
-                r.add (((DataChunk)ie).getHeader().getFramePtr()); //known as ptr for node element
-                break;
+        final List<Chunk> cs = this.data.getByKey(value, true);
+        if (cs != null) {
+            for (Chunk ie : cs) {
+                r.add (ie.getHeader().getFramePtr()); //known as ptr for node element
             }
         }
         return r;
@@ -331,10 +280,11 @@ public class IndexFrame extends Frame {
 
     //return first element which found - for unique indexes
     public DataChunk getObjectByKey(ValueSet key, Session s) {
-        if (this.data.getByKey(key) == null) {
+        final List<Chunk> cs = this.data.getByKey(key);
+        if (cs == null) {
             return null;
         }
-        for (Chunk c : this.data.getByKey(key)) {
+        for (Chunk c : cs) {
             final DataChunk dc = (DataChunk) c;
             final long tr = s.getTransaction().getTransId();
             final long mtran = s.getTransaction().getMTran();
@@ -367,26 +317,28 @@ public class IndexFrame extends Frame {
         final List<DataChunk> r = new ArrayList<>();
         final long tr = s.getTransaction().getTransId();
         final long mtran = s.getTransaction().getMTran();
-        for (Chunk ie : this.data.getChunks()) {
-            if (((DataChunk)ie).getDcs().equals(key)) {
-                if (((DataChunk)ie).getHeader().getState() == Header.RECORD_NORMAL_STATE) {
-                    if (((DataChunk) ie).getUndoChunk() != null && ((DataChunk) ie).getHeader().getTran().getCid() == 0) { //updated chunk in live transaction
+        final List<Chunk> cs = this.data.getByKey(key);
+        if (cs == null) {
+            return r;
+        }
+        for (Chunk ie : cs) {
+            if (((DataChunk)ie).getHeader().getState() == Header.RECORD_NORMAL_STATE) {
+                if (((DataChunk) ie).getUndoChunk() != null && ((DataChunk) ie).getHeader().getTran().getCid() == 0) { //updated chunk in live transaction
+                    r.add((DataChunk) ie);
+                } else {
+                    if (((DataChunk) ie).getHeader().getTran() == null || s.isStream()) {
                         r.add((DataChunk) ie);
                     } else {
-                        if (((DataChunk) ie).getHeader().getTran() == null || s.isStream()) {
+                        if ((tr == ((DataChunk) ie).getHeader().getTran().getTransId()) || (((DataChunk) ie).getHeader().getTran().getCid() > 0 && ((DataChunk) ie).getHeader().getTran().getCid() <= mtran)) {
                             r.add((DataChunk) ie);
-                        } else {
-                            if ((tr == ((DataChunk) ie).getHeader().getTran().getTransId()) || (((DataChunk) ie).getHeader().getTran().getCid() > 0 && ((DataChunk) ie).getHeader().getTran().getCid() <= mtran)) {
-                                r.add((DataChunk) ie);
-                            }
                         }
                     }
                 }
-                if (((DataChunk)ie).getHeader().getState() == Header.RECORD_DELETED_STATE) {
-                    if (((DataChunk)ie).getHeader().getTran()!=null) {
-                        if ((tr != ((DataChunk)ie).getHeader().getTran().getTransId()) && (((DataChunk)ie).getHeader().getTran().getCid() == 0 || ((DataChunk)ie).getHeader().getTran().getCid() > mtran)) {
-                            r.add((DataChunk)ie);
-                        }
+            }
+            if (((DataChunk)ie).getHeader().getState() == Header.RECORD_DELETED_STATE) {
+                if (((DataChunk)ie).getHeader().getTran()!=null) {
+                    if ((tr != ((DataChunk)ie).getHeader().getTran().getTransId()) && (((DataChunk)ie).getHeader().getTran().getCid() == 0 || ((DataChunk)ie).getHeader().getTran().getCid() > mtran)) {
+                        r.add((DataChunk)ie);
                     }
                 }
             }
@@ -396,17 +348,15 @@ public class IndexFrame extends Frame {
 
     public synchronized int removeObjects(ValueSet key, Object o) throws InternalException {
         int len = 0;
-        ArrayList<Integer> d = new ArrayList<Integer>();
-        for (int i=0; i<this.data.size(); i++) {
-            DataChunk ie = (DataChunk)this.data.get(i);
-            if (ie.getDcs().equals(key)) {
+        final List<Chunk> cs = this.data.getByKey(key);
+        if (cs != null) {
+            for (Chunk ie : cs) {
                 if (ie.getEntity()==o) {
                     len = len + ie.getBytesAmount();
-                    d.add(i);
+                    this.data.removeByPtr(ie.getHeader().getPtr());
                 }
             }
         }
-        for (Integer x : d) { this.data.remove(x); }
         return len;
     }
 
@@ -26,444 +26,202 @@ package su.interference.core;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * In-memory ordered index for system catalogs.
+ * Elements are stored in concurrent skip list ordered by key and insertion sequence,
+ * so lookups are lock-free and inserts of different keys do not block each other.
  * @author Yuriy Glotanov
  * @since 1.0
  */
 
 public class IndexList {
 
-    private CopyOnWriteArrayList<IndexElementList> list;
-    private int start = 0; //current start EL
+    private final ConcurrentSkipListMap<Entry, Object> map;
+    private final AtomicLong seq;
 
     public IndexList () {
-        list = new CopyOnWriteArrayList<IndexElementList>();
-        addElementList(new IndexElementList(1));
+        map = new ConcurrentSkipListMap<>();
+        seq = new AtomicLong();
     }
 
     public int size() {
-        return list.size();
+        return map.size();
     }
 
-    public synchronized void add (int obj, Object element) {
+    public void add (int obj, Object element) {
         add (new IndexElementKey(new Integer[]{obj}), element);
     }
 
-    public synchronized void add (long id, Object element) {
+    public void add (long id, Object element) {
         add (new IndexElementKey(new Long[]{id}), element);
     }
 
-    public synchronized void add (String id, Object element) {
+    public void add (String id, Object element) {
         add (new IndexElementKey(new String[]{id}), element);
     }
 
-    public synchronized void add (IndexElementKey key, Object element) {
-        IndexElement e = new IndexElement(key, element, false);
-
-        boolean cnue = true;
-        IndexElementList target = list.get(start);
-
-        //find target leaf
-        while (cnue) {
-            if (target.getType()==1) { //leaf
-                cnue = false;
-            } else {                   //node
-                int cptr   = target.getChildElementPtr(key);
-                int parent = target.getPtr();
-                if (cptr>=0) {
-                    target = list.get(cptr);
-                } else {
-                    target = list.get(target.getLc()); //get by last child
-                }
-                target.setParent(parent);
-            }
-        }
-        cnue = true;
-
-        //store element to target leaf
-        IndexElementList prevtg;
-        while (cnue) {
-            IndexElementList newlist = target.add(e);
-            if (newlist==null) {
-                cnue = false;
-            } else {
-                addElementList(newlist);
-                prevtg = target;
-                if (newlist.isDivided()) {
-                    e = new IndexElement(newlist.getMaxValue(), new Integer(newlist.getPtr()), true);
-                } else {
-                    e = new IndexElement(prevtg.getMaxValue(), new Integer(prevtg.getPtr()), true);
-                }
-                if (prevtg.getParent()==0) { //add parent ElementList - always type 2 (node)
-                    target = new IndexElementList(2);
-                    addElementList(target);
-                    this.start = target.getPtr();
-                } else {
-                    target = list.get(prevtg.getParent());
-                }
-                if (!newlist.isDivided()) {
-                    target.setLc(newlist.getPtr()); //lc must be > 0 (0 is first leaf ElementList)
-                }
-            }
-        }
-
+    public void add (IndexElementKey key, Object element) {
+        map.put(new Entry(key, seq.incrementAndGet()), element);
     }
 
-    public synchronized void update (IndexElementKey key, Object o) {
+    public void update (IndexElementKey key, Object o) {
         updateObjects(key, o);
     }
 
-    public synchronized void remove (IndexElementKey key, Object o) {
+    public void remove (IndexElementKey key, Object o) {
         removeObjects(key, o);
     }
 
-    public synchronized List<Object> getObjectsByKey (final IndexElementKey key, final int amount) {
+    //all entries with given key in insertion order
+    private ConcurrentNavigableMap<Entry, Object> range (final IndexElementKey key) {
+        return map.subMap(new Entry(key, Long.MIN_VALUE), true, new Entry(key, Long.MAX_VALUE), true);
+    }
+
+    public List<Object> getObjectsByKey (final IndexElementKey key, final int amount) {
         final ArrayList<Object> r = new ArrayList<Object>();
-        boolean cnue = true;
-        ArrayList<IndexElementList> targets = new ArrayList<IndexElementList>();
-        IndexElementList el = list.get(start);
-        //el.sort();
-        targets.add(el);
-        int amount_ = 0;
-        while (cnue) {
-            final ArrayList<IndexElementList> ntargets = new ArrayList<IndexElementList>();
-            for (IndexElementList target : targets) {
-                //target.sort();
-                if (target.getType() == 1) { //leaf
-                    if (amount == 0) {
-                        final List<Object> list = target.getObjectsByKey(key);
-                        r.addAll(list);
-                    } else {
-                        if (amount - amount_ > 0) {
-                            final List<Object> list = target.getObjectsByKey(key);
-                            for (Object o : list) {
-                                if (amount - amount_ > 0) {
-                                    r.add(o);
-                                }
-                                amount_++;
-                            }
-                        }
-                    }
-                    cnue = false;
-                } else {
-                    final ArrayList<Integer> cptr = target.getChildElementsPtr(key);
-                    if (cptr.size() > 0) {
-                        for (Integer i : cptr) {
-                            ntargets.add(list.get(i));
-                        }
-                    }
-                    if (target.getLc() > 0) {
-                        ntargets.add(list.get(target.getLc())); //get by last child
-                    }
-                }
+        for (Object o : range(key).values()) {
+            if (amount > 0 && r.size() >= amount) {
+                break;
             }
-            targets = ntargets;
+            r.add(o);
         }
         return r;
     }
 
-    public synchronized List<Object> getContent() {
+    public List<Object> getContent() {
         return getContent(0);
     }
 
-    public synchronized List<Object> getContent(int amount) {
-        ArrayList<Object> res = new ArrayList<>();
-        ArrayList<IndexElementList> levelNodes = new ArrayList<>();
-        boolean cnue = true;
-        IndexElementList el = list.get(start);
-        el.sort();
-        levelNodes.add(el);
-        int amount_ = 0;
-        while (cnue) {
-            ArrayList<IndexElementList> inNodes = new ArrayList<>();
-            int lc = 0;
-            for (int k=0; k<levelNodes.size(); k++) {
-                levelNodes.get(k).sort();
-                if (levelNodes.get(k).getType() == 1) {
-                    if (amount == 0) {
-                        for (IndexElement ie : levelNodes.get(k).getElementList()) {
-                            res.add(ie.getElement());
-                        }
-                    } else {
-                        if (amount - amount_ > 0) {
-                            for (IndexElement ie : levelNodes.get(k).getElementList()) {
-                                if (amount - amount_ > 0) {
-                                    res.add(ie.getElement());
-                                }
-                                amount_++;
-                            }
-                        }
-                    }
-                    cnue = false;
-                } else {
-                    for (int i=0; i<levelNodes.get(k).getElementList().size(); i++) {
-                        inNodes.add(this.list.get((Integer)levelNodes.get(k).getElementList().get(i).getElement()));
-                    }
-                    if (k==levelNodes.size()-1) {
-                        lc = levelNodes.get(k).getLc();
-                        if (lc>0) {
-                            inNodes.add(this.list.get(lc));
-                        }
-                    }
-                }
+    public List<Object> getContent(int amount) {
+        final ArrayList<Object> res = new ArrayList<>();
+        for (Object o : map.values()) {
+            if (amount > 0 && res.size() >= amount) {
+                break;
             }
-            levelNodes = inNodes;
+            res.add(o);
         }
         return res;
     }
 
-    public synchronized Object getFirst() {
-        ArrayList<IndexElementList> levelNodes = new ArrayList<IndexElementList>();
-        boolean cnue = true;
-        IndexElementList el = list.get(start);
-        el.sort();
-        levelNodes.add(el);
-        while (cnue) {
-            ArrayList<IndexElementList> inNodes = new ArrayList<IndexElementList>();
-            int lc = 0;
-            for (int k=0; k<levelNodes.size(); k++) {
-                levelNodes.get(k).sort();
-                if (levelNodes.get(k).getType()==1) {
-                    cnue = false;
-                    for (IndexElement ie : levelNodes.get(k).getElementList()) {
-                        if (levelNodes.get(k).getType()==1) {
-                            return ie.getElement();
-                        }
-                    }
-                } else {
-                    for (int i=0; i<levelNodes.get(k).getElementList().size(); i++) {
-                        inNodes.add(this.list.get((Integer)levelNodes.get(k).getElementList().get(i).getElement()));
-                    }
-                    if (k==levelNodes.size()-1) {
-                        lc = levelNodes.get(k).getLc();
-                        if (lc>0) {
-                            inNodes.add(this.list.get(lc));
-                        }
-                    }
-                }
-            }
-            levelNodes = inNodes;
-        }
-        return null;
-    }
-
-    public synchronized String getInfo() {
-        ArrayList<IndexElementList> levelNodes = new ArrayList<IndexElementList>();
-        boolean cnue = true;
-        IndexElementList el = list.get(start);
-        el.sort();
-        levelNodes.add(el);
-        int nodecnt = 0;
-        int leafcnt = 0;
-        int nodeamt = 0;
-        int leafamt = 0;
-        while (cnue) {
-            ArrayList<IndexElementList> inNodes = new ArrayList<IndexElementList>();
-            int lc = 0;
-            for (int k=0; k<levelNodes.size(); k++) {
-                levelNodes.get(k).sort();
-                if (levelNodes.get(k).getType()==1) {
-                    cnue = false;
-                    leafcnt++;
-                    for (IndexElement ie : levelNodes.get(k).getElementList()) {
-                        if (levelNodes.get(k).getType()==1) {
-                            leafamt++;
-                        }
-                    }
-                } else {
-                    nodecnt++;
-                    for (int i=0; i<levelNodes.get(k).getElementList().size(); i++) {
-                        nodeamt++;
-                        inNodes.add(this.list.get((Integer)levelNodes.get(k).getElementList().get(i).getElement()));
-                    }
-                    if (k==levelNodes.size()-1) {
-                        lc = levelNodes.get(k).getLc();
-                        if (lc>0) {
-                            inNodes.add(this.list.get(lc));
-                        }
-                    }
-                }
-            }
-            levelNodes = inNodes;
-        }
-        return "nframes: "+nodecnt+" nds: "+nodeamt+" lframes: "+leafcnt+" lfs: "+leafamt;
+    public Object getFirst() {
+        final Map.Entry<Entry, Object> e = map.firstEntry();
+        return e == null ? null : e.getValue();
     }
 
-    private void addElementList (final IndexElementList el) {
-        this.list.add(el);
-        final int ptr = this.list.size()-1;
-        el.setPtr(ptr);
+    public String getInfo() {
+        return "elements: " + map.size();
     }
 
-    public synchronized Object getObjectByKey (final int id) {
+    public Object getObjectByKey (final int id) {
         return getObjectByKey (new IndexElementKey(new Integer[]{id}));
     }
 
-    public synchronized Object getObjectByKey (final long id) {
+    public Object getObjectByKey (final long id) {
         return getObjectByKey (new IndexElementKey(new Long[]{id}));
     }
 
-    public synchronized Object getObjectByKey (final String id) {
+    public Object getObjectByKey (final String id) {
         return getObjectByKey (new IndexElementKey(new String[]{id}));
     }
 
     //for unique indexes
-    public synchronized Object getObjectByKey (final IndexElementKey key) {
-        boolean cnue = true;
-        IndexElementList target = this.list.get(this.start);
-        while (cnue) {
-            if (target.getType()==1) { //leaf
-                cnue = false;
-            } else {
-                final int cptr = target.getChildElementPtr(key);
-                if (cptr>=0) {
-                    target = list.get(cptr);
-                } else {
-                    target = list.get(target.getLc()); //get by last child
-                }
-            }
+    public Object getObjectByKey (final IndexElementKey key) {
+        final Map.Entry<Entry, Object> e = map.ceilingEntry(new Entry(key, Long.MIN_VALUE));
+        if (e != null && e.getKey().key.compareTo(key) == 0) {
+            return e.getValue();
         }
-        return target.getObjectByKey(key);
+        return null;
     }
 
-
-    public synchronized List<Object> getObjectsByKey (final int obj) {
+    public List<Object> getObjectsByKey (final int obj) {
         return getObjectsByKey (new IndexElementKey(new Integer[]{obj}), 0);
     }
 
-    public synchronized List<Object> getObjectsByKey (final long obj) {
+    public List<Object> getObjectsByKey (final long obj) {
         return getObjectsByKey (new IndexElementKey(new Long[]{obj}), 0);
     }
 
-    public synchronized List<Object> getObjectsByKey (final String obj) {
+    public List<Object> getObjectsByKey (final String obj) {
         return getObjectsByKey (new IndexElementKey(new String[]{obj}), 0);
     }
 
-    public synchronized List<Object> getObjectsByKey (final int obj, final int amount) {
+    public List<Object> getObjectsByKey (final int obj, final int amount) {
         return getObjectsByKey (new IndexElementKey(new Integer[]{obj}), amount);
     }
 
-    public synchronized List<Object> getObjectsByKey (final long obj, final int amount) {
+    public List<Object> getObjectsByKey (final long obj, final int amount) {
         return getObjectsByKey (new IndexElementKey(new Long[]{obj}), amount);
     }
 
     //for non-unique indexes
-    public synchronized List<Object> objectsByKey (final IndexElementKey key) {
-        final ArrayList<Object> r = new ArrayList<Object>();
-        boolean cnue = true;
-        ArrayList<IndexElementList> targets = new ArrayList<IndexElementList>();
-        targets.add(this.list.get(this.start));
-        while (cnue) {
-            final ArrayList<IndexElementList> ntargets = new ArrayList<IndexElementList>();
-            for (IndexElementList target : targets) {
-                if (target.getType()==1) { //leaf
-                    r.addAll(target.getObjectsByKey(key));
-                    cnue = false;
-                } else {
-                    final ArrayList<Integer> cptr = target.getChildElementsPtr(key);
-                    if (cptr.size()>0) {
-                        for (Integer i : cptr) {
-                            ntargets.add(list.get(i));
-                        }
-                    }
-                    if (target.getLc()>0) {
-                        ntargets.add(list.get(target.getLc())); //get by last child
-                    }
-                }
-            }
-            targets = ntargets;
-        }
-        return r;
+    public List<Object> objectsByKey (final IndexElementKey key) {
+        return getObjectsByKey(key, 0);
     }
 
-    public synchronized Object getFirstObjectByKey (final int obj) {
+    public Object getFirstObjectByKey (final int obj) {
         return getFirstObjectByKey (new IndexElementKey(new Integer[]{obj}));
     }
 
     //for non-unique indexes
-    public synchronized Object getFirstObjectByKey (final IndexElementKey key) {
-        boolean cnue = true;
-        ArrayList<IndexElementList> targets = new ArrayList<IndexElementList>();
-        targets.add(this.list.get(this.start));
-        while (cnue) {
-            final ArrayList<IndexElementList> ntargets = new ArrayList<IndexElementList>();
-            for (IndexElementList target : targets) {
-                if (target.getType()==1) { //leaf
-                    final List<Object> lfs = target.getObjectsByKey(key);
-                    if (lfs.size() > 0) {
-                        return lfs.get(0);
-                    }
-                    cnue = false;
-                } else {
-                    final ArrayList<Integer> cptr = target.getChildElementsPtr(key);
-                    if (cptr.size()>0) {
-                        for (Integer i : cptr) {
-                            ntargets.add(list.get(i));
-                        }
-                    }
-                    if (target.getLc()>0) {
-                        ntargets.add(list.get(target.getLc())); //get by last child
-                    }
-                }
-            }
-            targets = ntargets;
-        }
-        return null;
+    public Object getFirstObjectByKey (final IndexElementKey key) {
+        return getObjectByKey(key);
     }
 
     //find object(s) by key and update unique object (param)
-    public synchronized void updateObjects (IndexElementKey key, Object o) {
-        boolean cnue = true;
-        ArrayList<IndexElementList> targets = new ArrayList<IndexElementList>();
-        targets.add(this.list.get(this.start));
-        while (cnue) {
-            ArrayList<IndexElementList> ntargets = new ArrayList<IndexElementList>();
-            for (IndexElementList target : targets) {
-                if (target.getType()==1) { //leaf
-                    target.updateObjects(key, o);
-                    cnue = false;
-                } else {
-                    ArrayList<Integer> cptr = target.getChildElementsPtr(key);
-                    if (cptr.size()>0) {
-                        for (Integer i : cptr) {
-                            ntargets.add(list.get(i));
-                        }
-                    }
-                    if (target.getLc()>0) {
-                        ntargets.add(list.get(target.getLc())); //get by last child
-                    }
-                }
-            }
-            targets = ntargets;
+    public void updateObjects (IndexElementKey key, Object o) {
+        for (Map.Entry<Entry, Object> e : range(key).entrySet()) {
+            map.replace(e.getKey(), o);
         }
     }
 
     //find object(s) by key and remove unique object (param)
-    public synchronized void removeObjects (IndexElementKey key, Object o) {
-        boolean cnue = true;
-        ArrayList<IndexElementList> targets = new ArrayList<IndexElementList>();
-        targets.add(this.list.get(this.start));
-        while (cnue) {
-            ArrayList<IndexElementList> ntargets = new ArrayList<IndexElementList>();
-            for (IndexElementList target : targets) {
-                if (target.getType()==1) { //leaf
-                    target.removeObjects(key, o);
-                    cnue = false;
-                } else {
-                    ArrayList<Integer> cptr = target.getChildElementsPtr(key);
-                    if (cptr.size()>0) {
-                        for (Integer i : cptr) {
-                            ntargets.add(list.get(i));
-                        }
-                    }
-                    if (target.getLc()>0) {
-                        ntargets.add(list.get(target.getLc())); //get by last child
-                    }
+    public void removeObjects (IndexElementKey key, Object o) {
+        for (Map.Entry<Entry, Object> e : range(key).entrySet()) {
+            if (e.getValue() == o) {
+                map.remove(e.getKey(), o);
+                return;
+            }
+        }
+    }
+
+    //index key with insertion sequence, allows duplicate keys in map
+    private static final class Entry implements Comparable<Entry> {
+        private final IndexElementKey key;
+        private final long seq;
+
+        private Entry(IndexElementKey key, long seq) {
+            this.key = key;
+            this.seq = seq;
+        }
+
+        public int compareTo(final Entry e) {
+            final int c = compare(this.key, e.key);
+            if (c != 0) {
+                return c;
+            }
+            return Long.compare(this.seq, e.seq);
+        }
+
+        //fast path for single primitive-wrapped keys used by system catalogs
+        private static int compare(final IndexElementKey k1, final IndexElementKey k2) {
+            final Object[] a1 = k1.getKey();
+            final Object[] a2 = k2.getKey();
+            if (a1.length == 1 && a2.length == 1) {
+                final Object o1 = a1[0];
+                final Object o2 = a2[0];
+                if (o1 instanceof Long && o2 instanceof Long) {
+                    return Long.compare((Long) o1, (Long) o2);
+                }
+                if (o1 instanceof Integer && o2 instanceof Integer) {
+                    return Integer.compare((Integer) o1, (Integer) o2);
                 }
             }
-            targets = ntargets;
+            return k1.compareTo(k2);
         }
     }
 
@@ -370,8 +370,8 @@ public class Instance implements Interference {
 
             logger.info("interference is starting...");
             Thread.currentThread().setName("interference-main-thread-"+Thread.currentThread().getId());
-            Storage.getStorage().restoreJournal();
             Storage.getStorage().openDataFiles();
+            Storage.getStorage().restoreJournal();
             initSystemTable();
             Storage.getStorage().closeDataFiles();
             Storage.getStorage().openStorage(getDataFiles());
@@ -403,13 +403,29 @@ public class Instance implements Interference {
 
     private static void registerMetrics() throws Exception {
         Metrics.register(Metrics.TIMER, "getAvailableFrame");
+        Metrics.register(Metrics.COUNTER, "availFrameWaits");
+        Metrics.register(Metrics.COUNTER, "availFrameTimeouts");
         Metrics.register(Metrics.TIMER, "allocateFrame");
         Metrics.register(Metrics.TIMER, "reallocateFrame");
+        Metrics.register(Metrics.COUNTER, "extentPreallocations");
+        Metrics.register(Metrics.COUNTER, "extentWaits");
         Metrics.register(Metrics.TIMER, "remoteTask");
         Metrics.register(Metrics.TIMER, "localTask");
         Metrics.register(Metrics.TIMER, "executeQuery");
+        Metrics.register(Metrics.COUNTER, "planCacheHits");
+        Metrics.register(Metrics.COUNTER, "planCacheMisses");
+        Metrics.register(Metrics.COUNTER, "hashJoinSpills");
+        Metrics.register(Metrics.COUNTER, "hashGroupSpills");
         Metrics.register(Metrics.TIMER, "deallocateQuery");
         Metrics.register(Metrics.TIMER, "syncFrames");
+        Metrics.register(Metrics.TIMER, "commitLatency");
+        Metrics.register(Metrics.HISTOGRAM, "commitBatchSize");
+        Metrics.register(Metrics.TIMER, "journalFsync");
+        Metrics.register(Metrics.HISTOGRAM, "journalBatchSize");
+        Metrics.register(Metrics.METER, "checkpointLsn");
+        Metrics.register(Metrics.COUNTER, "frameChecksumErrors");
+        Metrics.register(Metrics.COUNTER, "scrubFrames");
+        Metrics.register(Metrics.COUNTER, "scrubBadFrames");
         Metrics.register(Metrics.TIMER, "persistGetChunk");
         Metrics.register(Metrics.TIMER, "persistInsertChunk");
         Metrics.register(Metrics.TIMER, "persistInsertIndex");
@@ -424,6 +440,19 @@ public class Instance implements Interference {
         Metrics.register(Metrics.METER, "imDataFrames");
         Metrics.register(Metrics.METER, "imIndexFrames");
         Metrics.register(Metrics.METER, "imUndoFrames");
+        Metrics.register(Metrics.METER, "bufferHitRatio");
+        Metrics.register(Metrics.METER, "bufferEvictionsPerSec");
+        Metrics.register(Metrics.METER, "bufferResidentBytes");
+        Metrics.register(Metrics.METER, "bufferResidentBytes@data");
+        Metrics.register(Metrics.METER, "bufferResidentBytes@index");
+        Metrics.register(Metrics.METER, "bufferResidentBytes@undo");
+        Metrics.register(Metrics.METER, "bufferResidentBytes@temp");
+        Metrics.register(Metrics.COUNTER, "offheapHits");
+        Metrics.register(Metrics.COUNTER, "offheapMisses");
+        Metrics.register(Metrics.COUNTER, "offheapEvictions");
+        Metrics.register(Metrics.METER, "offheapBytes");
+        Metrics.register(Metrics.METER, "mmapBytes");
+        Metrics.register(Metrics.COUNTER, "mmapRemaps");
     }
 
     @SuppressWarnings("unchecked")
@@ -448,8 +477,20 @@ public class Instance implements Interference {
         }
     }
 
+    //storage created by previous release has no processes which are added later
+    private void registerProcesses(Session s) throws Exception {
+        for (Process ps : getProcesses()) {
+            if (ps.getProcessName().equals("scrub")) {
+                return;
+            }
+        }
+        s.persist(new Process(5, "scrub","su.interference.core.FrameScrubber"));
+        logger.info("scrub process registered");
+    }
+
     @SuppressWarnings("unchecked")
     private void startProcesses(Session s) throws Exception {
+        registerProcesses(s);
         final Table t = getTableByName("su.interference.persistent.Process");
         final List<Process> pss = Instance.getInstance().getProcesses();
         Collections.sort(pss);
@@ -576,7 +617,7 @@ public class Instance implements Interference {
     public FrameData getFrameById (long id) {
         final Table t = getTableByName("su.interference.persistent.FrameData");
         final MapField ixf = t.getMapFieldByColumn("frameId");
-        final Map ixl = ixf.getMap();
+        final LongObjectMap ixl = (LongObjectMap)ixf.getMap();
         final DataChunk dc = (DataChunk)ixl.get(id);
         if (dc != null) {
             return (FrameData)dc.getEntity();
@@ -587,7 +628,7 @@ public class Instance implements Interference {
     public FrameData getFrameByIdForUpdate (long id, LLT llt) {
         final Table t = getTableByName("su.interference.persistent.FrameData");
         final MapField ixf = t.getMapFieldByColumn("frameId");
-        final Map ixl = ixf.getMap();
+        final LongObjectMap ixl = (LongObjectMap)ixf.getMap();
         final DataChunk dc = (DataChunk)ixl.get(id);
         if (dc != null) {
             final FrameData bd = (FrameData) dc.getEntity();
@@ -600,7 +641,7 @@ public class Instance implements Interference {
     public FrameData getFrameByAllocId (long id) {
         final Table t = getTableByName("su.interference.persistent.FrameData");
         final MapField ixf = t.getMapFieldByColumn("allocId");
-        final Map ixl = ixf.getMap();
+        final LongObjectMap ixl = (LongObjectMap)ixf.getMap();
         final DataChunk dc = (DataChunk)ixl.get(id);
         if (dc!=null) {
             return (FrameData)dc.getEntity();
@@ -611,7 +652,7 @@ public class Instance implements Interference {
     public Chunk getChunkByPointer (long frameId, int ptr) throws Exception {
         final Table t = getTableByName("su.interference.persistent.FrameData");
         final MapField ixf = t.getMapFieldByColumn("frameId");
-        final Map ixl = ixf.getMap();
+        final LongObjectMap ixl = (LongObjectMap)ixf.getMap();
         final DataChunk dc = (DataChunk)ixl.get(frameId);
         if (dc!=null) {
             return ((FrameData)dc.getEntity()).getFrame().data.getByPtr(ptr);
@@ -647,10 +688,10 @@ public class Instance implements Interference {
         return (Session)((DataChunk)t.getIndexFieldByColumn("sid").getIndex().getObjectByKey(sid)).getEntity();
     }
 
-    public synchronized Transaction getTransactionById (long transId) {
+    public Transaction getTransactionById (long transId) {
         if (transId == 0) { return null; }
         Table t = getTableByName("su.interference.persistent.Transaction");
-        DataChunk dc = ((DataChunk)t.getMapFieldByColumn("transId").getMap().get(transId));
+        DataChunk dc = (DataChunk)((LongObjectMap)t.getMapFieldByColumn("transId").getMap()).get(transId);
         if (dc==null) {
             return null;
         }
@@ -26,14 +26,26 @@ package su.interference.core;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import su.interference.persistent.DataFile;
 import su.interference.persistent.FrameData;
 
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
+ * Low-level transaction (LLT) is a handle for the set of frame changes
+ * which must not be divided by the sync (journal) procedure.
+ * Each LLT enters the current epoch and exits it on commit, lock LLT
+ * advances the epoch and waits until all LLTs of the previous epoch exit.
+ *
  * @author Yuriy Glotanov
  * @since 1.0
  */
@@ -43,11 +55,23 @@ public class LLT {
     private static final AtomicLong cntr = new AtomicLong();
     private static final AtomicLong sync = new AtomicLong();
     private static final ReentrantLock rlck = new ReentrantLock();
-    private static final ConcurrentHashMap<Long, LLT> pool = new ConcurrentHashMap<Long, LLT>();
+    //only one lock llt (sync or journal) at a time
+    private static final Semaphore lck = new Semaphore(1);
+    //counters of active llts striped by thread, padded to avoid false sharing
+    private static final int STRIPES = stripes();
+    private static final int PAD = 8;
+    private static final AtomicLongArray active = new AtomicLongArray(2 * STRIPES * PAD);
+    private static volatile int epoch;
+    private static volatile Thread drainer;
     private static final ConcurrentHashMap<Long, FrameData> frames = new ConcurrentHashMap<>();
+    //frames changed since last write to redo journal
+    private static final ConcurrentHashMap<Long, FrameData> redo = new ConcurrentHashMap<>();
+    private static final boolean journal = Config.getConfig().JOURNAL_REDO_ENABLE;
     private final static Logger logger = LoggerFactory.getLogger(LLT.class);
     private final boolean lock;
     private final long id;
+    private final int slot;
+    private boolean closed;
     private final StackTraceElement[] trace;
 
     // WARNING!!!
@@ -55,9 +79,10 @@ public class LLT {
     // dev & QA engineers may change this constant
     private static final boolean debug = false;
 
-    private LLT(long id, boolean lock) {
+    private LLT(long id, boolean lock, int slot) {
         this.id = id;
         this.lock = lock;
+        this.slot = slot;
         this.trace = debug ? Thread.currentThread().getStackTrace() : null;
     }
 
@@ -66,42 +91,82 @@ public class LLT {
     }
 
     public static LLT getLLT() {
-        final long id_ = Thread.currentThread().getId();
-        if (pool.get(id_) != null) {
-            if (debug) {
-                for (StackTraceElement e : pool.get(id_).getTrace()) {
-                    logger.info(e.toString());
-                }
-            }
-            logger.error("an unexpected attempt to get llt with id = "+id_+" which already exists");
-            throw new RuntimeException("an unexpected attempt to get llt with id = "+id_+" which already exists");
-        }
         rlck.lock();
-        final LLT llt = new LLT(id_, false);
-        pool.put(llt.getId(), llt);
-        rlck.unlock();
-        return llt;
+        try {
+            return new LLT(cntr.incrementAndGet(), false, enter());
+        } finally {
+            rlck.unlock();
+        }
     }
 
-    public static LLT getLLTAndLock() {
-        final long id_ = Thread.currentThread().getId();
-        if (pool.get(id_) != null) {
-            logger.error("an unexpected attempt to get llt with id = "+id_+" which already exists");
-            throw new RuntimeException("an unexpected attempt to get llt with id = "+id_+" which already exists");
-        }
+    public static LLT getLLTAndLock() throws InterruptedException {
         if (Config.getConfig().SYNC_LOCK_ENABLE) {
             rlck.lock();
         }
-        while(poolNotEmpty()) { }
-        final LLT llt = new LLT(id_, true);
+        //prevents concurrent lock of journal and sync processes
+        lck.acquire();
+        final LLT llt = new LLT(cntr.incrementAndGet(), true, -1);
         sync.compareAndSet(0, llt.getId());
-        pool.put(llt.getId(), llt);
+        drain();
         return llt;
     }
 
-    private static boolean poolNotEmpty() {
-        final int size = pool.size();
-        return size!=0;
+    //registers new llt in the current epoch, returns counter slot
+    private static int enter() {
+        final int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        while (true) {
+            final int e = epoch;
+            final int slot = (e * STRIPES + stripe) * PAD;
+            active.incrementAndGet(slot);
+            if (epoch == e) {
+                return slot;
+            }
+            //epoch was advanced concurrently
+            active.decrementAndGet(slot);
+        }
+    }
+
+    private void exit() {
+        if (closed) {
+            logger.debug("an unexpected attempt to commit llt with id = "+id+" which already committed");
+            return;
+        }
+        closed = true;
+        active.decrementAndGet(this.slot);
+        if (this.slot / PAD / STRIPES != epoch) {
+            final Thread t = drainer;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    //advances the epoch and waits until all llts of the previous epoch are committed
+    private static void drain() {
+        final int e = epoch;
+        drainer = Thread.currentThread();
+        epoch = e ^ 1;
+        while (!drained(e)) {
+            LockSupport.parkNanos(LLT.class, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        drainer = null;
+    }
+
+    private static boolean drained(int e) {
+        for (int i = 0; i < STRIPES; i++) {
+            if (active.get((e * STRIPES + i) * PAD) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int stripes() {
+        int n = 1;
+        while (n < Runtime.getRuntime().availableProcessors() * 2) {
+            n = n << 1;
+        }
+        return n;
     }
 
     public void add(Frame b) {
@@ -109,6 +174,7 @@ public class LLT {
         if (frames.get(b.getFrameData().getFrameId()) == null) {
             frames.put(b.getFrameData().getFrameId(), b.getFrameData());
         }
+        addRedo(b.getFrameData());
     }
 
     public void add(FrameData b) {
@@ -116,20 +182,50 @@ public class LLT {
         if (frames.get(b.getFrameId()) == null) {
             frames.put(b.getFrameId(), b);
         }
+        addRedo(b);
+    }
+
+    //temp frames are not recovered, so they are not journaled
+    private static void addRedo(FrameData b) {
+        if (journal && redo.get(b.getFrameId()) == null) {
+            final DataFile df = b.getDataFile();
+            if (df == null || !df.isTemp()) {
+                redo.put(b.getFrameId(), b);
+            }
+        }
     }
 
     public void commit() throws Exception {
-        pool.remove(this.id);
+        if (closed) {
+            logger.debug("an unexpected attempt to commit llt with id = "+id+" which already committed");
+            return;
+        }
         if (this.lock) {
+            closed = true;
+            //frames remain in the changed frames list until they are written (see setSynced)
             for (Map.Entry<Long, FrameData> entry : frames.entrySet()) {
-                entry.getValue().setSynced();
                 entry.getValue().getFrame().clearSnaps(this.id);
             }
-            frames.clear();
             sync.compareAndSet(this.id, 0);
+            lck.release();
+            if (Config.getConfig().SYNC_LOCK_ENABLE) {
+                rlck.unlock();
+            }
+        } else {
+            exit();
+        }
+    }
+
+    //releases lock without sync of frames, which remain in the changed frames list
+    public void release() {
+        if (this.lock) {
+            sync.compareAndSet(this.id, 0);
+            lck.release();
             if (Config.getConfig().SYNC_LOCK_ENABLE) {
                 rlck.unlock();
             }
+        } else {
+            exit();
         }
     }
 
@@ -137,6 +233,35 @@ public class LLT {
         return frames;
     }
 
+    //removes frame from the changed frames list if its changes up to the given version are written
+    public static void setSynced(FrameData bd, long version) {
+        if (bd.setSynced(version)) {
+            frames.remove(bd.getFrameId(), bd);
+            //frame may be changed concurrently before removal
+            if (!bd.isSynced()) {
+                frames.putIfAbsent(bd.getFrameId(), bd);
+            }
+        }
+    }
+
+    //removes deallocated frame from the changed frames lists, its content must not be written
+    public static void remove(FrameData bd) {
+        frames.remove(bd.getFrameId(), bd);
+        redo.remove(bd.getFrameId(), bd);
+    }
+
+    //returns and clears list of frames changed since previous call
+    public static List<FrameData> getRedoFrames() {
+        final List<FrameData> res = new ArrayList<>();
+        for (Long id : redo.keySet()) {
+            final FrameData bd = redo.remove(id);
+            if (bd != null) {
+                res.add(bd);
+            }
+        }
+        return res;
+    }
+
     public long getId() {
         return id;
     }
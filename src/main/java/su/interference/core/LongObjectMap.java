@@ -0,0 +1,283 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.core;
+
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent open-addressing map with primitive long keys, used as MapField storage
+ * for long columns of system catalogs (frame and transaction directories).
+ * Keys are not boxed and lookups by get(long) do not allocate. The map is split
+ * to segments with linear probing; readers use optimistic stamps and writers lock
+ * only the segment of the key.
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class LongObjectMap extends AbstractMap<Object, Object> {
+    private static final int SEGMENTS = 32;
+    private static final int INITIAL_CAPACITY = 16;
+    private final Segment[] segments;
+
+    public LongObjectMap() {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private static long mix(long k) {
+        k = (k ^ (k >>> 33)) * 0xff51afd7ed558ccdL;
+        k = (k ^ (k >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+
+    private Segment segment(long h) {
+        return segments[(int) (h >>> 59) & (SEGMENTS - 1)];
+    }
+
+    public Object get(long key) {
+        final long h = mix(key);
+        return segment(h).get(key, (int) h);
+    }
+
+    public Object put(long key, Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        final long h = mix(key);
+        return segment(h).put(key, (int) h, value);
+    }
+
+    public Object remove(long key) {
+        final long h = mix(key);
+        return segment(h).remove(key, (int) h);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return key instanceof Number ? get(((Number) key).longValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        return put(((Number) key).longValue(), value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return key instanceof Number ? remove(((Number) key).longValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        int s = 0;
+        for (Segment sg : segments) {
+            s = s + sg.size;
+        }
+        return s;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment sg : segments) {
+            sg.clear();
+        }
+    }
+
+    //weakly consistent snapshot, iteration over catalogs is rare (cleanup, reports)
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        final Set<Map.Entry<Object, Object>> r = new HashSet<>();
+        for (Segment sg : segments) {
+            sg.collect(r);
+        }
+        return r;
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private volatile int size;
+
+        private Object get(long key, int h) {
+            long stamp = lock.tryOptimisticRead();
+            Object v = find(keys, values, key, h);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    v = find(keys, values, key, h);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return v;
+        }
+
+        //empty slot is marked by null value, so key 0 needs no special handling
+        private static Object find(long[] keys, Object[] values, long key, int h) {
+            if (keys.length != values.length) {
+                return null; //torn read, stamp validation fails
+            }
+            final int mask = keys.length - 1;
+            for (int i = h & mask, n = 0; n <= mask; i = (i + 1) & mask, n++) {
+                final Object v = values[i];
+                if (v == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    return v;
+                }
+            }
+            return null;
+        }
+
+        private Object put(long key, int h, Object value) {
+            final long stamp = lock.writeLock();
+            try {
+                int mask = keys.length - 1;
+                int i = h & mask;
+                while (values[i] != null) {
+                    if (keys[i] == key) {
+                        final Object prev = values[i];
+                        values[i] = value;
+                        return prev;
+                    }
+                    i = (i + 1) & mask;
+                }
+                if ((size + 1) * 4 > keys.length * 3) {
+                    resize();
+                    mask = keys.length - 1;
+                    i = h & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                }
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private Object remove(long key, int h) {
+            final long stamp = lock.writeLock();
+            try {
+                final int mask = keys.length - 1;
+                int i = h & mask;
+                while (values[i] != null) {
+                    if (keys[i] == key) {
+                        final Object prev = values[i];
+                        shift(i);
+                        size--;
+                        return prev;
+                    }
+                    i = (i + 1) & mask;
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        //backward shift deletion keeps probe sequences without tombstones
+        private void shift(int gap) {
+            final int mask = keys.length - 1;
+            int i = (gap + 1) & mask;
+            while (values[i] != null) {
+                final int home = (int) mix(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    gap = i;
+                }
+                i = (i + 1) & mask;
+            }
+            values[gap] = null;
+            keys[gap] = 0;
+        }
+
+        private void resize() {
+            final long[] okeys = keys;
+            final Object[] ovalues = values;
+            final long[] nkeys = new long[okeys.length * 2];
+            final Object[] nvalues = new Object[okeys.length * 2];
+            final int mask = nkeys.length - 1;
+            for (int j = 0; j < okeys.length; j++) {
+                if (ovalues[j] != null) {
+                    int i = (int) mix(okeys[j]) & mask;
+                    while (nvalues[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    nkeys[i] = okeys[j];
+                    nvalues[i] = ovalues[j];
+                }
+            }
+            keys = nkeys;
+            values = nvalues;
+        }
+
+        private void clear() {
+            final long stamp = lock.writeLock();
+            try {
+                keys = new long[INITIAL_CAPACITY];
+                values = new Object[INITIAL_CAPACITY];
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void collect(Set<Map.Entry<Object, Object>> r) {
+            final long stamp = lock.readLock();
+            try {
+                for (int i = 0; i < keys.length; i++) {
+                    if (values[i] != null) {
+                        r.add(new AbstractMap.SimpleImmutableEntry<>(keys[i], values[i]));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+}
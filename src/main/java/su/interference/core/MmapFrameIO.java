@@ -0,0 +1,135 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+
+package su.interference.core;
+
+import su.interference.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frame I/O which serves reads from read-only memory-mapped segments of datafile,
+ * writes are performed through positional FileChannel I/O of the superclass
+ * and become visible in mapped segments through the OS file cache.
+ * Segment covers SEGMENT_SIZE bytes of file (multiple of any frame size, so frames
+ * never cross segments boundary); last segment is remapped lazily after the file grows.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class MmapFrameIO extends ChannelFrameIO {
+
+    public static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final AtomicLong mappedBytes = new AtomicLong(0);
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    public MmapFrameIO(String fileName, String mode) throws IOException {
+        super(fileName, mode);
+    }
+
+    @Override
+    public byte[] read(long ptr, int size) throws IOException {
+        final ByteBuffer bb = segment(ptr, size);
+        if (bb == null) {
+            return super.read(ptr, size);
+        }
+        final byte[] b = new byte[size];
+        bb.get(b);
+        return b;
+    }
+
+    //returns read-only view of mapped frame region, bytes are not copied
+    @Override
+    public ByteBuffer readBuffer(long ptr, int size) throws IOException {
+        final ByteBuffer bb = segment(ptr, size);
+        if (bb == null) {
+            return super.readBuffer(ptr, size);
+        }
+        return bb;
+    }
+
+    private ByteBuffer segment(long ptr, int size) throws IOException {
+        final int idx = (int) (ptr / SEGMENT_SIZE);
+        final int offset = (int) (ptr % SEGMENT_SIZE);
+        if (offset + size > SEGMENT_SIZE) {
+            return null;
+        }
+        final MappedByteBuffer[] segments = this.segments;
+        MappedByteBuffer segment = idx < segments.length ? segments[idx] : null;
+        if (segment == null || segment.capacity() < offset + size) {
+            segment = remap(idx, offset + size);
+            if (segment == null) {
+                return null;
+            }
+        }
+        final ByteBuffer bb = segment.duplicate();
+        bb.position(offset);
+        bb.limit(offset + size);
+        return bb.slice();
+    }
+
+    private synchronized MappedByteBuffer remap(int idx, int required) throws IOException {
+        final MappedByteBuffer[] segments = this.segments;
+        final MappedByteBuffer current = idx < segments.length ? segments[idx] : null;
+        if (current != null && current.capacity() >= required) {
+            return current;
+        }
+        final long start = (long) idx * SEGMENT_SIZE;
+        final long size = Math.min(SEGMENT_SIZE, length() - start);
+        if (size < required) {
+            return null;
+        }
+        //mapped region must not exceed file length, otherwise FileChannel.map extends the file
+        final MappedByteBuffer segment = getChannel().map(FileChannel.MapMode.READ_ONLY, start, size);
+        final MappedByteBuffer[] updated = new MappedByteBuffer[Math.max(segments.length, idx + 1)];
+        System.arraycopy(segments, 0, updated, 0, segments.length);
+        updated[idx] = segment;
+        this.segments = updated;
+        Metrics.get("mmapRemaps").put();
+        Metrics.get("mmapBytes").put(mappedBytes.addAndGet(size - (current == null ? 0 : current.capacity())));
+        return segment;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mappedBytes.addAndGet(-mapped());
+        this.segments = new MappedByteBuffer[0];
+        super.close();
+    }
+
+    private long mapped() {
+        long size = 0;
+        for (MappedByteBuffer segment : this.segments) {
+            size = size + (segment == null ? 0 : segment.capacity());
+        }
+        return size;
+    }
+
+}
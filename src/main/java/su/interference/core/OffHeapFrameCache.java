@@ -0,0 +1,183 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.core;
+
+import su.interference.metrics.Metrics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Second tier of frame cache: encoded bytes of frames evicted from heap are kept in direct memory,
+ * re-read of frame decodes it from here without read from datafile. Direct memory is allocated
+ * by slabs, which are divided into slots of frame size and reused, slabs are not released.
+ * When the cache is full, least recently stored frame of the same size is replaced.
+ * Entry is removed when frame is decoded again, so decoded frame in heap is the only actual copy,
+ * and when frame is written to datafile, so entry is never older than datafile.
+ * Cache is divided into stripes by frame id, each stripe has own lock, capacity and free slots.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class OffHeapFrameCache {
+
+    private static final int SLAB_FRAMES = 64;
+    private static final OffHeapFrameCache cache = new OffHeapFrameCache(Config.getConfig().BUFFER_OFFHEAP_SIZE * 1048576L);
+    private final Stripe[] stripes;
+    private final AtomicLong allocated = new AtomicLong();
+
+    public static OffHeapFrameCache getCache() {
+        return cache;
+    }
+
+    private OffHeapFrameCache(long capacity) {
+        int n = 1;
+        while (n < Runtime.getRuntime().availableProcessors() * 2) {
+            n = n << 1;
+        }
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe(capacity / n);
+        }
+    }
+
+    private Stripe stripe(long frameId) {
+        final int h = (int) (frameId ^ (frameId >>> 32)) * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    public void put(long frameId, byte[] b) {
+        stripe(frameId).put(frameId, b);
+    }
+
+    //returns bytes of frame and removes it from the cache
+    public byte[] take(long frameId) {
+        final byte[] b = stripe(frameId).take(frameId);
+        Metrics.get(b == null ? "offheapMisses" : "offheapHits").put();
+        return b;
+    }
+
+    public void remove(long frameId) {
+        stripe(frameId).remove(frameId);
+    }
+
+    private class Stripe {
+        private final long capacity;
+        private long allocated;
+        private final Map<Integer, ArrayDeque<ByteBuffer>> free = new HashMap<>();
+        //frames by slot size in order of store, eldest frame of the same size is replaced
+        private final Map<Integer, LinkedHashMap<Long, ByteBuffer>> frames = new HashMap<>();
+
+        private Stripe(long capacity) {
+            this.capacity = capacity;
+        }
+
+        private synchronized void put(long frameId, byte[] b) {
+            ByteBuffer slot = remove_(frameId);
+            if (slot != null && slot.capacity() != b.length) {
+                release(slot);
+                slot = null;
+            }
+            if (slot == null) {
+                slot = allocate(b.length);
+                if (slot == null) {
+                    return;
+                }
+            }
+            slot.clear();
+            slot.put(b);
+            frames.computeIfAbsent(b.length, k -> new LinkedHashMap<>()).put(frameId, slot);
+        }
+
+        private synchronized byte[] take(long frameId) {
+            final ByteBuffer slot = remove_(frameId);
+            if (slot == null) {
+                return null;
+            }
+            final byte[] b = new byte[slot.capacity()];
+            slot.clear();
+            slot.get(b);
+            release(slot);
+            return b;
+        }
+
+        private synchronized void remove(long frameId) {
+            final ByteBuffer slot = remove_(frameId);
+            if (slot != null) {
+                release(slot);
+            }
+        }
+
+        //frames of stripe usually have one or two sizes (data and index frames)
+        private ByteBuffer remove_(long frameId) {
+            for (LinkedHashMap<Long, ByteBuffer> f : frames.values()) {
+                final ByteBuffer slot = f.remove(frameId);
+                if (slot != null) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+
+        private ByteBuffer allocate(int size) {
+            final ArrayDeque<ByteBuffer> q = free.computeIfAbsent(size, k -> new ArrayDeque<>());
+            if (q.isEmpty()) {
+                final int amt = (int) Math.min(SLAB_FRAMES, (capacity - allocated) / size);
+                if (amt > 0) {
+                    final ByteBuffer slab = ByteBuffer.allocateDirect(size * amt);
+                    for (int i = 0; i < amt; i++) {
+                        slab.limit(size * (i + 1));
+                        slab.position(size * i);
+                        q.add(slab.slice());
+                    }
+                    allocated = allocated + (long) size * amt;
+                    Metrics.get("offheapBytes").put(OffHeapFrameCache.this.allocated.addAndGet((long) size * amt));
+                } else {
+                    final LinkedHashMap<Long, ByteBuffer> f = frames.get(size);
+                    if (f == null || f.isEmpty()) {
+                        return null;
+                    }
+                    final Iterator<ByteBuffer> it = f.values().iterator();
+                    final ByteBuffer slot = it.next();
+                    it.remove();
+                    Metrics.get("offheapEvictions").put();
+                    return slot;
+                }
+            }
+            return q.poll();
+        }
+
+        private void release(ByteBuffer slot) {
+            free.get(slot.capacity()).add(slot);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+
+package su.interference.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Legacy seek+read/write frame I/O, all operations serialized by file monitor.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class RAFFrameIO implements FrameIO {
+
+    private final RandomAccessFile file;
+
+    public RAFFrameIO(RandomAccessFile file) {
+        this.file = file;
+    }
+
+    public synchronized byte[] read(long ptr, int size) throws IOException {
+        final byte[] b = new byte[size];
+        this.file.seek(ptr);
+        this.file.read(b, 0, size);
+        return b;
+    }
+
+    public ByteBuffer readBuffer(long ptr, int size) throws IOException {
+        return ByteBuffer.wrap(read(ptr, size));
+    }
+
+    public synchronized void write(long ptr, byte[] b) throws IOException {
+        this.file.seek(ptr);
+        this.file.write(b);
+    }
+
+    public synchronized void write(long ptr, byte[][] b) throws IOException {
+        int size = 0;
+        for (byte[] f : b) {
+            size = size + f.length;
+        }
+        final byte[] run = new byte[size];
+        int pos = 0;
+        for (byte[] f : b) {
+            System.arraycopy(f, 0, run, pos, f.length);
+            pos = pos + f.length;
+        }
+        this.file.seek(ptr);
+        this.file.write(run);
+    }
+
+    public synchronized long length() throws IOException {
+        return this.file.length();
+    }
+
+    public synchronized void extend(long size) throws IOException {
+        this.file.setLength(this.file.length()+size);
+    }
+
+    public synchronized void force() throws IOException {
+        this.file.getFD().sync();
+    }
+
+    public synchronized void close() throws IOException {
+        //file closed by owner DataFile
+    }
+
+}
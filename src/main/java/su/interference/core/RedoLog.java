@@ -0,0 +1,527 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+
+package su.interference.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import su.interference.exception.InternalException;
+import su.interference.metrics.Metrics;
+import su.interference.persistent.DataFile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only redo journal, which stores row-level changes of frames.
+ * Journal consists of segments (jrnlfile.N), records of each segment starts
+ * with full image of frame, subsequent records of the same frame contains changed
+ * frame header, changed rows (row header + chunk bytes), delete markers of removed rows
+ * and row order of frame, if it differs from the order of applied changes (new rows are appended).
+ * Records are written by single appender thread, which performs one fsync for all
+ * batches accumulated during the previous write. Each batch ends with marker record,
+ * records of batch without marker (torn by crash) are not applied during restore.
+ * Checkpoint switches journal to the new segment, writes dirty frames to datafiles
+ * and removes previous segments. During startup, records of all existing segments
+ * are applied to frames from datafiles.
+ *
+ * record: int length, long lsn, byte type, long frameId, int frameSize, int row ptr, bytes, int crc32
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class RedoLog implements Runnable {
+
+    public static final byte REDO_IMAGE  = 1;
+    public static final byte REDO_HEADER = 2;
+    public static final byte REDO_PUT    = 3;
+    public static final byte REDO_DELETE = 4;
+    public static final byte REDO_END    = 5;
+    public static final byte REDO_ORDER  = 6;
+    private static final int RECORD_HEADER_SIZE = 29;
+
+    private final String path;
+    private final AtomicLong lsn;
+    private final LinkedBlockingQueue<Batch> queue = new LinkedBlockingQueue<>();
+    private final Map<Long, byte[]> images = new HashMap<>();
+    private CompletableFuture<Long> last = CompletableFuture.completedFuture(0L);
+    private final Thread appender;
+    private volatile long segment;
+    private volatile long switchLsn;
+    private volatile long checkpointLsn;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private final static Logger logger = LoggerFactory.getLogger(RedoLog.class);
+
+    public RedoLog(String path, long lsn) throws IOException {
+        this.path = path;
+        this.lsn = new AtomicLong(lsn);
+        this.checkpointLsn = lsn;
+        final long[] segments = getSegments(path);
+        this.segment = segments.length == 0 ? 1 : segments[segments.length - 1] + 1;
+        open(this.segment);
+        this.appender = new Thread(this);
+        this.appender.setDaemon(true);
+        this.appender.start();
+    }
+
+    private void open(long segment) throws IOException {
+        this.file = new RandomAccessFile(getSegmentName(path, segment), "rw");
+        this.channel = this.file.getChannel();
+        this.channel.position(this.channel.size());
+    }
+
+    public long getLsn() {
+        return lsn.get();
+    }
+
+    //all records up to this lsn are applied to datafiles
+    public long getCheckpointLsn() {
+        return checkpointLsn;
+    }
+
+    //called under llt lock: frames are not changed during this call
+    public synchronized CompletableFuture<Long> log(List<Frame> frames) throws Exception {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final DataOutputStream os = new DataOutputStream(bos);
+        int records = 0;
+        for (Frame f : frames) {
+            final byte[] b = f.getFrame();
+            final long frameId = f.getPtr();
+            final byte[] prev = images.put(frameId, b);
+            if (prev == null) {
+                write(os, REDO_IMAGE, frameId, b.length, 0, b, 0, getBytesAmount(b));
+                records++;
+            } else {
+                //bytes amount and checksum are not compared, they are recalculated during restore
+                if (!equals(prev, 0, b, 0, 24) || !equals(prev, 28, b, 28, FrameChecksum.CHECKSUM_OFFSET - 28)) {
+                    write(os, REDO_HEADER, frameId, b.length, 0, b, 0, Frame.FRAME_HEADER_SIZE);
+                    records++;
+                }
+                final Map<Integer, int[]> prows = getRows(prev);
+                final Map<Integer, int[]> rows = getRows(b);
+                //rows of index frames are stored in key order
+                final List<Integer> order = new ArrayList<>();
+                for (Integer p : prows.keySet()) {
+                    if (rows.containsKey(p)) {
+                        order.add(p);
+                    }
+                }
+                for (Integer p : rows.keySet()) {
+                    if (!prows.containsKey(p)) {
+                        order.add(p);
+                    }
+                }
+                for (int[] r : rows.values()) {
+                    final int[] p = prows.remove(r[0]);
+                    if (p == null || p[2] != r[2] || !equals(prev, p[1], b, r[1], r[2])) {
+                        write(os, REDO_PUT, frameId, b.length, r[0], b, r[1], r[2]);
+                        records++;
+                    }
+                }
+                for (int[] p : prows.values()) {
+                    write(os, REDO_DELETE, frameId, b.length, p[0], b, 0, 0);
+                    records++;
+                }
+                if (!order.equals(new ArrayList<>(rows.keySet()))) {
+                    final ByteBuffer ob = ByteBuffer.allocate(rows.size() * 4);
+                    for (Integer p : rows.keySet()) {
+                        ob.putInt(p);
+                    }
+                    write(os, REDO_ORDER, frameId, b.length, 0, ob.array(), 0, ob.capacity());
+                    records++;
+                }
+            }
+        }
+        if (records == 0) {
+            //nothing to write, but changes captured by previous calls may be not synced yet
+            return last;
+        }
+        write(os, REDO_END, 0, 0, 0, null, 0, 0);
+        os.flush();
+        final Batch batch = new Batch(bos.toByteArray(), records, lsn.get(), 0);
+        queue.put(batch);
+        last = batch.future;
+        return batch.future;
+    }
+
+    //starts new segment, all frames will be written to the new segment as full images
+    public synchronized long switchSegment() throws InterruptedException {
+        images.clear();
+        segment++;
+        switchLsn = lsn.get();
+        queue.put(new Batch(null, 0, lsn.get(), segment));
+        return segment;
+    }
+
+    //removes segments before the given one, datafiles must be synced before call
+    public void checkpoint(long segment) throws Exception {
+        for (long s : getSegments(path)) {
+            if (s < segment) {
+                if (!new File(getSegmentName(path, s)).delete()) {
+                    logger.warn("unable to delete journal segment " + getSegmentName(path, s));
+                }
+            }
+        }
+        if (segment == this.segment) {
+            checkpointLsn = switchLsn;
+            Metrics.get("checkpointLsn").put(checkpointLsn);
+        }
+    }
+
+    public void close() throws Exception {
+        final Batch batch = new Batch(null, 0, lsn.get(), -1);
+        queue.put(batch);
+        batch.future.get();
+        appender.join();
+    }
+
+    private void write(DataOutputStream os, byte type, long frameId, int frameSize, int ptr, byte[] b, int off, int len) throws IOException {
+        final ByteBuffer bb = ByteBuffer.allocate(RECORD_HEADER_SIZE - 4 + len);
+        bb.putLong(lsn.incrementAndGet());
+        bb.put(type);
+        bb.putLong(frameId);
+        bb.putInt(frameSize);
+        bb.putInt(ptr);
+        if (len > 0) {
+            bb.put(b, off, len);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bb.array(), 0, bb.capacity());
+        os.writeInt(bb.capacity());
+        os.write(bb.array());
+        os.writeInt((int) crc.getValue());
+    }
+
+    public void run() {
+        Thread.currentThread().setName("interference-redo-appender-thread-"+Thread.currentThread().getId());
+        final List<Batch> batches = new ArrayList<>();
+        final List<Batch> pending = new ArrayList<>();
+        while (true) {
+            try {
+                batches.add(queue.take());
+                queue.drainTo(batches);
+                for (Batch b : batches) {
+                    if (b.segment == 0) {
+                        final ByteBuffer bb = ByteBuffer.wrap(b.data);
+                        while (bb.hasRemaining()) {
+                            channel.write(bb);
+                        }
+                        pending.add(b);
+                    } else {
+                        sync(pending);
+                        channel.close();
+                        file.close();
+                        if (b.segment < 0) {
+                            b.future.complete(b.lsn);
+                            return;
+                        }
+                        open(b.segment);
+                        b.future.complete(b.lsn);
+                    }
+                }
+                sync(pending);
+            } catch (InterruptedException e) {
+                logger.error("redo appender thread was interrupted", e);
+                return;
+            } catch (Exception e) {
+                logger.error("exception occured during write to journal", e);
+                for (Batch b : batches) {
+                    b.future.completeExceptionally(e);
+                }
+            }
+            batches.clear();
+            pending.clear();
+        }
+    }
+
+    private void sync(List<Batch> pending) throws IOException {
+        if (pending.size() > 0) {
+            Metrics.get("journalFsync").start();
+            channel.force(false);
+            Metrics.get("journalFsync").stop();
+            int records = 0;
+            for (Batch b : pending) {
+                records = records + b.records;
+                b.future.complete(b.lsn);
+            }
+            Metrics.get("journalBatchSize").put(records);
+            pending.clear();
+        }
+    }
+
+    //applies records of all journal segments to datafiles and removes segments, returns last lsn
+    public static long restore(String path) throws Exception {
+        final Map<Long, FrameImage> frames = new LinkedHashMap<>();
+        final long[] segments = getSegments(path);
+        final List<byte[]> batch = new ArrayList<>();
+        long last = 0;
+        for (long s : segments) {
+            final String name = getSegmentName(path, s);
+            batch.clear();
+            try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(name)))) {
+                while (true) {
+                    final int len;
+                    final byte[] b;
+                    final int crc_;
+                    try {
+                        len = is.readInt();
+                        if (len < RECORD_HEADER_SIZE - 4) {
+                            logger.warn("invalid record length in journal segment " + name + ", restore of segment stopped");
+                            break;
+                        }
+                        b = new byte[len];
+                        is.readFully(b);
+                        crc_ = is.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    final CRC32 crc = new CRC32();
+                    crc.update(b, 0, len);
+                    if ((int) crc.getValue() != crc_) {
+                        logger.warn("invalid checksum of record in journal segment " + name + ", restore of segment stopped");
+                        break;
+                    }
+                    if (b[8] == REDO_END) {
+                        for (byte[] r : batch) {
+                            apply(frames, r);
+                        }
+                        batch.clear();
+                        last = ByteBuffer.wrap(b).getLong();
+                    } else {
+                        batch.add(b);
+                    }
+                }
+            }
+            if (batch.size() > 0) {
+                logger.warn(batch.size() + " records of incomplete batch in journal segment " + name + " were not applied");
+            }
+        }
+        final Map<Integer, DataFile> dfs = new HashMap<>();
+        for (Map.Entry<Long, FrameImage> entry : frames.entrySet()) {
+            final int file = (int) (entry.getKey() % 4096);
+            final long ptr = entry.getKey() - file;
+            final DataFile df = Storage.getStorage().getDataFileById(file);
+            df.writeFrame(ptr, entry.getValue().getBytes());
+            df.restoreFramePtr(ptr + entry.getValue().size);
+            dfs.put(file, df);
+        }
+        for (DataFile df : dfs.values()) {
+            df.force();
+        }
+        if (frames.size() > 0) {
+            logger.info(frames.size() + " frames restored from journal, last lsn = " + last);
+        }
+        drop(path);
+        return last;
+    }
+
+    private static void apply(Map<Long, FrameImage> frames, byte[] b) throws Exception {
+        final ByteBuffer bb = ByteBuffer.wrap(b);
+        bb.getLong();
+        final byte type = bb.get();
+        final long frameId = bb.getLong();
+        final int frameSize = bb.getInt();
+        final int ptr = bb.getInt();
+        final byte[] data = Arrays.copyOfRange(b, RECORD_HEADER_SIZE - 4, b.length);
+        FrameImage f = frames.get(frameId);
+        if (type == REDO_IMAGE) {
+            f = new FrameImage(frameSize, data);
+            frames.put(frameId, f);
+        } else {
+            if (f == null) {
+                f = new FrameImage(frameSize, readFrame(frameId, frameSize));
+                frames.put(frameId, f);
+            }
+            if (type == REDO_HEADER) {
+                f.header = data;
+            } else if (type == REDO_PUT) {
+                f.rows.put(ptr, data);
+            } else if (type == REDO_DELETE) {
+                f.rows.remove(ptr);
+            } else if (type == REDO_ORDER) {
+                final Map<Integer, byte[]> rows = new LinkedHashMap<>();
+                final ByteBuffer ob = ByteBuffer.wrap(data);
+                while (ob.hasRemaining()) {
+                    final int p = ob.getInt();
+                    if (f.rows.containsKey(p)) {
+                        rows.put(p, f.rows.get(p));
+                    }
+                }
+                rows.putAll(f.rows);
+                f.rows.clear();
+                f.rows.putAll(rows);
+            } else {
+                throw new InternalException();
+            }
+        }
+    }
+
+    public static void drop(String path) {
+        for (long s : getSegments(path)) {
+            new File(getSegmentName(path, s)).delete();
+        }
+    }
+
+    private static byte[] readFrame(long frameId, int frameSize) throws Exception {
+        final int file = (int) (frameId % 4096);
+        final DataFile df = Storage.getStorage().getDataFileById(file);
+        final byte[] b = df.readDataFromPtr(frameId - file, frameSize);
+        return b == null || b.length < Frame.FRAME_HEADER_SIZE ? new byte[Frame.FRAME_HEADER_SIZE] : b;
+    }
+
+    private static long[] getSegments(String path) {
+        final String prefix = Instance.JRNL_FILE + ".";
+        final File[] files = new File(path).listFiles();
+        final List<Long> res = new ArrayList<>();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().startsWith(prefix)) {
+                    try {
+                        res.add(Long.valueOf(f.getName().substring(prefix.length())));
+                    } catch (NumberFormatException e) {
+                        logger.warn("unknown file in journal path: " + f.getName());
+                    }
+                }
+            }
+        }
+        final long[] segments = new long[res.size()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = res.get(i);
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static String getSegmentName(String path, long segment) {
+        return path + Instance.getInstance().getFileSeparator() + Instance.JRNL_FILE + "." + segment;
+    }
+
+    private static int getBytesAmount(byte[] b) {
+        final int amt = ByteBuffer.wrap(b).getInt(24);
+        return amt < Frame.FRAME_HEADER_SIZE || amt > b.length ? b.length : amt;
+    }
+
+    //index frames are stored in index files, frames of temp files are not journaled
+    private static int getRowHeaderSize(byte[] b) throws Exception {
+        final DataFile df = Storage.getStorage().getDataFileById(ByteBuffer.wrap(b).getInt(0));
+        return df != null && df.isIndex() ? Frame.INDEX_HEADER_SIZE : Frame.ROW_HEADER_SIZE;
+    }
+
+    //returns row ptr -> {ptr, offset, length with row header} in order of rows in frame
+    private static Map<Integer, int[]> getRows(byte[] b) throws Exception {
+        final Map<Integer, int[]> res = new LinkedHashMap<>();
+        final int hsize = getRowHeaderSize(b);
+        final int amt = getBytesAmount(b);
+        int offset = Frame.FRAME_HEADER_SIZE;
+        while (offset + hsize <= amt) {
+            final int len = ((b[offset + 10] & 0xff) << 8) | (b[offset + 11] & 0xff);
+            final int ptr = ((b[offset + 12] & 0xff) << 8) | (b[offset + 13] & 0xff);
+            if (ptr == 0 || len == 0) {
+                break;
+            }
+            res.put(ptr, new int[]{ptr, offset, hsize + len});
+            offset = offset + hsize + len;
+        }
+        return res;
+    }
+
+    private static boolean equals(byte[] b1, int off1, byte[] b2, int off2, int len) {
+        for (int i = 0; i < len; i++) {
+            if (b1[off1 + i] != b2[off2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Batch {
+        private final byte[] data;
+        private final int records;
+        private final long lsn;
+        //0 - records, >0 - switch to segment, <0 - close journal
+        private final long segment;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private Batch(byte[] data, int records, long lsn, long segment) {
+            this.data = data;
+            this.records = records;
+            this.lsn = lsn;
+            this.segment = segment;
+        }
+    }
+
+    private static class FrameImage {
+        private final int size;
+        private byte[] header;
+        private final Map<Integer, byte[]> rows = new LinkedHashMap<>();
+
+        private FrameImage(int size, byte[] b) throws Exception {
+            this.size = size;
+            this.header = Arrays.copyOfRange(b, 0, Frame.FRAME_HEADER_SIZE);
+            for (int[] r : getRows(b).values()) {
+                rows.put(r[0], Arrays.copyOfRange(b, r[1], r[1] + r[2]));
+            }
+        }
+
+        private byte[] getBytes() throws InternalException {
+            final ByteBuffer bb = ByteBuffer.allocate(size);
+            bb.put(header);
+            for (byte[] r : rows.values()) {
+                if (bb.remaining() < r.length) {
+                    throw new InternalException();
+                }
+                bb.put(r);
+            }
+            bb.putInt(24, bb.position());
+            bb.putInt(FrameChecksum.CHECKSUM_OFFSET, 0);
+            if (Config.getConfig().CHECKSUM_ENABLE) {
+                FrameChecksum.put(bb.array());
+            }
+            return bb.array();
+        }
+    }
+
+}
@@ -59,6 +59,20 @@ public class RowHeader implements Header, Comparable {
         setRowID(new RowId(file, frame, ptr));
     }
 
+    // decodes header at the given position of frame buffer
+    public RowHeader (ByteBuffer bb, int pos, int hsize, int file, long frame) {
+        setTransId(bb.getLong(pos));
+        setTran(Instance.getInstance().getTransactionById(transId));
+        setState(bb.getShort(pos+8) & 0xFFFF);
+        setLen(bb.getShort(pos+10) & 0xFFFF);
+        setPtr(bb.getShort(pos+12) & 0xFFFF);
+        setRes(bb.getShort(pos+14) & 0xFFFF);
+        if (hsize == Frame.INDEX_HEADER_SIZE) {
+            setFramePtr(new RowId(bb, pos+16));
+        }
+        setRowID(new RowId(file, frame, ptr));
+    }
+
     public RowHeader (RowHeader rh) {
         setTran(rh.getTran());
         setState(rh.getState());
@@ -89,15 +103,21 @@ public class RowHeader implements Header, Comparable {
     }
 
     public byte[] getHeader() {
-        byte[] res = getBytesFromLong(this.tran==null?0:this.tran.getTransId());
-        res = append(res, substring(getBytesFromInt(this.state),2,4));
-        res = append(res, substring(getBytesFromInt(this.len),2,4));
-        res = append(res, substring(getBytesFromInt(this.ptr),2,4));
-        res = append(res, substring(getBytesFromInt(this.res),2,4));
+        final ByteBuffer bb = ByteBuffer.allocate(getHeaderSize());
+        putHeader(bb);
+        return bb.array();
+    }
+
+    // writes header at the current position of frame buffer
+    public void putHeader(ByteBuffer bb) {
+        bb.putLong(this.tran==null?0:this.tran.getTransId());
+        bb.putShort((short)this.state);
+        bb.putShort((short)this.len);
+        bb.putShort((short)this.ptr);
+        bb.putShort((short)this.res);
         if (framePtr!=null) {
-            res = append(res,framePtr.getBytes());
+            framePtr.putBytes(bb);
         }
-        return res;
     }
 
     protected int getHeaderSize() {
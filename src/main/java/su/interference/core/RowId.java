@@ -55,6 +55,12 @@ public class RowId implements Comparable {
         this.row  = getIntFromBytes(substring(rowid,12,16));
     }
 
+    public RowId (ByteBuffer bb, int pos) {
+        this.file = bb.getInt(pos);
+        this.frame  = bb.getLong(pos+4);
+        this.row  = bb.getInt(pos+12);
+    }
+
     public boolean equals (RowId r) {
         return (this.getFileId() == r.getFileId()) && (this.getFramePointer() == r.getFramePointer()) && (this.getRowPointer() == r.getRowPointer());
     }
@@ -68,11 +74,15 @@ public class RowId implements Comparable {
     }
 
     public byte[] getBytes () {
-        byte[] res = new byte[]{};
-        res = append(res, getBytesFromInt(getFileId()));
-        res = append(res, getBytesFromLong(getFramePointer()));
-        res = append(res, getBytesFromInt(getRowPointer()));
-        return res;
+        final ByteBuffer bb = ByteBuffer.allocate(16);
+        putBytes(bb);
+        return bb.array();
+    }
+
+    public void putBytes (ByteBuffer bb) {
+        bb.putInt(getFileId());
+        bb.putLong(getFramePointer());
+        bb.putInt(getRowPointer());
     }
 
     public String toString()  {
@@ -44,7 +44,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Yuriy Glotanov
@@ -58,9 +57,9 @@ public class Storage {
     private HashMap<Integer, DataFile> dfs;
     //datafiles list for system init
     private final HashMap<Integer, DataFile> ifs;
-    private RandomAccessFile jrnFile;
+    private RedoLog redo;
+    private long lsn;
     private RandomAccessFile errFile;
-    private final AtomicLong jrnptr = new AtomicLong();
 
     public final int INITFILE_ID;
     public final int UNDOFILE_ID;
@@ -166,37 +165,24 @@ public class Storage {
         return storage;
     }
 
-    protected void clearJournal() throws IOException {
-        if (jrnFile.length()>0) {
-            jrnFile.setLength(0);
-            jrnptr.set(0);
+    public RedoLog getRedoLog() {
+        return redo;
+    }
+
+    //completes checkpoint: all frames changed before switch to the given journal segment are written to datafiles
+    protected void clearJournal(long segment) throws Exception {
+        if (redo != null && segment > 0) {
+            for (Map.Entry<Integer, DataFile> e : dfs.entrySet()) {
+                e.getValue().force();
+            }
+            redo.checkpoint(segment);
         }
     }
 
-    protected void restoreJournal() throws IOException, InternalException, IllegalAccessException, InstantiationException, ClassNotFoundException {
-        final int framesize = Config.getConfig().FRAMESIZE;
+    //datafiles must be opened before call
+    protected void restoreJournal() throws Exception {
         if (state == STORAGE_STATE_CLOSED) {
-            if (jrnFile == null) {
-                jrnFile = new RandomAccessFile(Config.getConfig().JOURNAL_PATH + Instance.getInstance().getFileSeparator() + Instance.JRNL_FILE, Config.getConfig().DISKIO_MODE);
-                if (jrnFile.length()>0) {
-                    if (jrnFile.length()<framesize) {
-                        throw new InternalException();
-                    }
-                    if (jrnFile.length()%framesize>0) {
-                        throw new InternalException();
-                    }
-                    final long amt = jrnFile.length()/framesize;
-                    for (long i=0; i<amt; i++) {
-                        final long ptr = i*framesize;
-                        jrnFile.seek(ptr);
-                        byte[] b = new byte[framesize];
-                        jrnFile.read(b, 0, framesize);
-                        Frame frame = new Frame(b);
-                        writeFrame(b, frame.getPtr());
-                    }
-                }
-                clearJournal();
-            }
+            lsn = RedoLog.restore(Config.getConfig().JOURNAL_PATH);
         }
     }
 
@@ -375,9 +361,8 @@ public class Storage {
         }
 
         try {
-            if (jrnFile == null) {
-                jrnFile = new RandomAccessFile(Config.getConfig().JOURNAL_PATH + Instance.getInstance().getFileSeparator() + Instance.JRNL_FILE, Config.getConfig().DISKIO_MODE);
-                jrnFile.seek(0);
+            if (redo == null && Config.getConfig().JOURNAL_REDO_ENABLE) {
+                redo = new RedoLog(Config.getConfig().JOURNAL_PATH, lsn);
             }
         } catch(Exception e) {
             logger.error(e.getMessage());
@@ -425,9 +410,9 @@ public class Storage {
         for (int i=0; i<files.length; i++) {
             files[i].closeFile();
         }
-        try { if (!(jrnFile==null)) { jrnFile.close(); } } catch (IOException e) {}
+        try { if (!(redo==null)) { redo.close(); } } catch (Exception e) {}
         try { if (!(errFile==null)) { errFile.close(); } } catch (IOException e) {}
-        jrnFile=null;
+        redo=null;
         errFile=null;
         dfs = null;
         state = STORAGE_STATE_CLOSED;
@@ -443,6 +428,7 @@ public class Storage {
             }
             File jf = new File(Config.getConfig().JOURNAL_PATH + Instance.getInstance().getFileSeparator() + Instance.JRNL_FILE);
             jf.delete();
+            RedoLog.drop(Config.getConfig().JOURNAL_PATH);
             File ef = new File(Config.getConfig().JOURNAL_PATH + Instance.getInstance().getFileSeparator() + Instance.LOG_FILE);
             ef.delete();
         }
@@ -463,29 +449,6 @@ public class Storage {
         return 0;
     }
 
-    public int writeFrameWithBackup (byte[] b, long frameId) throws IOException, InternalException, ClassNotFoundException, IllegalAccessException, InstantiationException {
-        final long file = frameId%4096;
-        final long ptr = frameId - file;
-        final DataFile f = getDataFileById((int)file);
-        final byte[] bb = f.readDataFromPtr(ptr, b.length);
-        if (bb!=null) {
-            jrnFile.seek(jrnptr.getAndAdd(bb.length));
-            jrnFile.write(bb);
-        }
-        f.writeFrame(ptr, b);
-        return 0;
-    }
-
-    public int writeFrameWithBackup (final DataFile f, final byte[] b, final long ptr) throws IOException, InternalException {
-        final byte[] bb = f.readDataFromPtr(ptr, b.length);
-        if (bb != null) {
-            jrnFile.seek(jrnptr.getAndAdd(bb.length));
-            jrnFile.write(bb);
-        }
-        f.writeFrame(ptr, b);
-        return 0;
-    }
-
     //bootstrap subsystem - first index generate by objectId
     @SuppressWarnings("ConditionalBreakInInfiniteLoop")
     private synchronized IndexList bootstrapFrameLoad() throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException, InternalException, NoSuchMethodException {
@@ -25,6 +25,7 @@
 package su.interference.core;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -32,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import su.interference.persistent.*;
 import su.interference.exception.*;
+import su.interference.metrics.Metrics;
 import su.interference.sql.ContainerFrame;
 import su.interference.sql.FrameApi;
 import su.interference.sql.SQLCursor;
@@ -45,59 +47,85 @@ import su.interference.transport.TransportSyncTask;
 public class SyncQueue implements Runnable, ManagedProcess {
 
     private volatile boolean f = true;
-    private volatile boolean running = false;
+    private final AtomicBoolean running = new AtomicBoolean();
     private final ExecutorService pool = Executors.newFixedThreadPool(Config.getConfig().FILES_AMOUNT);
     private final ExecutorService pool2 = Executors.newFixedThreadPool(1);
     CountDownLatch latch;
     private final static Logger logger = LoggerFactory.getLogger(SyncQueue.class);
-    protected final static Object synclock = new Object();
+    private final RateLimiter limiter = Config.getConfig().SYNC_RATE == 0 ? null : new RateLimiter(Config.getConfig().SYNC_RATE * 1048576L);
+    private final Object commitlock = new Object();
+    private final Object journallock = new Object();
+    private CommitGroup openGroup;
+    private JournalPass nextPass;
 
     public SyncQueue() {
     }
 
-    private synchronized boolean syncFramesFromQueue() throws Exception {
-        synchronized (synclock) {
-            if (running) {
-                return false;
-            }
-            running = true;
-            final LLT llt = LLT.getLLTAndLock();
-            final int famt = Storage.getStorage().getFiles() == null ? 0 : Storage.getStorage().getFiles().size();
-            logger.debug("sync procedure was started with frames amount=" + LLT.getFrames().size());
-
+    //changed frames are captured under llt lock and written to datafiles after lock release,
+    //frames changed during writes remain in the changed frames list until next sync
+    private boolean syncFramesFromQueue(RateLimiter limiter) throws Exception {
+        //writes of two syncs must not be mixed: the older write of frame may overwrite the newer one
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        if (limiter != null) {
+            limiter.resume();
+        }
+        try {
+            final RedoLog redo = Storage.getStorage().getRedoLog();
             final ArrayList<SyncFrame> frames = new ArrayList<>();
             final Map<Integer, List<FrameApi>> frames_ = new HashMap<>();
             final ArrayList<FreeFrame> fframes = new ArrayList<>();
+            final Map<FrameData, Long> versions = new IdentityHashMap<>();
             final Session s = Session.getDntmSession();
+            final long segment;
 
-            for (Map.Entry<Long, FrameData> entry : LLT.getFrames().entrySet()) {
-                FreeFrame fb = null;
-                try {
-                    final Frame f = entry.getValue().getFrame();
-                    frames.add(new SyncFrame(f, s, fb));
-                    if (f.isLocal()) {
-                        if (frames_.get(f.getObjectId()) == null) {
-                            frames_.put(f.getObjectId(), new ArrayList<>());
+            final LLT llt = LLT.getLLTAndLock();
+            boolean committed = false;
+            try {
+                segment = redo == null || LLT.getFrames().isEmpty() ? 0 : redo.switchSegment();
+                logger.debug("sync procedure was started with frames amount=" + LLT.getFrames().size());
+
+                for (Map.Entry<Long, FrameData> entry : LLT.getFrames().entrySet()) {
+                    FreeFrame fb = null;
+                    try {
+                        final Frame f = entry.getValue().getFrame();
+                        versions.put(entry.getValue(), entry.getValue().getVersion());
+                        frames.add(new SyncFrame(f, s, fb));
+                        if (f.isLocal()) {
+                            if (frames_.get(f.getObjectId()) == null) {
+                                frames_.put(f.getObjectId(), new ArrayList<>());
+                            }
+                            frames_.get(f.getObjectId()).add(f.getFrameData());
                         }
-                        frames_.get(f.getObjectId()).add(f.getFrameData());
+                    } catch (MissingSyncFrameException e) {
+                        logger.debug("Unable to sync frame " + ((FrameData) entry.getValue()).getPtr() + " because removed by freeing");
+                        versions.remove(entry.getValue());
+                        LLT.getFrames().remove(entry.getKey(), entry.getValue());
+                    }
+                    if (fb != null) {
+                        fframes.add(fb);
                     }
-                } catch (MissingSyncFrameException e) {
-                    logger.debug("Unable to sync frame " + ((FrameData) entry.getValue()).getPtr() + " because removed by freeing");
                 }
-                if (fb != null) {
-                    fframes.add(fb);
+
+                for (Map.Entry<Integer, List<FrameApi>> entry : frames_.entrySet()) {
+                    SQLCursor.addStreamFrame(new ContainerFrame(entry.getKey(), entry.getValue()));
                 }
-            }
 
-            for (Map.Entry<Integer, List<FrameApi>> entry : frames_.entrySet()) {
-                SQLCursor.addStreamFrame(new ContainerFrame(entry.getKey(), entry.getValue()));
+                llt.commit();
+                committed = true;
+            } finally {
+                if (!committed) {
+                    llt.release();
+                }
             }
 
+            final int famt = Storage.getStorage().getFiles() == null ? 0 : Storage.getStorage().getFiles().size();
             SyncTask[] tasklist = new SyncTask[famt];
 
             int cnt = 0;
             for (Map.Entry e : Storage.getStorage().getFiles().entrySet()) {
-                tasklist[cnt] = new SyncTask((DataFile) e.getValue());
+                tasklist[cnt] = new SyncTask((DataFile) e.getValue(), limiter);
                 cnt++;
             }
 
@@ -110,11 +138,21 @@ public class SyncQueue implements Runnable, ManagedProcess {
             }
 
             long t1 = System.currentTimeMillis();
-            pool.invokeAll(Arrays.asList(tasklist));
+            boolean failed = false;
+            for (Future<Integer> r : pool.invokeAll(Arrays.asList(tasklist))) {
+                failed = failed || r.get() != 0;
+            }
             long t2 = System.currentTimeMillis();
             logger.info("sync procedure was completed in " + (t2 - t1) + "ms");
-            llt.commit();
-            Storage.getStorage().clearJournal();
+            if (failed) {
+                //frames remain in the changed frames list, journal segments are not removed
+                logger.error("sync procedure failed, changed frames will be written during next sync");
+            } else {
+                for (Map.Entry<FrameData, Long> entry : versions.entrySet()) {
+                    LLT.setSynced(entry.getKey(), entry.getValue());
+                }
+                Storage.getStorage().clearJournal(segment);
+            }
             for (FreeFrame fb : fframes) {
                 s.persist(fb);
             }
@@ -124,13 +162,35 @@ public class SyncQueue implements Runnable, ManagedProcess {
             final List<SyncFrame> dframes = frames.stream().filter(p -> p.isDistributed()).collect(Collectors.toList());
             pool2.submit(new TransportSyncTask(dframes));
 
-            running = false;
             return true;
+        } finally {
+            running.set(false);
         }
     }
 
     public void commit() throws Exception {
-        while (!syncFramesFromQueue()) {
+        Metrics.get("commitLatency").start();
+        try {
+            if (Config.getConfig().COMMIT_GROUP_ENABLE) {
+                groupCommit();
+            } else {
+                flush();
+            }
+        } finally {
+            Metrics.get("commitLatency").stop();
+        }
+    }
+
+    private void flush() throws Exception {
+        if (Storage.getStorage().getRedoLog() != null) {
+            journal();
+            return;
+        }
+        while (!syncFramesFromQueue(null)) {
+            //commit waits for the running sync, its remaining writes are not throttled
+            if (limiter != null) {
+                limiter.suspend();
+            }
             try {
                 Thread.sleep(5);
             } catch (InterruptedException e) {
@@ -139,12 +199,106 @@ public class SyncQueue implements Runnable, ManagedProcess {
         }
     }
 
+    //writes changes of frames to redo journal, datafiles will be written during next sync (checkpoint)
+    //frames are captured under llt lock, so journal never contains partial changes of running llts
+    //commits share journal passes: each pass captures changes of all llts committed before it was started
+    private void journal() throws Exception {
+        final JournalPass pass;
+        synchronized (journallock) {
+            if (nextPass == null) {
+                nextPass = new JournalPass();
+            }
+            pass = nextPass;
+        }
+        if (pass.started.compareAndSet(false, true)) {
+            synchronized (journallock) {
+                if (nextPass == pass) {
+                    nextPass = null;
+                }
+            }
+            try {
+                final CompletableFuture<Long> future;
+                final LLT llt = LLT.getLLTAndLock();
+                try {
+                    final List<Frame> frames = new ArrayList<>();
+                    for (FrameData bd : LLT.getRedoFrames()) {
+                        try {
+                            frames.add(bd.getFrame());
+                        } catch (MissingSyncFrameException e) {
+                            logger.debug("Unable to journal frame " + bd.getPtr() + " because removed by freeing");
+                        }
+                    }
+                    future = Storage.getStorage().getRedoLog().log(frames);
+                } finally {
+                    llt.release();
+                }
+                future.whenComplete((r, e) -> {
+                    if (e != null) {
+                        pass.future.completeExceptionally(e);
+                    } else {
+                        pass.future.complete(r);
+                    }
+                });
+            } catch (Exception e) {
+                pass.future.completeExceptionally(e);
+            }
+        }
+        try {
+            pass.future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    //first commit of the group becomes its leader: waits for the batch window (or until the group is full)
+    //and performs single flush, which acknowledges all commits joined the group before the flush was started
+    private void groupCommit() throws Exception {
+        final CommitGroup group;
+        final boolean leader;
+        synchronized (commitlock) {
+            if (openGroup == null || openGroup.size >= Config.getConfig().COMMIT_GROUP_MAX) {
+                openGroup = new CommitGroup();
+                leader = true;
+            } else {
+                leader = false;
+            }
+            group = openGroup;
+            group.size++;
+            if (group.size >= Config.getConfig().COMMIT_GROUP_MAX) {
+                group.full.countDown();
+            }
+        }
+        if (leader) {
+            group.full.await(Config.getConfig().COMMIT_GROUP_WINDOW, TimeUnit.MILLISECONDS);
+            //leaders flush one at a time: previous flush must be completed before group will be closed
+            synchronized (this) {
+                synchronized (commitlock) {
+                    if (openGroup == group) {
+                        openGroup = null;
+                    }
+                }
+                Metrics.get("commitBatchSize").put(group.size);
+                try {
+                    flush();
+                    group.future.complete(null);
+                } catch (Exception e) {
+                    group.future.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            group.future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
     public void run () {
         Thread.currentThread().setName("interference-sync-thread-"+Thread.currentThread().getId());
         while (f) {
             latch = new CountDownLatch(1);
             try {
-                syncFramesFromQueue();
+                syncFramesFromQueue(limiter);
             } catch(Exception e) {
                 logger.error("exception occured during sync queue process", e);
             }
@@ -159,6 +313,17 @@ public class SyncQueue implements Runnable, ManagedProcess {
         }
     }
 
+    private static class JournalPass {
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+    }
+
+    private static class CommitGroup {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private int size;
+    }
+
     public void stop() throws InterruptedException{
         f = false;
         if (latch != null) {
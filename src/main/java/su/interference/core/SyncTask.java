@@ -26,9 +26,12 @@ package su.interference.core;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import su.interference.metrics.Meter;
 import su.interference.metrics.Metrics;
 import su.interference.persistent.DataFile;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Callable;
 
@@ -42,10 +45,18 @@ public class SyncTask implements Callable<Integer> {
     @SuppressWarnings("unchecked")
     private final PriorityBlockingQueue<SyncFrame> pq = new PriorityBlockingQueue();
     private final DataFile df;
+    private final RateLimiter limiter;
+    //max amount of frames in single write (iovec limit)
+    private static final int MAX_RUN_FRAMES = 256;
     private final static Logger logger = LoggerFactory.getLogger(SyncTask.class);
 
     public SyncTask(DataFile df) {
+        this(df, null);
+    }
+
+    public SyncTask(DataFile df, RateLimiter limiter) {
         this.df = df;
+        this.limiter = limiter;
     }
 
     public void add(SyncFrame bd) {
@@ -56,23 +67,77 @@ public class SyncTask implements Callable<Integer> {
         return df;
     }
 
+    //frames are polled in order of pointers, contiguous frames are written by single gathering write
     public Integer call() {
         Thread.currentThread().setName("interference-sync-task-thread-"+Thread.currentThread().getId());
         Metrics.get("syncFrames").start();
+        final long t1 = System.nanoTime();
+        long bytes = 0;
+        int frames = 0;
+        int runs = 0;
         try {
-
+            this.df.checkpoint();
+            final List<byte[]> run = new ArrayList<>();
+            long start = 0;
+            long next = 0;
             while (pq.peek() != null) {
                 final SyncFrame bd = pq.poll();
                 final long ptr = bd.getFrameId() - (bd.getFrameId()%4096);
-                this.df.writeFrame(ptr, bd.getBytes());
-                //Storage.getStorage().writeFrameWithBackup(bd.getBytes(), bd.getFrameId());
+                if (run.size() > 0 && (ptr != next || run.size() == MAX_RUN_FRAMES)) {
+                    bytes = bytes + write(start, run);
+                    runs++;
+                }
+                if (run.size() == 0) {
+                    start = ptr;
+                }
+                run.add(bd.getBytes());
+                next = ptr + bd.getBytes().length;
+                frames++;
+            }
+            if (run.size() > 0) {
+                bytes = bytes + write(start, run);
+                runs++;
             }
 
             Metrics.get("syncFrames").stop();
+            if (frames > 0) {
+                final long t2 = Math.max(System.nanoTime() - t1, 1);
+                getMeter("syncMBps@", Metrics.METER).put(bytes * 1000000000L / t2 / 1048576L);
+                getMeter("syncFramesPerSec@", Metrics.METER).put(frames * 1000000000L / t2);
+                getMeter("syncRuns@", Metrics.HISTOGRAM).put(runs);
+            }
         } catch (Exception e) {
             logger.error("exception occured during sync task process", e);
+            return -1;
         }
         return 0;
     }
 
+    private long write(long ptr, List<byte[]> run) throws Exception {
+        final byte[][] b = run.toArray(new byte[run.size()][]);
+        run.clear();
+        long size = 0;
+        for (byte[] f : b) {
+            size = size + f.length;
+        }
+        if (limiter != null) {
+            limiter.acquire((int) size);
+        }
+        if (b.length == 1) {
+            this.df.writeFrame(ptr, b[0]);
+        } else {
+            this.df.writeFrames(ptr, b);
+        }
+        return size;
+    }
+
+    //per-file sync metrics are registered during first sync of file
+    private Meter getMeter(String name, int type) throws Exception {
+        final String name_ = name + this.df.getFileId();
+        synchronized (SyncTask.class) {
+            final Meter m = Metrics.get(name_);
+            return m == null ? Metrics.register(type, name_) : m;
+        }
+    }
+
 }
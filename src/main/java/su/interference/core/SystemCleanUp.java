@@ -26,7 +26,6 @@ package su.interference.core;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import su.interference.metrics.Metrics;
 import su.interference.persistent.FrameData;
 
 import java.util.Map;
@@ -41,17 +40,15 @@ public class SystemCleanUp implements Runnable, ManagedProcess {
     private volatile boolean f = true;
     CountDownLatch latch;
     private final static Logger logger = LoggerFactory.getLogger(SystemCleanUp.class);
-    public static final int DATA_RETRIEVED_PRIORITY = 6;
-    public static final int INDEX_RETRIEVED_PRIORITY = 9;
 
     public void run () {
         Thread.currentThread().setName("interference-cleanup-thread-"+Thread.currentThread().getId());
         while (f) {
             latch = new CountDownLatch(1);
             try {
-                if (Config.getConfig().CLEANUP_ENABLE) {
-                    cleanUpFrames();
-                } else {
+                //frames are evicted by buffer pool during admission, process publishes its state
+                BufferPool.getBufferPool().publish();
+                if (!Config.getConfig().CLEANUP_ENABLE) {
                     logger.warn("system cleanup currently disabled");
                 }
             } catch(Exception e) {
@@ -74,79 +71,6 @@ public class SystemCleanUp implements Runnable, ManagedProcess {
         }
     }
 
-    private void cleanUpFrames() {
-        synchronized (SyncQueue.synclock) {
-            Metrics.get("systemCleanUp").start();
-            int i = 0;
-            int d = 0;
-            int x = 0;
-            int xn = 0;
-            int xall = 0;
-            int u = 0;
-            int i_ = 0;
-            int d_ = 0;
-            int x_ = 0;
-            int u_ = 0;
-            for (Object entry : Instance.getInstance().getFramesMap().entrySet()) {
-                final FrameData f = (FrameData) ((DataChunk) ((Map.Entry) entry).getValue()).getEntity();
-                final long frameAmount = f.getDataObject().getFrameAmount();
-                if (f.getDataFile().isData() && cleanupDataEnabled()) {
-                    f.decreasePriority();
-                    if (f.isSynced() && f.getObjectId() > 999 && frameAmount > getThr()) {
-                        if (f.clearFrame()) {
-                            d++;
-                        }
-                    }
-                    if (f.isFrame()) {
-                        d_++;
-                    }
-                }
-                if (f.getDataFile().isIndex() && cleanupIndxEnabled()) {
-                    f.decreasePriority();
-                    xall++;
-                    if (f.isSynced() && f.getFrameType() == IndexFrame.INDEX_FRAME_NODE) {
-                        xn++;
-                    }
-                    if (f.isSynced() && f.getFrameType() != IndexFrame.INDEX_FRAME_NODE && !f.isRbck() && frameAmount > getIxThr()) {
-                        if (f.clearFrame()) {
-                            x++;
-                        }
-                    }
-                    if (f.isFrame()) {
-                        x_++;
-                    }
-                }
-                if (f.getDataFile().isTemp() && cleanupTempEnabled()) {
-                    if (f.isSynced() && f.getFrameType() != IndexFrame.INDEX_FRAME_NODE && frameAmount > getThr()) {
-                        if (f.clearFrame()) {
-                            i++;
-                        }
-                    }
-                    if (f.isFrame()) {
-                        i_++;
-                    }
-                }
-                if (f.getDataFile().isUndo() && cleanupUndoEnabled()) {
-                    if (f.isSynced() && frameAmount > getThr()) {
-                        if (f.clearFrame()) {
-                            u++;
-                        }
-                    }
-                    if (f.isFrame()) {
-                        u_++;
-                    }
-                }
-            }
-            Metrics.get("сleanUpDataFrames").put(d);
-            Metrics.get("сleanUpIndexFrames").put(x);
-            Metrics.get("сleanUpUndoFrames").put(u);
-            Metrics.get("imDataFrames").put(d_);
-            Metrics.get("imIndexFrames").put(x_);
-            Metrics.get("imUndoFrames").put(u_);
-            Metrics.get("systemCleanUp").stop();
-        }
-    }
-
     public static void forceCleanUp() {
         for (Object entry : Instance.getInstance().getFramesMap().entrySet()) {
             final FrameData f = (FrameData) ((DataChunk) ((Map.Entry) entry).getValue()).getEntity();
@@ -155,42 +79,4 @@ public class SystemCleanUp implements Runnable, ManagedProcess {
             }
         }
     }
-
-    private boolean cleanupDataEnabled() {
-        final long maxmem = Runtime.getRuntime().maxMemory();
-        final long alloc = Runtime.getRuntime().totalMemory();
-        final long allocpc = alloc * 100 / maxmem;
-        return allocpc > Config.getConfig().HEAP_USE_THR_DATA;
-    }
-
-    private boolean cleanupIndxEnabled() {
-        final long maxmem = Runtime.getRuntime().maxMemory();
-        final long alloc = Runtime.getRuntime().totalMemory();
-        final long allocpc = alloc * 100 / maxmem;
-        return allocpc > Config.getConfig().HEAP_USE_THR_INDX;
-    }
-
-    private boolean cleanupUndoEnabled() {
-        final long maxmem = Runtime.getRuntime().maxMemory();
-        final long alloc = Runtime.getRuntime().totalMemory();
-        final long allocpc = alloc * 100 / maxmem;
-        return allocpc > Config.getConfig().HEAP_USE_THR_UNDO;
-    }
-
-    private boolean cleanupTempEnabled() {
-        final long maxmem = Runtime.getRuntime().maxMemory();
-        final long alloc = Runtime.getRuntime().totalMemory();
-        final long allocpc = alloc * 100 / maxmem;
-        // todo return allocpc > Config.getConfig().HEAP_USE_THR_TEMP;
-        // todo cleanup affects temp indices, disable until fix is released
-        return false;
-    }
-
-    private int getThr() {
-        return Config.getConfig().CLEANUP_PROTECTION_THR/(Config.getConfig().FRAMESIZE/4096);
-    }
-
-    private int getIxThr() {
-        return Config.getConfig().IX_CLEANUP_PROTECTION_THR/(Config.getConfig().FRAMESIZE/4096);
-    }
 }
@@ -30,7 +30,6 @@ import su.interference.exception.InvalidFrame;
 import su.interference.exception.InternalException;
 import su.interference.persistent.Table;
 import su.interference.persistent.Session;
-import su.interference.serialize.ByteString;
 
 import java.io.IOException;
 import java.util.Date;
@@ -57,12 +56,11 @@ public class SystemFrame extends Frame {
     public SystemFrame(byte[] b, int file, long pointer) throws Exception {
         super (b, file, pointer, 0, null, null, null) ;
         int ptr = FRAME_HEADER_SIZE;
-        final ByteString bs = new ByteString(this.b);
         while (ptr<b.length) {
             if (b.length>=ptr+ROW_HEADER_SIZE) {
-                RowHeader h = new RowHeader(bs.substring(ptr, ptr+ROW_HEADER_SIZE), this.getFile(), this.getPointer());
+                RowHeader h = new RowHeader(this.buf, ptr, ROW_HEADER_SIZE, this.getFile(), this.getPointer());
                 if ((h.getPtr()>0)&&(h.getLen()>0)) {
-                    data.add(new DataChunk(bs.substring(ptr, ptr+ROW_HEADER_SIZE+h.getLen()), this.getFile(), this.getPointer(), ROW_HEADER_SIZE, new Table("su.interference.core.SystemData"), SystemData.class));
+                    data.add(new DataChunk(this.buf, ptr, h, new Table("su.interference.core.SystemData"), SystemData.class));
                     ptr = ptr + ROW_HEADER_SIZE + h.getLen();
                 } else {
                     ptr = b.length;
@@ -47,7 +47,8 @@ public class WaitFrame {
         this.busy = new AtomicLong(0);
     }
 
-    public synchronized WaitFrame acquire() {
+    //lock-free, current frame is owned by the thread stored in busy
+    public WaitFrame acquire() {
         if (this.bd == null) {
             return null;
         }
@@ -57,7 +58,7 @@ public class WaitFrame {
         return null;
     }
 
-    public synchronized WaitFrame acquire(final int fileId) {
+    public WaitFrame acquire(final int fileId) {
         if (this.bd == null) {
             return null;
         }
@@ -86,7 +87,7 @@ public class WaitFrame {
         return false;
     }
 
-    public synchronized FrameData getBd() {
+    public FrameData getBd() {
         return bd;
     }
 
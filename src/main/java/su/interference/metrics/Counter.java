@@ -44,4 +44,9 @@ public class Counter extends Meter {
         cnt.incrementAndGet();
     }
 
+    @Override
+    public long getCnt() {
+        return cnt.get();
+    }
+
 }
@@ -36,6 +36,8 @@ import java.io.RandomAccessFile;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.InvocationTargetException;
 import javax.persistence.*;
@@ -84,8 +86,18 @@ public class DataFile implements Serializable {
     @Transient
     protected RandomAccessFile file;
     @Transient
+    protected FrameIO io;
+    @Transient
     protected SystemFrame sframe;
     @Transient
+    protected ExtentAllocator extents;
+    //frame writes share the lock, exclusive lock gives view of frames without concurrent writes
+    @Transient
+    private final ReentrantReadWriteLock wlock = new ReentrantReadWriteLock();
+    //last frame pointer which is written to system frame
+    @Transient
+    private long syncedFramePtr;
+    @Transient
     public static final int FILE_NOT_FOUND = 0;
     @Transient
     public static final int FILE_OK = 1;
@@ -162,95 +174,95 @@ public class DataFile implements Serializable {
     //lock datafile<undo> - lock table<framedata> - try lock datafile
     //todo deprecated started param
     public FrameData createNewFrame(FrameData frame, WaitFrame wb, int frameType, long allocId, boolean started, boolean external, Table t, Session s, LLT llt) throws Exception {
-        //deadlock bug fix
-        //instead this.allocateFrame we lock Table<FrameData> first
-        final FrameData bd = t.allocateFrame(this, t, s, llt);
-        bd.setFrameType(frameType);
-        synchronized (this) {
-            final boolean setcurrenable = external ? false : t.getName().equals("su.interference.persistent.UndoChunk") ? false : true;
-            //allocated for rframe
-            if (allocId > 0) {
-                bd.setAllocId(allocId);
-            }
-
-            //todo deprecated
-            if (started) {
-                bd.setStarted(1);
-            }
+        //llt is taken before datafile lock: waiting for llt inside it blocks llt holders which allocate frames
+        //frames of initial undo space are not registered in the caller's llt (llt == null), so use local one only for persist
+        final LLT pllt = llt == null ? LLT.getLLT() : llt;
+        try {
+            //deadlock bug fix
+            //instead this.allocateFrame we lock Table<FrameData> first
+            final FrameData bd = t.allocateFrame(this, t, s, pllt);
+            bd.setFrameType(frameType);
+            synchronized (this) {
+                final boolean setcurrenable = external ? false : t.getName().equals("su.interference.persistent.UndoChunk") ? false : true;
+                //allocated for rframe
+                if (allocId > 0) {
+                    bd.setAllocId(allocId);
+                }
 
-            final Frame db = frameType == 0 ? new DataFrame(bd, t) : new IndexFrame(bd, frameType, t);
-            db.setObjectId(t.getObjectId());
-            bd.setFrame(db);
-            if (setcurrenable) bd.markAsCurrent();
-            int prevFile = 0;
-            long prevPtr = 0;
-
-            if (frame != null && frameType == 0) {
-                frame.clearCurrent();
-                prevFile = frame.getFile();
-                prevPtr = frame.getPtr();
-                frame.setNextFile(bd.getFile());
-                frame.setNextFrame(bd.getPtr());
-                frame.getDataFrame().setNextFile(bd.getFile());
-                frame.getDataFrame().setNextFrame(bd.getPtr());
-                s.persist(frame, llt); //update
-            }
+                //todo deprecated
+                if (started) {
+                    bd.setStarted(1);
+                }
 
-            bd.setPrevFile(prevFile);
-            bd.setPrevFrame(prevPtr);
+                final Frame db = frameType == 0 ? new DataFrame(bd, t) : new IndexFrame(bd, frameType, t);
+                db.setObjectId(t.getObjectId());
+                bd.setFrame(db);
+                if (setcurrenable) bd.markAsCurrent();
+                int prevFile = 0;
+                long prevPtr = 0;
+
+                if (frame != null && frameType == 0) {
+                    frame.clearCurrent();
+                    prevFile = frame.getFile();
+                    prevPtr = frame.getPtr();
+                    frame.setNextFile(bd.getFile());
+                    frame.setNextFrame(bd.getPtr());
+                    frame.getDataFrame().setNextFile(bd.getFile());
+                    frame.getDataFrame().setNextFrame(bd.getPtr());
+                    s.persist(frame, pllt); //update
+                }
 
-            if (frameType == 0) {
-                ((DataFrame) db).setPrevFile(prevFile);
-                ((DataFrame) db).setPrevFrame(prevPtr);
-            }
+                bd.setPrevFile(prevFile);
+                bd.setPrevFrame(prevPtr);
 
-            if (t.getFileStart() == 0 && t.getFrameStart() == 0) {
-                t.setFileStart(bd.getFile());
-                t.setFrameStart(bd.getPtr());
-            }
+                if (frameType == 0) {
+                    ((DataFrame) db).setPrevFile(prevFile);
+                    ((DataFrame) db).setPrevFrame(prevPtr);
+                }
 
-            t.setFileLast(bd.getFile());
-            t.setFrameLast(bd.getPtr());
-            t.incFrameAmount();
+                t.addLastFrame(bd);
 
-            if (!external) {
-                if (llt != null) {
-                    llt.add(db);
-                    if (frame != null) {
-                        llt.add(frame.getFrame());
+                if (!external) {
+                    if (llt != null) {
+                        llt.add(db);
+                        if (frame != null) {
+                            llt.add(frame.getFrame());
+                        }
                     }
                 }
-            }
 
-            s.persist(t, llt); //update
+                s.persist(t, pllt); //update
 
-            if (t.getName().equals("su.interference.persistent.FrameData")) {
-                DataChunk dc = new DataChunk(bd, s);
-                int len = dc.getBytesAmount();
-                t.usedSpace(bd, len, false, s, llt);
-                //replace chunk after usedSpace
-                dc = new DataChunk(bd, s);
-                db.insertChunk(dc, s, true, llt);
-                t.addIndexValue(dc);
-            }
-            if (wb != null) {
-                wb.set(bd);
+                if (t.getName().equals("su.interference.persistent.FrameData")) {
+                    DataChunk dc = new DataChunk(bd, s);
+                    int len = dc.getBytesAmount();
+                    t.usedSpace(bd, len, false, s, llt);
+                    //replace chunk after usedSpace
+                    dc = new DataChunk(bd, s);
+                    db.insertChunk(dc, s, true, llt);
+                    t.addIndexValue(dc);
+                }
+                if (wb != null) {
+                    wb.set(bd);
+                }
             }
-        }
-        if (!t.getName().equals("su.interference.persistent.FrameData")) {
-            //syncframe event should not persist new frame
-            if (!external) {
-                //fix deadlock by reorder access
-                //if current object is not DATAFILE, then locks DATAFILE first
-                if (this.getFileId() == bd.getFile()) {
-                    s.persist(bd, llt);
-                } else {
-                    DataFile df = Instance.getInstance().getDataFileById(bd.getFile());
-                    df.persist(bd, s, llt);
+            if (!t.getName().equals("su.interference.persistent.FrameData")) {
+                //syncframe event should not persist new frame
+                if (!external) {
+                    //fix deadlock by reorder access
+                    //if current object is not DATAFILE, then locks DATAFILE first
+                    if (this.getFileId() == bd.getFile()) {
+                        s.persist(bd, pllt);
+                    } else {
+                        DataFile df = Instance.getInstance().getDataFileById(bd.getFile());
+                        df.persist(bd, s, pllt);
+                    }
                 }
             }
+            return bd;
+        } finally {
+            if (llt == null) { pllt.commit(); }
         }
-        return bd;
     }
 
     private synchronized void persist(Object o, Session s, LLT llt) throws Exception {
@@ -344,9 +356,15 @@ public class DataFile implements Serializable {
             byte[] b = new byte[SYSTEM_FRAME_SIZE];
             if (!(this.file==null)) {
                 try {
+                    if (this.io != null) {
+                        this.io.close();
+                    }
+                    this.io = createFrameIO(mode);
+                    this.extents = new ExtentAllocator(this.fileName, this.io, (long) Config.getConfig().EXTENT_SIZE * 1048576);
                     this.file.seek(0);
                     this.file.read(b,0,SYSTEM_FRAME_SIZE);
                     this.sframe = new SystemFrame(b,this.getFileId(),0);
+                    this.syncedFramePtr = this.sframe.getLastFramePtr();
                     final SystemData sd = this.sframe.getSystemData();
                     logger.info("open " + this.fileName + " file completed successfully (ver." + sd.getVersion() + ")");
                 } catch (Exception e) {
@@ -358,16 +376,34 @@ public class DataFile implements Serializable {
     }
     
     public synchronized void closeFile() throws IOException, InvalidFrame {
+        if (this.extents!=null) {
+            this.extents.close();
+            this.extents = null;
+        }
         //sync header
         if (this.sframe!=null) {
             writeFrame(0, this.sframe.getFrame());
         }
+        if (this.io!=null) {
+            this.io.close();
+            this.io = null;
+        }
         if (this.file!=null) {
             this.file.close();
             this.file = null;
         }
     }
 
+    private FrameIO createFrameIO(String mode) throws IOException {
+        if (Config.getConfig().DISKIO_ENGINE == FrameIO.ENGINE_CHANNEL) {
+            return new ChannelFrameIO(this.fileName, mode);
+        }
+        if (Config.getConfig().DISKIO_ENGINE == FrameIO.ENGINE_MMAP) {
+            return new MmapFrameIO(this.fileName, mode);
+        }
+        return new RAFFrameIO(this.file);
+    }
+
     public synchronized void createFile(Session s, LLT llt) throws IOException, InvocationTargetException, NoSuchMethodException, FileNotFoundException, InternalException, ClassNotFoundException, InstantiationException, IllegalAccessException {
         boolean check;
         try {
@@ -384,7 +420,9 @@ public class DataFile implements Serializable {
             throw new InternalException();
         } else {
             this.file = new RandomAccessFile(this.fileName,"rws");
+            this.io = new RAFFrameIO(this.file);
             createHeaderFrame(s, llt);
+            this.io = null;
             this.file.close();
         }
     }
@@ -412,16 +450,11 @@ public class DataFile implements Serializable {
         }
         Metrics.get("reallocateFrame").stop();
         Metrics.get("allocateFrame").start();
-        final int fileExt = this.sframe.getExtSize();
         final long ptr = this.sframe.getLastFramePtr();
-        final long fileAmt = this.file.length();
         final long newAmt = ptr + size;
-        if (fileAmt < newAmt) {
-            extendFile(fileExt);
-        }
+        this.extents.reserve(newAmt);
+        //system frame is written during checkpoint
         this.sframe.setLastFramePtr(newAmt);
-//        Storage.getStorage().writeFrame(this.sframe);
-        this.writeFrame(0, this.sframe.getFrame());
         final FrameData bd = new FrameData(this.getFileId(), ptr, size, t);
         // t should be updated mandatory during createFrame
         bd.setFrameOrder(t.getFrameOrder(s, llt));
@@ -443,37 +476,102 @@ public class DataFile implements Serializable {
     }
 
     public synchronized void extendFile(long size) throws IOException {
-        this.file.setLength(this.file.length()+size);
+        this.io.extend(size);
+    }
+
+    //writes system frame if last frame pointer was changed, called by sync before changed frames are written,
+    //so persisted pointer is never behind frames in the datafile
+    public synchronized void checkpoint() throws IOException, InvalidFrame {
+        final long ptr = this.sframe.getLastFramePtr();
+        if (ptr != this.syncedFramePtr) {
+            writeFrame(0, this.sframe.getFrame());
+            this.syncedFramePtr = ptr;
+        }
+    }
+
+    //frames restored from journal may be allocated after last checkpoint
+    public synchronized void restoreFramePtr(long end) {
+        if (end > this.sframe.getLastFramePtr()) {
+            this.sframe.setLastFramePtr(end);
+        }
+    }
+
+    public void force() throws IOException {
+        this.io.force();
+    }
+
+    public ReentrantReadWriteLock getWriteLock() {
+        return wlock;
+    }
+
+    public long length() throws IOException {
+        return this.io.length();
     }
 
     //todo main method must incapsulate all cache-depends functional
-    public synchronized byte[] readData(final long ptr, final int size) throws IOException, InternalException {
-        final long rest = this.file.length() - ptr;
+    //not synchronized by DataFile monitor, concurrency depends on FrameIO implementation
+    public byte[] readData(final long ptr, final int size) throws IOException, InternalException {
+        final long rest = this.io.length() - ptr;
+        if (rest < size) {
+            throw new InternalException();
+        }
+        return this.io.read(ptr, size);
+    }
+
+    //returns frame bytes as buffer, which may be a view of mapped region of file
+    public ByteBuffer readBuffer(final long ptr, final int size) throws IOException, InternalException {
+        final long rest = this.io.length() - ptr;
         if (rest < size) {
             throw new InternalException();
         }
-        final byte[] b = new byte[size];
-        this.file.seek(ptr);
-        this.file.read(b, 0, size);
-        return b;
+        return this.io.readBuffer(ptr, size);
     }
 
     //returns all bytes from ptr until end of file or size
     public byte[] readDataFromPtr(long ptr, int size) throws IOException {
-        long rest = this.file.length() - ptr;
+        long rest = this.io.length() - ptr;
         if (rest<=0) {
             return null;
         }
         if (rest > size) {
             rest = size;
         }
-        byte[] b = new byte[(int)rest];
-        this.file.seek(ptr);
-        this.file.read(b, 0, (int)rest);
-        return b;
+        return this.io.read(ptr, (int)rest);
+    }
+
+    public void writeFrame(final long ptr, final byte[] b) throws IOException {
+        checkFrame(ptr, b);
+        wlock.readLock().lock();
+        try {
+            this.io.write(ptr, b);
+        } finally {
+            wlock.readLock().unlock();
+        }
+        //encoded copy of frame in off-heap cache is older than written one
+        OffHeapFrameCache.getCache().remove(ptr + this.fileId);
+    }
+
+    //writes contiguous frames starting at ptr by single operation
+    public void writeFrames(final long ptr, final byte[][] b) throws IOException {
+        long ptr_ = ptr;
+        for (byte[] f : b) {
+            checkFrame(ptr_, f);
+            ptr_ = ptr_ + f.length;
+        }
+        wlock.readLock().lock();
+        try {
+            this.io.write(ptr, b);
+        } finally {
+            wlock.readLock().unlock();
+        }
+        ptr_ = ptr;
+        for (byte[] f : b) {
+            OffHeapFrameCache.getCache().remove(ptr_ + this.fileId);
+            ptr_ = ptr_ + f.length;
+        }
     }
 
-    public synchronized void writeFrame(final long ptr, final byte[] b) throws IOException {
+    private void checkFrame(final long ptr, final byte[] b) {
         final ByteString bs = new ByteString(b);
         final int file_ = bs.getIntFromBytes(0);
         final long ptr_ = bs.getLongFromBytes(4);
@@ -490,11 +588,6 @@ public class DataFile implements Serializable {
         if (ptr != ptr_) {
             logger.error("Wrong write frame operation with file = " + this.file + " ptr = " + ptr + ", internal file = " + file_ + " ptr = " + ptr_);
         }
-
-        synchronized (this) {
-            this.file.seek(ptr);
-            this.file.write(b);
-        }
     }
 
     public void writeFrame(FrameData bd, final long ptr, final byte[] b, LLT llt, Session s) throws Exception {
@@ -511,10 +604,13 @@ public class DataFile implements Serializable {
             logger.error("Wrong write frame operation with file = " + this.file + " ptr = " + ptr + ", internal file = " + file_ + " ptr = " + ptr_);
         }
 
-        synchronized (this) {
-            this.file.seek(ptr);
-            this.file.write(b);
+        wlock.readLock().lock();
+        try {
+            this.io.write(ptr, b);
+        } finally {
+            wlock.readLock().unlock();
         }
+        OffHeapFrameCache.getCache().remove(ptr + this.fileId);
         s.persist(bd, llt);
     }
 
@@ -39,8 +39,10 @@ import javax.persistence.Transient;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author Yuriy Glotanov
@@ -105,16 +107,25 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
     private long frameId; //virtual Id field
     @Transient
     private final Map<Long, Map<Long, TransFrame>> tcounter = new ConcurrentHashMap<>();
+    //frame is synced when all changes (versions) are written to datafile
     @Transient
-    private AtomicInteger priority = new AtomicInteger(2);
+    private final AtomicLong version = new AtomicLong(0);
     @Transient
-    private AtomicBoolean synced = new AtomicBoolean(true);
+    private final AtomicLong syncedVersion = new AtomicLong(0);
     @Transient
     private AtomicInteger lock = new AtomicInteger(0);
     @Transient
     private volatile boolean rbck;
     @Transient
     private volatile Frame frame;
+    //held by writer while frame is registered in llt and taken for change, eviction does not wait for it
+    @Transient
+    private final ReentrantLock latch = new ReentrantLock();
+    @Transient
+    private static final AtomicReferenceFieldUpdater<FrameData, Frame> FRAME = AtomicReferenceFieldUpdater.newUpdater(FrameData.class, Frame.class, "frame");
+    //node of buffer pool, exists while frame is resident
+    @Transient
+    private volatile BufferPool.Node node;
     @Transient
     private AtomicInteger freed = new AtomicInteger(0);
     @Transient
@@ -152,8 +163,8 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
     }
 
     public synchronized DataFrame getDataFrame() throws Exception {
-        if (frame == null) {
-            this.priority.set(SystemCleanUp.DATA_RETRIEVED_PRIORITY);
+        Frame f = frame;
+        if (f == null) {
             List<FrameData> uframes = new ArrayList<>();
             for (Map.Entry<Long, Map<Long, TransFrame>> entry : tcounter.entrySet()) {
                 for (Map.Entry<Long, TransFrame> entry_ : entry.getValue().entrySet()) {
@@ -162,14 +173,18 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
                     }
                 }
             }
-            frame = new DataFrame(this.file, this.ptr, 0, this, dataObject, entityClass, uframes);
+            f = new DataFrame(this.file, this.ptr, 0, this, dataObject, entityClass, uframes);
+            frame = f;
+            BufferPool.getBufferPool().miss(this);
+        } else {
+            BufferPool.getBufferPool().hit(this);
         }
-        return (DataFrame) frame;
+        return (DataFrame) f;
     }
 
     public synchronized IndexFrame getIndexFrame() throws Exception {
-        if (frame == null) {
-            this.priority.set(SystemCleanUp.INDEX_RETRIEVED_PRIORITY);
+        Frame f = frame;
+        if (f == null) {
             List<FrameData> uframes = new ArrayList<>();
             for (Map.Entry<Long, Map<Long, TransFrame>> entry : tcounter.entrySet()) {
                 for (Map.Entry<Long, TransFrame> entry_ : entry.getValue().entrySet()) {
@@ -178,9 +193,13 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
                     }
                 }
             }
-            frame = new IndexFrame(this.file, this.ptr, 0, this, dataObject, entityClass, uframes);
+            f = new IndexFrame(this.file, this.ptr, 0, this, dataObject, entityClass, uframes);
+            frame = f;
+            BufferPool.getBufferPool().miss(this);
+        } else {
+            BufferPool.getBufferPool().hit(this);
         }
-        return (IndexFrame) frame;
+        return (IndexFrame) f;
     }
 
     @Override
@@ -210,15 +229,18 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
     }
 
     public Frame getFrame() throws Exception {
-        if (frame == null) {
+        Frame f = frame;
+        if (f == null) {
             if (isIndex()) {
-                frame = getIndexFrame();
+                f = getIndexFrame();
             } else {
-                frame = getDataFrame();
+                f = getDataFrame();
             }
-            frame.setFrameData(this);
+            f.setFrameData(this);
+        } else {
+            BufferPool.getBufferPool().hit(this);
         }
-        return frame;
+        return f;
     }
 
     public synchronized Chunk getChunkByPtr(int ptr) throws Exception {
@@ -247,6 +269,20 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
 
     public void setFrame(Frame b) {
         this.frame = b;
+        OffHeapFrameCache.getCache().remove(getFrameId());
+        if (b == null) {
+            BufferPool.getBufferPool().remove(this);
+        } else {
+            BufferPool.getBufferPool().admit(this);
+        }
+    }
+
+    public BufferPool.Node getPoolNode() {
+        return node;
+    }
+
+    public void setPoolNode(BufferPool.Node node) {
+        this.node = node;
     }
 
     @Override
@@ -350,19 +386,49 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
     }
 
     public int insertChunk(Chunk c, Session s, boolean check, LLT llt) throws Exception {
-        return this.getDataFrame().insertChunk(c, s, check, llt);
+        return this.getDataFrame(llt).insertChunk(c, s, check, llt);
     }
 
     public int updateChunk(DataChunk chunk, Object o, Session s, LLT llt) throws Exception {
-        return this.getDataFrame().updateChunk(chunk, o, s, llt);
+        return this.getDataFrame(llt).updateChunk(chunk, o, s, llt);
     }
 
     public void removeChunk(int ptr, Session s, LLT llt) throws Exception {
-        this.getFrame().removeChunk(ptr, llt, false);
+        this.getFrame(llt).removeChunk(ptr, llt, false);
     }
 
     public void deleteChunk(int ptr, Session s, LLT llt, boolean ignoreNoLocal) throws Exception {
-        this.getFrame().deleteChunk(ptr, s, llt, ignoreNoLocal);
+        this.getFrame(llt).deleteChunk(ptr, s, llt, ignoreNoLocal);
+    }
+
+    //frame taken for change is registered in llt before it is returned: it remains unsynced
+    //and is not evicted until llt is committed and the change is written (see evictFrame)
+    public DataFrame getDataFrame(LLT llt) throws Exception {
+        latch.lock();
+        try {
+            if (llt != null) {
+                llt.add(this);
+            }
+            return getDataFrame();
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    public IndexFrame getIndexFrame(LLT llt) throws Exception {
+        latch.lock();
+        try {
+            if (llt != null) {
+                llt.add(this);
+            }
+            return getIndexFrame();
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    public Frame getFrame(LLT llt) throws Exception {
+        return isIndex() ? getIndexFrame(llt) : getDataFrame(llt);
     }
 
     public DataFile getDataFile() {
@@ -463,14 +529,48 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
     }
 
     public synchronized boolean clearFrame() {
-        if (this.frame != null && this.isSynced()) {
-            this.frame.cleanUpIcs();
+        final Frame f = this.frame;
+        if (f != null && this.isSynced()) {
             this.frame = null;
+            BufferPool.getBufferPool().remove(this);
+            retireFrame(f);
             return true;
         }
         return false;
     }
 
+    //called by buffer pool under its lock, so latch is not awaited: frame held by writer is not evicted,
+    //frame changed by writer which did not take latch is restored
+    public Frame evictFrame() {
+        if (!latch.tryLock()) {
+            return null;
+        }
+        try {
+            final Frame f = this.frame;
+            final long v = this.version.get();
+            if (f == null || !isSynced() || !FRAME.compareAndSet(this, f, null)) {
+                return null;
+            }
+            if (this.version.get() != v) {
+                FRAME.compareAndSet(this, null, f);
+                return null;
+            }
+            return f;
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    //frame removed from heap is kept encoded in off-heap cache
+    public void retireFrame(Frame f) {
+        try {
+            OffHeapFrameCache.getCache().put(getFrameId(), f.getFrame());
+        } catch (Exception e) {
+            OffHeapFrameCache.getCache().remove(getFrameId());
+        }
+        f.cleanUpIcs();
+    }
+
     public Class getEntityClass() {
         return entityClass;
     }
@@ -533,8 +633,16 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
         }
     }
 
-    public synchronized void rollbackTransaction(Transaction tran, ArrayList<FrameData> ubs, Session s) throws Exception {
-        this.getFrame().rollbackTransaction(tran, ubs, s);
+    //latch is taken before frame monitor, as in getDataFrame(LLT)
+    public void rollbackTransaction(Transaction tran, ArrayList<FrameData> ubs, Session s) throws Exception {
+        latch.lock();
+        try {
+            synchronized (this) {
+                this.getFrame().rollbackTransaction(tran, ubs, s);
+            }
+        } finally {
+            latch.unlock();
+        }
     }
 
     public int getOwnerId() {
@@ -542,16 +650,6 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
         return (int)ownerId;
     }
 
-    public int getPriority() {
-        return priority.get();
-    }
-
-    public void decreasePriority() {
-        if (this.priority.get() > 0) {
-            this.priority.decrementAndGet();
-        }
-    }
-
 /*
     public int getLock() {
         return lock.get();
@@ -606,15 +704,28 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
 */
 
     public boolean isSynced() {
-        return synced.get();
+        return syncedVersion.get() == version.get();
     }
 
     public void setSynced() {
-        this.synced.set(true);
+        this.syncedVersion.set(version.get());
+    }
+
+    //frame changes up to the given version are written to datafile
+    public boolean setSynced(long version) {
+        long v = syncedVersion.get();
+        while (v < version && !syncedVersion.compareAndSet(v, version)) {
+            v = syncedVersion.get();
+        }
+        return isSynced();
     }
 
     public void setUnsynced() {
-        this.synced.set(false);
+        this.version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
     }
 
     public boolean isRbck() {
@@ -668,6 +779,8 @@ public class FrameData implements Serializable, Comparable, FrameApi, FilePartit
 
     public void onDelete() {
         this.frame = null;
+        BufferPool.getBufferPool().remove(this);
+        OffHeapFrameCache.getCache().remove(getFrameId());
         this.free();
     }
 
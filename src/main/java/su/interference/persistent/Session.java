@@ -34,6 +34,8 @@ import su.interference.proxy.*;
 import su.interference.sql.ResultSet;
 import su.interference.sql.SQLColumn;
 import su.interference.sql.SQLCursor;
+import su.interference.sql.SQLPlanCache;
+import su.interference.sql.SQLPreparedStatement;
 import su.interference.sql.SQLSelect;
 import su.interference.transport.RemoteSession;
 import su.interference.transport.TransportChannel;
@@ -271,6 +273,9 @@ public class Session implements OnDelete {
         }
 
         logger.info("table "+w.getName()+" successfully registered with id = "+w.getObjectId());
+        if (cols == null) {
+            SQLPlanCache.getInstance().invalidate();
+        }
         //init in-memory indexes for Id and Index columns of temporary table
         w.initIndexFields();
         return w;
@@ -467,6 +472,10 @@ public class Session implements OnDelete {
         return ds.getTable();
     }
 
+    public SQLPreparedStatement prepare(String sql) throws Exception {
+        return new SQLPreparedStatement(sql, this);
+    }
+
     public void delete (Object o, LLT llt) throws Exception {
         final Table t = Instance.getInstance().getTableByName(o.getClass().getName());
         if (t != null) {
@@ -113,7 +113,13 @@ public class Table implements ResultSet {
     @Transient
     private Map<Integer, Long> ixstartfs = new HashMap<>();
     @Transient
-    private AtomicLong idValue2;
+    private volatile AtomicLong idValue2;
+    @Transient
+    private volatile long idLimit;
+    @Transient
+    private volatile AtomicLong incValue2;
+    @Transient
+    private volatile long incLimit;
     @Transient
     private ArrayList<IndexField> indexes;
     @Transient
@@ -139,7 +145,9 @@ public class Table implements ResultSet {
     @Transient
     private final WaitFrame[] lbs;
     @Transient
-    private final AtomicInteger avframeStart = new AtomicInteger(0);
+    private final Object avframeMonitor = new Object();
+    @Transient
+    private final AtomicInteger avframeWaiters = new AtomicInteger(0);
     @Transient
     private final AtomicInteger ixFrameCurr = new AtomicInteger(0);
     @SuppressWarnings("WeakerAccess")
@@ -150,6 +158,13 @@ public class Table implements ResultSet {
     @Transient
     private static final ExecutorService framepool = Executors.newCachedThreadPool();
     @Transient
+    private final Object idLock = new Object();
+    @Transient
+    private final Object allocLock = new Object();
+    //taken under datafile monitor, which allocation takes under allocLock
+    @Transient
+    private final Object chainLock = new Object();
+    @Transient
     private volatile Meter persistMeter;
     @Transient
     private volatile Meter findMeter;
@@ -184,39 +199,83 @@ public class Table implements ResultSet {
         return lbs;
     }
 
+    //values are handed out of reserved block without locks, only block reservation is persisted
+    //own monitor instead of table one: caller may hold llt, which prevents deadlock with getIncValue
     public long getIdValue(Session s, LLT llt) throws Exception {
-        if (idValue==null) {
-            idValue = new AtomicLong(0);
+        final long step = idIncrement <= 1 ? 1 : idIncrement;
+        final long v = nextReserved(idValue2, idLimit, step);
+        if (v > 0) {
+            return v;
         }
-        if (idIncrement<=1) {
+        synchronized (idLock) {
+            if (idValue == null) {
+                idValue = new AtomicLong(0);
+            }
             if (idValue2 == null) {
                 idValue2 = new AtomicLong(idValue.get());
-                idValue.getAndAdd(IDENT_STORE_SIZE);
-                s.persist(this, llt); //update
             }
-            if (idValue2.get() == idValue.get()) {
-                idValue.getAndAdd(IDENT_STORE_SIZE);
+            while (true) {
+                final long v_ = nextReserved(idValue2, idLimit, step);
+                if (v_ > 0) {
+                    return v_;
+                }
+                //node-partitioned values of DistributedId stay aligned: block is a multiple of idIncrement
+                idValue.set(Math.max(idValue.get(), idValue2.get()) + step * IDENT_STORE_SIZE);
                 s.persist(this, llt); //update
+                idLimit = idValue.get();
             }
-            return idValue2.addAndGet(1);
-        } else {
-            idValue.getAndAdd(idIncrement);
-            s.persist(this, llt);
-            return idValue.get();
         }
     }
 
-    public synchronized long getIncValue(Session s, LLT llt) throws Exception {
-        if (incValue==null) { incValue = new AtomicLong(0); }
-        incValue.addAndGet(1);
-        s.persist(this, llt); //update
-        return incValue.get();
+    //llt is taken before sequence lock: waiting for llt inside it blocks llt holders which allocate ids
+    public long getIncValue(Session s, LLT extllt) throws Exception {
+        final long v = nextReserved(incValue2, incLimit, 1);
+        if (v > 0) {
+            return v;
+        }
+        final LLT llt = extllt == null ? LLT.getLLT() : extllt;
+        try {
+            synchronized (idLock) {
+                if (incValue == null) {
+                    incValue = new AtomicLong(0);
+                }
+                if (incValue2 == null) {
+                    incValue2 = new AtomicLong(incValue.get());
+                }
+                while (true) {
+                    final long v_ = nextReserved(incValue2, incLimit, 1);
+                    if (v_ > 0) {
+                        return v_;
+                    }
+                    incValue.set(Math.max(incValue.get(), incValue2.get()) + IDENT_STORE_SIZE);
+                    s.persist(this, llt); //update
+                    incLimit = incValue.get();
+                }
+            }
+        } finally {
+            if (extllt == null) { llt.commit(); }
+        }
+    }
+
+    //returns next value of reserved block or 0 if block is not reserved or exhausted
+    private static long nextReserved(AtomicLong value, long limit, long step) {
+        if (value != null) {
+            long v = value.get();
+            while (v + step <= limit) {
+                if (value.compareAndSet(v, v + step)) {
+                    return v + step;
+                }
+                v = value.get();
+            }
+        }
+        return 0;
     }
 
-    public synchronized long getFrameOrder(Session s, LLT llt) throws Exception {
-        if (frameOrder==null) { frameOrder = new AtomicLong(0); }
-        frameOrder.addAndGet(1);
-        return frameOrder.get();
+    public long getFrameOrder(Session s, LLT llt) throws Exception {
+        synchronized (allocLock) {
+            if (frameOrder==null) { frameOrder = new AtomicLong(0); }
+            return frameOrder.incrementAndGet();
+        }
     }
 
     public void setIdValue(AtomicLong idValue) {
@@ -341,7 +400,7 @@ public class Table implements ResultSet {
         return newInstance(new Object[]{});
     }
 
-    protected synchronized Object newInstance(Session s) throws Exception {
+    protected Object newInstance(Session s) throws Exception {
         return newInstance(new Object[]{}, s);
     }
 
@@ -643,6 +702,7 @@ public class Table implements ResultSet {
                 try {
                     s.delete(bd, llt);
                     s.persist(fb, llt);
+                    LLT.remove(bd);
                 } finally {
                     llt.commit();
                 }
@@ -679,13 +739,18 @@ public class Table implements ResultSet {
         }
         this.indexes = new ArrayList<>();
         this.maps = new ArrayList<>();
-        try {
-            this.genericClass = Class.forName(name);
-        } catch (ClassNotFoundException e) {
+        //result set classes are shared between tables of the same shape, class file under table name is for reload only
+        if (pclass != null && pclass.getAnnotation(ResultSetEntity.class) != null) {
+            this.genericClass = pclass;
+        } else {
             try {
-                this.genericClass = Instance.getUCL().loadClass(name);
-            } catch (ClassNotFoundException e2) {
-                this.genericClass = pclass;
+                this.genericClass = Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                try {
+                    this.genericClass = Instance.getUCL().loadClass(name);
+                } catch (ClassNotFoundException e2) {
+                    this.genericClass = pclass;
+                }
             }
         }
         this.simpleName = genericClass.getSimpleName();
@@ -818,8 +883,8 @@ public class Table implements ResultSet {
 
         if (this.name.equals(FrameData.class.getName())) {
             getIndexFieldByColumn("objectId").setIndex(ixl);
-            final Map<Long, Object> ixlb = new ConcurrentHashMap<>();
-            final Map<Long, Object> ixla = new ConcurrentHashMap<>();
+            final LongObjectMap ixlb = new LongObjectMap();
+            final LongObjectMap ixla = new LongObjectMap();
             final IndexList ixls = new IndexList();
             for (Object o : ixl.getContent()) {
                 ixlb.put(((FrameData) ((DataChunk) o).getEntity()).getFrameId(), o);
@@ -902,7 +967,8 @@ public class Table implements ResultSet {
                 indexes.add(new IndexField(f[i], new IndexList()));
             }
             if (b!=null) {
-                maps.add(new MapField(f[i], new ConcurrentHashMap()));
+                //primitive long keys (frame and transaction directories) are stored without boxing
+                maps.add(new MapField(f[i], f[i].getType() == long.class ? new LongObjectMap() : new ConcurrentHashMap()));
             }
         }
     }
@@ -1131,36 +1197,70 @@ public class Table implements ResultSet {
         }
     }
 
+    //current frames are striped by thread, so concurrent inserters start from different frames
+    //if all frames are busy, waiter parks until one of them is released (see releaseFrame)
     private WaitFrame getAvailableFrame(final Object o, final boolean fpart) throws ClassNotFoundException, InstantiationException, InternalException, IllegalAccessException {
         Metrics.get("getAvailableFrame").start();
-        final long st = System.currentTimeMillis();
-        final int a = avframeStart.get()%this.lbs.length;
-
-        while (true) {
-            final long tp = System.currentTimeMillis() - st;
-            for (int i = 0; i < this.lbs.length; i++) {
-                final int i_ = (a + i) % this.lbs.length;
-                final WaitFrame wb = this.lbs[i_];
-                final WaitFrame bd = fpart ? wb.acquire(getTargetFileId(((FilePartitioned) o).getFile())) : wb.acquire();
-                if (bd != null) {
-                    avframeStart.getAndIncrement();
-                    Metrics.get("getAvailableFrame").stop();
-                    return bd;
+        try {
+            final int a = (int) (Thread.currentThread().getId() % this.lbs.length);
+            final int fileId = fpart ? getTargetFileId(((FilePartitioned) o).getFile()) : 0;
+            WaitFrame wb = tryAcquireFrame(a, fpart, fileId);
+            if (wb != null) {
+                return wb;
+            }
+            Metrics.get("availFrameWaits").put();
+            final long deadline = System.currentTimeMillis() + Config.getConfig().CHECK_AVAIL_FRAME_TIMEOUT;
+            avframeWaiters.incrementAndGet();
+            try {
+                synchronized (avframeMonitor) {
+                    while (true) {
+                        wb = tryAcquireFrame(a, fpart, fileId);
+                        if (wb != null) {
+                            return wb;
+                        }
+                        final long rest = deadline - System.currentTimeMillis();
+                        if (rest <= 0) {
+                            break;
+                        }
+                        avframeMonitor.wait(rest);
+                    }
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                avframeWaiters.decrementAndGet();
             }
-            if (tp > Config.getConfig().CHECK_AVAIL_FRAME_TIMEOUT) {
-                for (int i = 0; i < this.lbs.length; i++) {
-                    logger.warn("lbs: "+lbs[i].getBd().getFrameId()+":"+lbs[i].getBusy().get());
-                }
-                logger.warn("avframestart: "+avframeStart.get());
-                logger.warn("timeout occured during getavailableframe method: " + Config.getConfig().CHECK_AVAIL_FRAME_TIMEOUT);
-                break;
+            for (int i = 0; i < this.lbs.length; i++) {
+                logger.warn("lbs: "+(lbs[i].getBd()==null?0:lbs[i].getBd().getFrameId())+":"+lbs[i].getBusy().get());
+            }
+            logger.warn("timeout occured during getavailableframe method: " + Config.getConfig().CHECK_AVAIL_FRAME_TIMEOUT);
+            Metrics.get("availFrameTimeouts").put();
+            throw new InternalException();
+        } finally {
+            Metrics.get("getAvailableFrame").stop();
+        }
+    }
+
+    private WaitFrame tryAcquireFrame(final int a, final boolean fpart, final int fileId) {
+        for (int i = 0; i < this.lbs.length; i++) {
+            final WaitFrame wb = this.lbs[(a + i) % this.lbs.length];
+            final WaitFrame bd = fpart ? wb.acquire(fileId) : wb.acquire();
+            if (bd != null) {
+                return bd;
             }
         }
-        Metrics.get("getAvailableFrame").stop();
         return null;
     }
 
+    private void releaseFrame(final WaitFrame wb) {
+        wb.release();
+        if (avframeWaiters.get() > 0) {
+            synchronized (avframeMonitor) {
+                avframeMonitor.notifyAll();
+            }
+        }
+    }
+
     private int getTargetFileId(final int fileId) throws ClassNotFoundException, InstantiationException, InternalException, IllegalAccessException {
         for (DataFile f : Storage.getStorage().getInitDataFiles()) {
             if (f.order(fileId)) {
@@ -1184,7 +1284,7 @@ public class Table implements ResultSet {
         return false;
     }
 
-    public synchronized DataChunk persist (final Object o, final Session s) throws Exception {
+    public DataChunk persist (final Object o, final Session s) throws Exception {
         return persist(o, s, null);
     }
 
@@ -1223,7 +1323,7 @@ public class Table implements ResultSet {
                     final int p = bd.insertChunk(nc, s, true, llt);
                     if (p == 0) {
                         final FrameData nb = this.createNewFrame(bd, bdw, bd.getFile(), 0, 0, false, false, false, s, llt);
-                        nb.getDataFrame().insertChunk(nc, s, true, llt);
+                        nb.insertChunk(nc, s, true, llt);
                         usedSpace(nb, nb.getUsed() + len, true, s, llt);
                     } else {
                         usedSpace(bd, bd.getUsed() + len, true, s, llt);
@@ -1232,10 +1332,10 @@ public class Table implements ResultSet {
                     if (extllt == null) {
                         llt.commit();
                     }
+                    releaseFrame(bdw);
                 }
 
                 //system-only table in-memory indexes
-                bdw.release();
                 this.addIndexValue(nc);
                 Metrics.get("persistInsertChunk").stop();
 
@@ -1252,20 +1352,22 @@ public class Table implements ResultSet {
                     if (diff > 0) {
                         bd.removeChunk(dc.getHeader().getRowID().getRowPointer(), s, llt);
                         final WaitFrame ibw = getAvailableFrame(o, fpart);
-                        final FrameData ib = ibw.getBd();
-
-                        final int p = ib.getDataFrame().insertChunk(dc, s, true, llt);
-                        if (p == 0) {
-                            final FrameData nb = this.createNewFrame(ib, ibw, ib.getFile(), 0, 0, false, false, false, s, llt);
-                            nb.getDataFrame().insertChunk(dc, s, true, llt);
-                            usedSpace(bd, bd.getUsed() - len, true, s, llt);
-                            usedSpace(nb, newlen, true, s, llt);
-                        } else {
-                            usedSpace(bd, bd.getUsed() - len, true, s, llt);
-                            usedSpace(ib, ib.getUsed() + newlen, true, s, llt);
-                        }
+                        try {
+                            final FrameData ib = ibw.getBd();
 
-                        ibw.release();
+                            final int p = ib.insertChunk(dc, s, true, llt);
+                            if (p == 0) {
+                                final FrameData nb = this.createNewFrame(ib, ibw, ib.getFile(), 0, 0, false, false, false, s, llt);
+                                nb.insertChunk(dc, s, true, llt);
+                                usedSpace(bd, bd.getUsed() - len, true, s, llt);
+                                usedSpace(nb, newlen, true, s, llt);
+                            } else {
+                                usedSpace(bd, bd.getUsed() - len, true, s, llt);
+                                usedSpace(ib, ib.getUsed() + newlen, true, s, llt);
+                            }
+                        } finally {
+                            releaseFrame(ibw);
+                        }
                         return dc;
 
                     } else {
@@ -1280,43 +1382,45 @@ public class Table implements ResultSet {
                 }
             }
         } else {
-            synchronized (this) {
-                if (s.getTransaction() == null || !s.getTransaction().started || s.getTransaction().getMTran() == 0) {
-                    s.startStatement();
-                }
-                if (s.getTransaction() == null || !s.getTransaction().started || s.getTransaction().getMTran() == 0) {
-                    throw new InternalException();
-                }
-                final EntityContainer to = (EntityContainer) o;
-                if (to.getTran() != null && to.getTran().getCid() == 0) {
-                    if (to.getTran().getTransId() != s.getTransaction().getTransId()) {
-                        logger.error("unable to persist an object that has not been changed by current transaction");
-                        return null;
-                    }
+            //frames are latched by insert/update methods and current frames are owned via getAvailableFrame,
+            //so concurrent sessions fill different frames in parallel
+            if (s.getTransaction() == null || !s.getTransaction().started || s.getTransaction().getMTran() == 0) {
+                s.startStatement();
+            }
+            if (s.getTransaction() == null || !s.getTransaction().started || s.getTransaction().getMTran() == 0) {
+                throw new InternalException();
+            }
+            final EntityContainer to = (EntityContainer) o;
+            if (to.getTran() != null && to.getTran().getCid() == 0) {
+                if (to.getTran().getTransId() != s.getTransaction().getTransId()) {
+                    logger.error("unable to persist an object that has not been changed by current transaction");
+                    return null;
                 }
+            }
 
-                final LLT llt = extllt == null ? LLT.getLLT() : extllt;
-                try {
-                    if (this.isIndex()) {
-                        this.add(new RowId(0, 0, 0), o, s, llt);
-                        return null;
-                    }
+            final LLT llt = extllt == null ? LLT.getLLT() : extllt;
+            try {
+                if (this.isIndex()) {
+                    this.add(new RowId(0, 0, 0), o, s, llt);
+                    return null;
+                }
 
-                    Metrics.get("persistGetChunk").start();
-                    final DataChunk dc = isIdFieldNoCheck() ? null : this.getChunkByEntity(o, s, llt);
-                    Metrics.get("persistGetChunk").stop();
+                Metrics.get("persistGetChunk").start();
+                final DataChunk dc = isIdFieldNoCheck() ? null : this.getChunkByEntity(o, s, llt);
+                Metrics.get("persistGetChunk").stop();
 
-                    if (dc == null) {
-                        Metrics.get("persistInsertChunk").start();
-                        final DataChunk nc = new DataChunk(o, s, this);
-                        final int len = nc.getBytesAmount();
-                        final WaitFrame bdw = getAvailableFrame(o, fpart);
+                if (dc == null) {
+                    Metrics.get("persistInsertChunk").start();
+                    final DataChunk nc = new DataChunk(o, s, this);
+                    final int len = nc.getBytesAmount();
+                    final WaitFrame bdw = getAvailableFrame(o, fpart);
+                    try {
                         final FrameData bd = bdw.getBd();
                         final int diff = len - bd.getFrameFree();
 
                         if (diff > 0) {
                             final FrameData nb = this.createNewFrame(bd, bdw, bd.getFile(), 0, 0, false, false, false, s, llt);
-                            nb.getDataFrame().insertChunk(nc, s, true, llt);
+                            nb.insertChunk(nc, s, true, llt);
                             s.getTransaction().storeFrame(nb, len, s, llt);
                         } else {
                             final int p = bd.insertChunk(nc, s, true, llt);
@@ -1325,44 +1429,47 @@ public class Table implements ResultSet {
                             }
                             s.getTransaction().storeFrame(bd, len, s, llt);
                         }
-                        ((EntityContainer) o).setTran(nc.getHeader().getTran());
-                        ((EntityContainer) o).setRowId(nc.getHeader().getRowID());
-                        ((EntityContainer) o).setDataChunk(nc);
+                    } finally {
+                        releaseFrame(bdw);
+                    }
+                    ((EntityContainer) o).setTran(nc.getHeader().getTran());
+                    ((EntityContainer) o).setRowId(nc.getHeader().getRowID());
+                    ((EntityContainer) o).setDataChunk(nc);
 
-                        bdw.release();
-                        Metrics.get("persistInsertChunk").stop();
+                    Metrics.get("persistInsertChunk").stop();
 
-                        Metrics.get("persistInsertIndex").start();
-                        //remove external llt for deadlock prevent
-                        persistIndexes(nc, s, llt);
-                        Metrics.get("persistInsertIndex").stop();
+                    Metrics.get("persistInsertIndex").start();
+                    //remove external llt for deadlock prevent
+                    persistIndexes(nc, s, llt);
+                    Metrics.get("persistInsertIndex").stop();
 
-                        return nc;
+                    return nc;
 
-                    } else {
-                        final FrameData bd = Instance.getInstance().getFrameById(dc.getHeader().getRowID().getFileId()+dc.getHeader().getRowID().getFramePointer());
+                } else {
+                    final FrameData bd = Instance.getInstance().getFrameById(dc.getHeader().getRowID().getFileId()+dc.getHeader().getRowID().getFramePointer());
 
-                        if (!bd.getFrame().isLocal()) {
-                            if (!ignoreNoLocal) {
-                                throw new CannotAccessToForeignRecord();
-                            }
+                    if (!bd.getFrame().isLocal()) {
+                        if (!ignoreNoLocal) {
+                            throw new CannotAccessToForeignRecord();
                         }
+                    }
 
-                        final DataChunk udc = dc.lock(s, llt);
-                        final int len = dc.getBytesAmount();
-                        final int newlen = bd.updateChunk(dc, o, s, llt);
-                        final int diff = newlen - len - bd.getFrameFree();
+                    final DataChunk udc = dc.lock(s, llt);
+                    final int len = dc.getBytesAmount();
+                    final int newlen = bd.updateChunk(dc, o, s, llt);
+                    final int diff = newlen - len - bd.getFrameFree();
 
-                        if (diff > 0) {
-                            final List<DataChunk> ics = lockIndexes(dc, s, llt);
-                            bd.removeChunk(dc.getHeader().getRowID().getRowPointer(), s, llt);
-                            final WaitFrame ibw = getAvailableFrame(o, fpart);
+                    if (diff > 0) {
+                        final List<DataChunk> ics = lockIndexes(dc, s, llt);
+                        bd.removeChunk(dc.getHeader().getRowID().getRowPointer(), s, llt);
+                        final WaitFrame ibw = getAvailableFrame(o, fpart);
+                        try {
                             final FrameData ib = ibw.getBd();
 
-                            final int p = ib.getDataFrame().insertChunk(dc, s, true, llt);
+                            final int p = ib.insertChunk(dc, s, true, llt);
                             if (p == 0) {
                                 final FrameData nb = this.createNewFrame(ib, ibw, ib.getFile(), 0, 0, false, false, false, s, llt);
-                                nb.getDataFrame().insertChunk(dc, s, true, llt);
+                                nb.insertChunk(dc, s, true, llt);
                                 s.getTransaction().storeFrame(bd, udc == null ? null : udc.getUframe(), 0 - len, s, llt);
                                 s.getTransaction().storeFrame(nb, udc == null ? null : udc.getUframe(), newlen, s, llt);
                                 s.getTransaction().storeFrame(nb, newlen, s, llt);
@@ -1381,24 +1488,21 @@ public class Table implements ResultSet {
                                 udc.setEntity(dc.getUndoChunk());
                                 udc.getUframe().updateChunk(udc, dc.getUndoChunk(), s, llt);
                             }
-
-                            ibw.release();
-                            if (extllt == null) {
-                                llt.commit();
-                            }
-
-                            return dc;
-
-                        } else {
-                            s.getTransaction().storeFrame(bd, udc == null ? null : udc.getUframe(), newlen - len, s, llt);
+                        } finally {
+                            releaseFrame(ibw);
                         }
 
                         return dc;
+
+                    } else {
+                        s.getTransaction().storeFrame(bd, udc == null ? null : udc.getUframe(), newlen - len, s, llt);
                     }
-                } finally {
-                    if (extllt == null) {
-                        llt.commit();
-                    }
+
+                    return dc;
+                }
+            } finally {
+                if (extllt == null) {
+                    llt.commit();
                 }
             }
         }
@@ -1555,8 +1659,24 @@ public class Table implements ResultSet {
         return bd;
     }
 
-    public synchronized FrameData allocateFrame(DataFile df, Table t, Session s, LLT llt) throws Exception {
-        return df.allocateFrame(t, s, llt);
+    //own monitor instead of table one: llt holders allocate frames while table may be locked by llt waiter
+    public FrameData allocateFrame(DataFile df, Table t, Session s, LLT llt) throws Exception {
+        synchronized (allocLock) {
+            return df.allocateFrame(t, s, llt);
+        }
+    }
+
+    //frames of table may be created concurrently by sessions which lock different datafiles
+    protected void addLastFrame(FrameData bd) {
+        synchronized (chainLock) {
+            if (this.fileStart == 0 && this.frameStart == 0) {
+                this.fileStart = bd.getFile();
+                this.frameStart = bd.getPtr();
+            }
+            this.fileLast = bd.getFile();
+            this.frameLast = bd.getPtr();
+            incFrameAmount();
+        }
     }
 
     @Deprecated
@@ -1976,9 +2096,9 @@ public class Table implements ResultSet {
                             logger.error("null target returned for frame id " + target.getIndexFrame().getLcId());
                         }
                     }
-                    llt.add(target.getIndexFrame());
-                    target.getIndexFrame().setParentF(parentF);
-                    target.getIndexFrame().setParentB(parentB);
+                    final IndexFrame tf = target.getIndexFrame(llt);
+                    tf.setParentF(parentF);
+                    tf.setParentB(parentB);
                 }
             }
 
@@ -1989,7 +2109,7 @@ public class Table implements ResultSet {
             DataChunk dc__ = null;
             while (cnue) {
                 final DataChunk dc_ = dc__ == null ? dc : dc__;
-                final FrameData newlist = target.getIndexFrame().add(dc_, this, s, llt);
+                final FrameData newlist = target.getIndexFrame(llt).add(dc_, this, s, llt);
                 if (isNoTran()) {
                     usedSpace(target, target.getUsed() + len, true, s, llt);
                 } else {
@@ -2015,9 +2135,7 @@ public class Table implements ResultSet {
                         target = Instance.getInstance().getFrameById(prevtg.getIndexFrame().getParentF() + prevtg.getIndexFrame().getParentB()); //get by last child
                     }
                     if (newlist.getIndexFrame().getDivided() == 0) {
-                        //paranoid fix
-                        llt.add(target.getIndexFrame());
-                        target.getIndexFrame().setLcId(newlist.getIndexFrame().getPtr()); //lc must be > 0 (0 is first leaf ElementList)
+                        target.getIndexFrame(llt).setLcId(newlist.getIndexFrame().getPtr()); //lc must be > 0 (0 is first leaf ElementList)
                     }
                 }
             }
@@ -2538,14 +2656,22 @@ public class Table implements ResultSet {
 
     public Meter getPersistMeter() throws Exception {
         if (persistMeter == null) {
-            persistMeter = Metrics.register(Metrics.TIMER, "persist@"+this.name);
+            synchronized (this) {
+                if (persistMeter == null) {
+                    persistMeter = Metrics.register(Metrics.TIMER, "persist@"+this.name);
+                }
+            }
         }
         return persistMeter;
     }
 
     public Meter getFindMeter() throws Exception {
         if (findMeter == null) {
-            findMeter = Metrics.register(Metrics.TIMER, "find@"+this.name);
+            synchronized (this) {
+                if (findMeter == null) {
+                    findMeter = Metrics.register(Metrics.TIMER, "find@"+this.name);
+                }
+            }
         }
         return findMeter;
     }
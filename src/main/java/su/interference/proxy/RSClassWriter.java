@@ -0,0 +1,367 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.proxy;
+
+import su.interference.sql.SQLColumn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits class file of result set entity in process, same shape as
+ * source previously compiled by RSProxyFactory with javac.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class RSClassWriter {
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final String SUPER = "su/interference/core/GenericResultImpl";
+    private static final String DC = "Lsu/interference/core/DataChunk;";
+    private static final String ROWID = "Lsu/interference/core/RowId;";
+    private static final String LLT = "Lsu/interference/core/LLT;";
+    private static final long SERIAL_VERSION_UID = 6730871208437219890L;
+
+    private final ByteArrayOutputStream cpb = new ByteArrayOutputStream();
+    private final DataOutputStream cp = new DataOutputStream(cpb);
+    private final Map<String, Integer> cpmap = new HashMap<>();
+    private int cpsize = 1;
+    private String thisName;
+
+    public static byte[] write(String name, List<SQLColumn> cs, boolean ixflag) throws IOException {
+        return new RSClassWriter().emit(name, cs, ixflag);
+    }
+
+    private byte[] emit(String name, List<SQLColumn> cs, boolean ixflag) throws IOException {
+        thisName = name.replace('.', '/');
+        final String sname = name.substring(name.lastIndexOf('.') + 1);
+
+        final ByteArrayOutputStream bb = new ByteArrayOutputStream();
+        final DataOutputStream b = new DataOutputStream(bb);
+
+        b.writeShort(ACC_PUBLIC | ACC_SUPER);
+        b.writeShort(cls(thisName));
+        b.writeShort(cls(SUPER));
+        b.writeShort(2);
+        b.writeShort(cls("su/interference/core/IndexChunk"));
+        b.writeShort(cls("java/io/Serializable"));
+
+        //fields
+        b.writeShort(3 + cs.size());
+        b.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+        b.writeShort(utf("serialVersionUID"));
+        b.writeShort(utf("J"));
+        b.writeShort(2);
+        b.writeShort(utf("ConstantValue"));
+        b.writeInt(2);
+        b.writeShort(lng(SERIAL_VERSION_UID));
+        annotations(b, marker("javax/persistence/Transient"));
+        field(b, ACC_PUBLIC, "framePtrRowId", ROWID, marker("javax/persistence/Transient"));
+        field(b, ACC_PUBLIC, "dc", DC, marker("javax/persistence/Transient"));
+        final byte[] mgmt = mgmtColumn();
+        for (SQLColumn c : cs) {
+            field(b, ACC_PRIVATE, c.getAlias(), desc(c.getResultSetType()), marker("javax/persistence/Column"), mgmt);
+        }
+
+        //methods
+        b.writeShort(6 + cs.size() * 2);
+        method(b, "<init>", "()V", 1, 1, new byte[]{0x2a, (byte) 0xb7, hi(mref(SUPER, "<init>", "()V")), lo(mref(SUPER, "<init>", "()V")), (byte) 0xb1});
+        getter(b, "getDataChunk", "()" + DC, "dc", DC, 1);
+        getter(b, "getDataChunkForUpdate", "(" + LLT + ")" + DC, "dc", DC, 2);
+        setter(b, "setDataChunk", "dc", DC);
+        getter(b, "getFramePtrRowId", "()" + ROWID, "framePtrRowId", ROWID, 1);
+        setter(b, "setFramePtrRowId", "framePtrRowId", ROWID);
+        for (SQLColumn c : cs) {
+            final String a = c.getAlias();
+            final String d = desc(c.getResultSetType());
+            final String m = a.substring(0, 1).toUpperCase() + a.substring(1);
+            getter(b, "get" + m, "()" + d, a, d, 1);
+            setter(b, "set" + m, a, d);
+        }
+
+        //class annotations
+        final List<byte[]> ca = new ArrayList<>();
+        ca.add(marker("javax/persistence/Entity"));
+        ca.add(marker("su/interference/core/SystemEntity"));
+        ca.add(marker("su/interference/core/ResultSetEntity"));
+        for (SQLColumn c : cs) {
+            if (c.isMergeIX()) {
+                ca.add(mergeIndex(sname, c.getAlias()));
+            }
+        }
+        if (ixflag) {
+            ca.add(marker("su/interference/core/IndexEntity"));
+        }
+        ca.add(marker("su/interference/core/DisableSync"));
+        b.writeShort(1);
+        annotations(b, ca.toArray(new byte[][]{}));
+        b.flush();
+
+        final ByteArrayOutputStream rb = new ByteArrayOutputStream();
+        final DataOutputStream r = new DataOutputStream(rb);
+        r.writeInt(0xCAFEBABE);
+        r.writeShort(0);
+        r.writeShort(52);
+        r.writeShort(cpsize);
+        cp.flush();
+        cpb.writeTo(r);
+        bb.writeTo(r);
+        r.flush();
+        return rb.toByteArray();
+    }
+
+    private void field(DataOutputStream b, int access, String name, String desc, byte[]... as) throws IOException {
+        b.writeShort(access);
+        b.writeShort(utf(name));
+        b.writeShort(utf(desc));
+        b.writeShort(1);
+        annotations(b, as);
+    }
+
+    private void getter(DataOutputStream b, String name, String mdesc, String field, String fdesc, int locals) throws IOException {
+        final int f = fref(field, fdesc);
+        method(b, name, mdesc, size(fdesc), locals, new byte[]{0x2a, (byte) 0xb4, hi(f), lo(f), ret(fdesc)});
+    }
+
+    private void setter(DataOutputStream b, String name, String field, String fdesc) throws IOException {
+        final int f = fref(field, fdesc);
+        method(b, name, "(" + fdesc + ")V", 1 + size(fdesc), 1 + size(fdesc), new byte[]{0x2a, load(fdesc), (byte) 0xb5, hi(f), lo(f), (byte) 0xb1});
+    }
+
+    private void method(DataOutputStream b, String name, String desc, int stack, int locals, byte[] code) throws IOException {
+        b.writeShort(ACC_PUBLIC);
+        b.writeShort(utf(name));
+        b.writeShort(utf(desc));
+        b.writeShort(1);
+        b.writeShort(utf("Code"));
+        b.writeInt(12 + code.length);
+        b.writeShort(stack);
+        b.writeShort(locals);
+        b.writeInt(code.length);
+        b.write(code);
+        b.writeShort(0); //exception table
+        b.writeShort(0); //attributes
+    }
+
+    private void annotations(DataOutputStream b, byte[]... as) throws IOException {
+        int len = 2;
+        for (byte[] a : as) {
+            len += a.length;
+        }
+        b.writeShort(utf("RuntimeVisibleAnnotations"));
+        b.writeInt(len);
+        b.writeShort(as.length);
+        for (byte[] a : as) {
+            b.write(a);
+        }
+    }
+
+    private byte[] marker(String type) throws IOException {
+        final ByteArrayOutputStream ab = new ByteArrayOutputStream();
+        final DataOutputStream a = new DataOutputStream(ab);
+        a.writeShort(utf("L" + type + ";"));
+        a.writeShort(0);
+        return ab.toByteArray();
+    }
+
+    private byte[] mgmtColumn() throws IOException {
+        final ByteArrayOutputStream ab = new ByteArrayOutputStream();
+        final DataOutputStream a = new DataOutputStream(ab);
+        a.writeShort(utf("Lsu/interference/mgmt/MgmtColumn;"));
+        a.writeShort(4);
+        element(a, "width", 'I', integer(50));
+        element(a, "show", 'Z', integer(1));
+        element(a, "form", 'Z', integer(0));
+        element(a, "edit", 'Z', integer(0));
+        return ab.toByteArray();
+    }
+
+    //@Table(name=sname, indexes={@Index(name="MergeIX"+sname, columnList=alias, unique=false)})
+    private byte[] mergeIndex(String sname, String alias) throws IOException {
+        final ByteArrayOutputStream ab = new ByteArrayOutputStream();
+        final DataOutputStream a = new DataOutputStream(ab);
+        a.writeShort(utf("Ljavax/persistence/Table;"));
+        a.writeShort(2);
+        element(a, "name", 's', utf(sname));
+        a.writeShort(utf("indexes"));
+        a.writeByte('[');
+        a.writeShort(1);
+        a.writeByte('@');
+        a.writeShort(utf("Ljavax/persistence/Index;"));
+        a.writeShort(3);
+        element(a, "name", 's', utf("MergeIX" + sname));
+        element(a, "columnList", 's', utf(alias));
+        element(a, "unique", 'Z', integer(0));
+        return ab.toByteArray();
+    }
+
+    private void element(DataOutputStream a, String name, char tag, int index) throws IOException {
+        a.writeShort(utf(name));
+        a.writeByte(tag);
+        a.writeShort(index);
+    }
+
+    private static String desc(String type) {
+        switch (type) {
+            case "int": return "I";
+            case "long": return "J";
+            case "short": return "S";
+            case "byte": return "B";
+            case "char": return "C";
+            case "boolean": return "Z";
+            case "float": return "F";
+            case "double": return "D";
+            default: return type.startsWith("[") ? type.replace('.', '/') : "L" + type.replace('.', '/') + ";";
+        }
+    }
+
+    private static int size(String desc) {
+        return desc.equals("J") || desc.equals("D") ? 2 : 1;
+    }
+
+    private static byte ret(String desc) {
+        switch (desc.charAt(0)) {
+            case 'J': return (byte) 0xad;
+            case 'F': return (byte) 0xae;
+            case 'D': return (byte) 0xaf;
+            case 'L': case '[': return (byte) 0xb0;
+            default: return (byte) 0xac;
+        }
+    }
+
+    private static byte load(String desc) {
+        switch (desc.charAt(0)) {
+            case 'J': return 0x1f;
+            case 'F': return 0x23;
+            case 'D': return 0x27;
+            case 'L': case '[': return 0x2b;
+            default: return 0x1b;
+        }
+    }
+
+    private static byte hi(int v) {
+        return (byte) (v >> 8);
+    }
+
+    private static byte lo(int v) {
+        return (byte) v;
+    }
+
+    private int utf(String s) throws IOException {
+        final Integer i = cpmap.get("U" + s);
+        if (i != null) {
+            return i;
+        }
+        cp.writeByte(1);
+        cp.writeUTF(s);
+        return entry("U" + s, 1);
+    }
+
+    private int cls(String name) throws IOException {
+        final Integer i = cpmap.get("C" + name);
+        if (i != null) {
+            return i;
+        }
+        final int n = utf(name);
+        cp.writeByte(7);
+        cp.writeShort(n);
+        return entry("C" + name, 1);
+    }
+
+    private int integer(int v) throws IOException {
+        final Integer i = cpmap.get("I" + v);
+        if (i != null) {
+            return i;
+        }
+        cp.writeByte(3);
+        cp.writeInt(v);
+        return entry("I" + v, 1);
+    }
+
+    private int lng(long v) throws IOException {
+        final Integer i = cpmap.get("J" + v);
+        if (i != null) {
+            return i;
+        }
+        cp.writeByte(5);
+        cp.writeLong(v);
+        return entry("J" + v, 2);
+    }
+
+    private int fref(String name, String desc) throws IOException {
+        return ref(9, thisName, name, desc);
+    }
+
+    private int mref(String owner, String name, String desc) throws IOException {
+        return ref(10, owner, name, desc);
+    }
+
+    private int ref(int tag, String owner, String name, String desc) throws IOException {
+        final String key = "R" + tag + owner + "." + name + ":" + desc;
+        final Integer i = cpmap.get(key);
+        if (i != null) {
+            return i;
+        }
+        final int c = cls(owner);
+        final int nt = nameAndType(name, desc);
+        cp.writeByte(tag);
+        cp.writeShort(c);
+        cp.writeShort(nt);
+        return entry(key, 1);
+    }
+
+    private int nameAndType(String name, String desc) throws IOException {
+        final String key = "N" + name + ":" + desc;
+        final Integer i = cpmap.get(key);
+        if (i != null) {
+            return i;
+        }
+        final int n = utf(name);
+        final int d = utf(desc);
+        cp.writeByte(12);
+        cp.writeShort(n);
+        cp.writeShort(d);
+        return entry(key, 1);
+    }
+
+    private int entry(String key, int slots) {
+        final int i = cpsize;
+        cpmap.put(key, i);
+        cpsize += slots;
+        return i;
+    }
+
+}
@@ -31,13 +31,10 @@ import su.interference.core.Instance;
 import su.interference.exception.InternalException;
 import su.interference.sql.SQLColumn;
 
-import javax.tools.*;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.net.URI;
 import java.net.URLClassLoader;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -56,142 +53,49 @@ public class RSProxyFactory {
 
     public static RSProxyFactory getInstance() { return instance; }
 
+    //classes are shared by result column signature: identical shapes reuse one loaded class
     public synchronized Class register (List<SQLColumn> cs, String name, boolean ixflag) throws ClassNotFoundException, InternalException, IOException {
-        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
         final String p = "su.interference.persistent";
 
-        String sname;
-        if (name.indexOf(p)==0) {
-            sname = name.substring(p.length()+1, name.length());
-        } else {
+        if (name.indexOf(p)!=0) {
             throw new InternalException();
         }
 
-        final StringBuffer sb = new StringBuffer();
-        sb.append("package su.interference.persistent;\n");
-        sb.append("\n");
-        sb.append("import javax.persistence.Entity;\n");
-        sb.append("import javax.persistence.Id;\n");
-        sb.append("import javax.persistence.Column;\n");
-        sb.append("import javax.persistence.Transient;\n");
-        sb.append("import javax.persistence.GeneratedValue;\n");
-        sb.append("import su.interference.core.IndexChunk;\n");
-        sb.append("import su.interference.core.SystemEntity;\n");
-        sb.append("import su.interference.core.ResultSetEntity;\n");
-        sb.append("import su.interference.core.IndexEntity;\n");
-        sb.append("import su.interference.core.DisableSync;\n");
-        sb.append("import su.interference.core.LLT;\n");
-        sb.append("import su.interference.mgmt.MgmtColumn;\n");
-        sb.append("\n");
-        sb.append("@Entity\n");
-        sb.append("@SystemEntity\n");
-        sb.append("@ResultSetEntity\n");
-        for (SQLColumn sqlc : cs) {
-            if (sqlc.isMergeIX()) {
-                sb.append("@Table(name=\""+sname+"\", indexes={@Index(name=\"MergeIX"+sname+"\", columnList=\""+sqlc.getAlias()+"\", unique=false)})\n");
-            }
-        }
-        if (ixflag) {
-            sb.append("@IndexEntity\n");
-        }
-        sb.append("@DisableSync\n");
-        sb.append("public class ");
-        sb.append(sname);
-        sb.append(" extends su.interference.core.GenericResultImpl implements IndexChunk, java.io.Serializable {\n");
-        sb.append("\n");
-        //todo serialVersionUID should be unique for every proxy class
-        sb.append("    @Transient\n");
-        sb.append("    private final static long serialVersionUID = 6730871208437219890L;\n");
-        sb.append("    @Transient\n");
-        sb.append("    public su.interference.core.RowId framePtrRowId;\n");
-        sb.append("    @Transient\n");
-        sb.append("    public su.interference.core.DataChunk dc;\n");
-        sb.append("    public su.interference.core.DataChunk getDataChunk() { return dc; }\n");
-        sb.append("    public su.interference.core.DataChunk getDataChunkForUpdate(LLT llt) { return dc; }\n");
-        sb.append("    public void setDataChunk(su.interference.core.DataChunk c) { dc = c; }\n");
-        sb.append("    public su.interference.core.RowId getFramePtrRowId() { return framePtrRowId; }\n");
-        sb.append("    public void setFramePtrRowId(su.interference.core.RowId r) { framePtrRowId = r; }\n");
-        sb.append("\n");
-
-        for (int i=0; i<cs.size(); i++) {
-            Field f = cs.get(i).getColumn();
-            sb.append("    @Column\n");
-            sb.append("    @MgmtColumn(width=50, show=true, form=false, edit=false)\n");
-            sb.append("    private ");
-            sb.append(cs.get(i).getResultSetType());
-            sb.append(" ");
-            sb.append(cs.get(i).getAlias());
-            sb.append(";\n");
-        }
-        sb.append("\n");
-
-        for (int i=0; i<cs.size(); i++) {
-            Field f = cs.get(i).getColumn();
-            sb.append("    public ");
-            sb.append(cs.get(i).getResultSetType());
-            sb.append(" get");
-            sb.append(cs.get(i).getAlias().substring(0,1).toUpperCase());
-            sb.append(cs.get(i).getAlias().substring(1,cs.get(i).getAlias().length()));
-            sb.append("() {\n");
-            sb.append("      return this.");
-            sb.append(cs.get(i).getAlias());
-            sb.append(";\n");
-            sb.append("    }\n");
-            sb.append("\n");
-            sb.append("    public void set");
-            sb.append(cs.get(i).getAlias().substring(0,1).toUpperCase());
-            sb.append(cs.get(i).getAlias().substring(1,cs.get(i).getAlias().length()));
-            sb.append("(");
-            sb.append(cs.get(i).getResultSetType());
-            sb.append(" ");
-            sb.append(cs.get(i).getAlias());
-            sb.append(") {\n");
-            sb.append("      this.");
-            sb.append(cs.get(i).getAlias());
-            sb.append(" = ");
-            sb.append(cs.get(i).getAlias());
-            sb.append(";\n");
-            sb.append("    }\n");
-            sb.append("\n");
+        //class file under table name is loaded only on reload of table from catalog after restart
+        store(name, RSClassWriter.write(name, cs, ixflag));
+
+        final String key = signature(cs, ixflag);
+        if (key == null) {
+            return ucl.loadClass(name);
         }
-        sb.append("}\n");
-
-        final String s = sb.toString();
-        logger.debug(s);
-
-        final JavaCompiler jc = ToolProvider.getSystemJavaCompiler();
-        final StandardJavaFileManager fm = jc.getStandardFileManager(null,null,null);
-        fm.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(new File(Config.getConfig().DB_PATH)));
-        final SimpleJavaFileObject fo = new JavaSourceFromString(name, s.toString());
-        Iterable<? extends JavaFileObject> units = Arrays.asList(fo);
-        final DiagnosticCollector<JavaFileObject> dc = new DiagnosticCollector<JavaFileObject>();
-        final JavaCompiler.CompilationTask ct = jc.getTask(null,fm,dc,null,null,units);
-        ct.call();
-
-        for (Diagnostic d : dc.getDiagnostics()) {
-            logger.debug(d.getCode());
-            logger.debug(d.getKind().toString());
-            logger.debug(String.valueOf(d.getPosition()));
-            logger.debug(String.valueOf(d.getStartPosition()));
-            logger.debug(String.valueOf(d.getEndPosition()));
-            logger.debug(d.getSource().toString());
-            logger.debug(d.getMessage(null));
+        Class<?> pc = hmap.get(key);
+        if (pc == null) {
+            final String cname = p + ".RS$" + hmap.size();
+            store(cname, RSClassWriter.write(cname, cs, ixflag));
+            pc = ucl.loadClass(cname);
+            hmap.put(key, pc);
+            logger.debug("result class " + cname + " registered for " + key);
         }
-
-        final Class<?> pc = ucl.loadClass("su.interference.persistent."+sname);
-        hmap.put(name, pc);
         return pc;
     }
 
-    private static class JavaSourceFromString extends SimpleJavaFileObject {
-        final String code;
-        JavaSourceFromString (String name, String code) {
-            super(URI.create("string:///" + name.replaceAll("\\.", "/") + Kind.SOURCE.extension), Kind.SOURCE);
-            this.code = code;
+    //null for classes with merge index which is named by table
+    private static String signature(List<SQLColumn> cs, boolean ixflag) {
+        final StringBuilder sb = new StringBuilder(ixflag ? "I" : "T");
+        for (SQLColumn c : cs) {
+            if (c.isMergeIX()) {
+                return null;
+            }
+            sb.append(';').append(c.getAlias()).append(':').append(c.getResultSetType());
         }
-        @Override
-        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
-            return code;
+        return sb.toString();
+    }
+
+    private static void store(String name, byte[] b) throws IOException {
+        final File f = new File(Config.getConfig().DB_PATH, name.replace('.', File.separatorChar) + ".class");
+        f.getParentFile().mkdirs();
+        try (FileOutputStream fos = new FileOutputStream(f)) {
+            fos.write(b);
         }
     }
 
@@ -87,6 +87,8 @@ public class CList {
         int dbcolumnId = 0;
         Table dbtable = null;
         int windowInterval = 0;
+        boolean windowTime = false;
+        boolean windowTumbling = false;
 
         if (cf>0 && c.substring(c.length()-1,c.length()).equals(")")) {
             column = c.trim().substring(c.indexOf("(")+1,c.length()-1);
@@ -98,15 +100,29 @@ public class CList {
                 if (c.toUpperCase().indexOf(SQLSelect.INTERVAL_CLAUSE)<=0) {
                     throw new InvalidWindowByPart();
                 }
-                String[] intd = c.substring(c.toUpperCase().indexOf(SQLSelect.INTERVAL_CLAUSE)+SQLSelect.INTERVAL_CLAUSE.length()).split("=");
-                if (intd.length != 2) {
+                //INTERVAL [=] n [SECONDS] [TUMBLING|SLIDING], count-based sliding window by default
+                String[] intd = c.substring(c.toUpperCase().indexOf(SQLSelect.INTERVAL_CLAUSE)+SQLSelect.INTERVAL_CLAUSE.length()).replace("=", " ").trim().split("\\s+");
+                if (intd.length < 1 || intd.length > 3) {
                     throw new InvalidWindowByPart();
                 }
                 try {
-                    windowInterval = Integer.valueOf(intd[1].trim());
+                    windowInterval = Integer.valueOf(intd[0].trim());
                 } catch (Exception e) {
                     throw new InvalidWindowByPart();
                 }
+                if (windowInterval <= 0) {
+                    throw new InvalidWindowByPart();
+                }
+                for (int i=1; i<intd.length; i++) {
+                    final String w = intd[i].toUpperCase();
+                    if (w.equals(SQLSelect.SECONDS_CLAUSE) && !windowTime) {
+                        windowTime = true;
+                    } else if (w.equals(SQLSelect.TUMBLING_CLAUSE) && i == intd.length - 1) {
+                        windowTumbling = true;
+                    } else if (!w.equals(SQLSelect.SLIDING_CLAUSE) || i != intd.length - 1) {
+                        throw new InvalidWindowByPart();
+                    }
+                }
                 column = c.trim().substring(0,c.toUpperCase().indexOf(SQLSelect.INTERVAL_CLAUSE)).trim();
                 alias = column;
             } else {
@@ -167,6 +183,8 @@ public class CList {
                     if (loc==LOC_WINDOW)  {
                         cl.setWindow(true);
                         cl.setWindowInterval(windowInterval);
+                        cl.setWindowTime(windowTime);
+                        cl.setWindowTumbling(windowTumbling);
                     }
                     return cl;
                 }
@@ -179,6 +197,8 @@ public class CList {
                 }
 
                 SQLColumn sqlc = new SQLColumn(dbtable, dbcolumnId, dbcolumn, al, cf, loc, 0, 0, windowInterval, false, true);
+                sqlc.setWindowTime(windowTime);
+                sqlc.setWindowTumbling(windowTumbling);
 
                 this.columns.add(sqlc);
                 return sqlc;
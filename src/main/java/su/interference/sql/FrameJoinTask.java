@@ -63,6 +63,8 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
     private final boolean processleft;
     private final Table processtbl;
     private final EventProcessor ep;
+    private SQLPredicate predicate;
+    private Class<?> predicateClass;
 
     static {
         cache.put("int", int.class);
@@ -166,13 +168,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                         if (drs2 == null) {
                             //HashFrame returns null drs
                             if (bd2 != null && bd2.getImpl() == FrameApi.IMPL_HASH) {
-                                final Comparable key = getHashKeyValue(c1, o1, ((SQLHashMapFrame) bd2).getCkey(), s);
-                                final List<Object> o2 = ((SQLHashMapFrame) bd2).get(key, s);
-                                if (o2 != null) {
-                                    if (!(o2.get(0) == null && last)) {
-                                        processRecords(r, c1, c2, t1, t2, o1, o2.get(0), c1rs, fs);
-                                    }
-                                }
+                                probeHash(r, c1, c2, t1, t2, o1, c1rs, fs);
                             } else if (bd2 != null && bd2.getImpl() == FrameApi.IMPL_INDEX) {
                                 final Comparable key = getHashKeyValue(c1, o1, ((SQLIndexFrame) bd2).getLkey(), s);
                                 final List<Object> o2 = ((SQLIndexFrame) bd2).get(key, s);
@@ -189,7 +185,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                                 // workaround for StreamQueue - always returns initial EntityContainer
                                 if (r == null || target instanceof StreamQueue) {
                                     //todo need to cast o1 to RS type
-                                    if (nc.checkNC(o1, fs, sqlcid, last, s)) {
+                                    if (check(o1, fs)) {
                                         if (process) {
                                             try {
                                                 final boolean processed = ep.process(o1);
@@ -205,7 +201,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                                     }
                                 } else {
                                     Object j = joinDataRecords(r, c1, c2, t1, t2, o1, null, cols, c1rs, s);
-                                    if (nc.checkNC(j, fs, sqlcid, last, s)) {
+                                    if (check(j, fs)) {
                                         if (process) {
                                             try {
                                                 final boolean processed = ep.process(o1);
@@ -225,7 +221,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                             //nested loop
                             for (Object o2 : drs2) {
                                 Object j = joinDataRecords(r, c1, c2, t1, t2, o1, o2, cols, c1rs, s);
-                                if (nc.checkNC(j, fs, sqlcid, last, s)) {
+                                if (check(j, fs)) {
                                     if (process) {
                                         final Object o = processleft ? o1 : o2;
                                         try {
@@ -256,13 +252,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                     if (drs2 == null) {
                         //HashFrame returns null drs
                         if (bd2 != null && bd2.getImpl() == FrameApi.IMPL_HASH) {
-                            final Comparable key = getHashKeyValue(c1, o1, ((SQLHashMapFrame) bd2).getCkey(), s);
-                            final List<Object> o2 = ((SQLHashMapFrame) bd2).get(key, s);
-                            if (o2 != null) {
-                                if (!(o2.get(0) == null && last)) {
-                                    processRecords(r, c1, c2, t1, t2, o1, o2.get(0), c1rs, fs);
-                                }
-                            }
+                            probeHash(r, c1, c2, t1, t2, o1, c1rs, fs);
                         } else if (bd2 != null && bd2.getImpl() == FrameApi.IMPL_INDEX) {
                             final Comparable key = getHashKeyValue(c1, o1, ((SQLIndexFrame) bd2).getLkey(), s);
                             final List<Object> o2 = ((SQLIndexFrame) bd2).get(key, s);
@@ -279,7 +269,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                             // workaround for StreamQueue - always returns initial EntityContainer
                             if (r == null || target instanceof StreamQueue) {
                                 //todo need to cast o1 to RS type
-                                if (nc.checkNC(o1, fs, sqlcid, last, s)) {
+                                if (check(o1, fs)) {
                                     if (process) {
                                         try {
                                             final boolean processed = ep.process(o1);
@@ -295,7 +285,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                                 }
                             } else {
                                 Object j = joinDataRecords(r, c1, c2, t1, t2, o1, null, cols, c1rs, s);
-                                if (nc.checkNC(j, fs, sqlcid, last, s)) {
+                                if (check(j, fs)) {
                                     if (process) {
                                         try {
                                             final boolean processed = ep.process(o1);
@@ -315,7 +305,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
                         //nested loop
                         for (Object o2 : drs2) {
                             Object j = joinDataRecords(r, c1, c2, t1, t2, o1, o2, cols, c1rs, s);
-                            if (nc.checkNC(j, fs, sqlcid, last, s)) {
+                            if (check(j, fs)) {
                                 if (process) {
                                     final Object o = processleft ? o1 : o2;
                                     try {
@@ -340,6 +330,29 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
         return q;
     }
 
+    //predicate is compiled for class of checked rows, task checks entities and joined results
+    private boolean check(Object o, Field[] fs) throws Exception {
+        if (predicate == null || predicateClass != o.getClass()) {
+            predicate = nc.getPredicate(o.getClass(), fs, sqlcid, last);
+            predicateClass = o.getClass();
+        }
+        return predicate.test(o, s);
+    }
+
+    //unique hash map returns single row, hash join returns all rows of key
+    private void probeHash(Class<?> r, Class<?> c1, Class<?> c2, int t1, int t2, Object o1, boolean isrs, Field[] fs) throws Exception {
+        final SQLColumn ckey = bd2 instanceof SQLHashJoinFrame ? ((SQLHashJoinFrame) bd2).getCkey() : ((SQLHashMapFrame) bd2).getCkey();
+        final Comparable key = getHashKeyValue(c1, o1, ckey, s);
+        final List<Object> o2 = ((Finder) bd2).get(key, s);
+        if (o2 != null) {
+            for (Object o2_ : o2) {
+                if (!(o2_ == null && last)) {
+                    processRecords(r, c1, c2, t1, t2, o1, o2_, isrs, fs);
+                }
+            }
+        }
+    }
+
     private void processRecords(Class r, Class c1, Class c2, int t1, int t2, Object o1, Object o2, boolean isrs, Field[] fs) throws Exception {
         if (hmap.skipCheckNC()) {
             if (process) {
@@ -358,7 +371,7 @@ public class FrameJoinTask implements Callable<BlockingQueue<Object>> {
             }
         } else {
             Object j = joinDataRecords(r, c1, c2, t1, t2, o1, o2, cols, isrs, s);
-            if (nc.checkNC(j, fs, sqlcid, last, s)) {
+            if (check(j, fs)) {
                 if (process) {
                     final Object o = processleft ? o1 : o2;
                     try {
@@ -35,6 +35,7 @@ import su.interference.exception.InternalException;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -54,8 +55,21 @@ public class NestedCondition extends Condition {
     public static final int C_USE_XOR = 3;
 
     private final ArrayList<Condition> conditions;  // list if conditions (VC,JC,NC)
+    private final Object[] values;  // values bound to ?n markers of prepared statement
     private int type;        // 1 - AND, 2 - OR
     private boolean empty;
+    private final Map<List<Object>, SQLPredicate> predicates = new ConcurrentHashMap<>();
+
+    //compiled form of checkNC for objects of class c, shared by all frame tasks of statement
+    public SQLPredicate getPredicate(Class c, Field[] fs, int sqlcid, boolean last) {
+        final List<Object> key = Arrays.asList(c, fs.length == 0 ? null : fs[0].getDeclaringClass(), sqlcid, last);
+        SQLPredicate p = predicates.get(key);
+        if (p == null) {
+            p = SQLPredicate.compile(this, c, fs, sqlcid, last);
+            predicates.put(key, p);
+        }
+        return p;
+    }
 
     public boolean checkNC (Object o, Field[] fs, int sqlcid, boolean last, Session s) throws UnsupportedEncodingException, InternalException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
         final Class cl = o.getClass();
@@ -172,7 +186,7 @@ public class NestedCondition extends Condition {
             }
             if (ctype==Condition.C_LIKE) {
                 for (int i=0; i<d2.length; i++) {
-                    if (d1.indexOf(d2[i])>=0) {
+                    if (d2[i] != null && SQLPredicate.like(d1, d2[i])) {
                         return true;
                     }
                 }
@@ -180,7 +194,7 @@ public class NestedCondition extends Condition {
             }
             if (ctype==Condition.C_NOT_LIKE) {
                 for (int i=0; i<d2.length; i++) {
-                    if (d1.indexOf(d2[i])>=0) {
+                    if (d2[i] != null && SQLPredicate.like(d1, d2[i])) {
                         return false;
                     }
                 }
@@ -364,6 +378,11 @@ public class NestedCondition extends Condition {
     }
 
     public NestedCondition (String cdd, SQLStatement sql, ArrayList<SQLTable> tables) throws Exception {
+        this(cdd, sql, tables, null);
+    }
+
+    public NestedCondition (String cdd, SQLStatement sql, ArrayList<SQLTable> tables, Object[] values) throws Exception {
+        this.values = values;
         int nl = 0;
         String cc = "";
         String ic = "";
@@ -424,11 +443,11 @@ public class NestedCondition extends Condition {
             //parse nested conditions, join conditions to current level, if types is equals
             //hack - inc created only for check
             if (!(ic.trim().equals(""))) {
-                NestedCondition inc = new NestedCondition(ic,sql,tables);
+                NestedCondition inc = new NestedCondition(ic,sql,tables,values);
                 if (inc.getType()==C_SINGLE||inc.getType()==this.type) {
                     conditions.addAll(inc.getConditions());
                 } else {
-                    conditions.add(new NestedCondition(ic,sql,tables));
+                    conditions.add(new NestedCondition(ic,sql,tables,values));
                 }
             }
 
@@ -527,10 +546,10 @@ public class NestedCondition extends Condition {
                         }
 
                         if ((!(sqlc_l==null))&&(sqlc_r==null)) {
-                            res.add(new ValueCondition(sqlc_l, c, c_right.trim(), this));
+                            res.add(getValueCondition(sqlc_l, c, c_right.trim()));
                         }
                         if ((sqlc_l==null)&&(!(sqlc_r==null))) {
-                            res.add(new ValueCondition(sqlc_r, c, c_left.trim(), this));
+                            res.add(getValueCondition(sqlc_r, c, c_left.trim()));
                         }
                         if ((!(sqlc_l==null))&&(!(sqlc_r==null))) {
                             res.add(new JoinCondition(sqlc_l, c, sqlc_r, this));
@@ -547,6 +566,23 @@ public class NestedCondition extends Condition {
     }
 
 
+    //typed value is bound to ?n marker as is, without conversion to text and parse
+    private ValueCondition getValueCondition (SQLColumn cc, int c, String value) throws Exception {
+        if (value.length() > 1 && value.charAt(0) == '?') {
+            final int n;
+            try {
+                n = Integer.parseInt(value.substring(1));
+            } catch (NumberFormatException e) {
+                throw new InvalidConditionValue();
+            }
+            if (values == null || n < 1 || n > values.length) {
+                throw new InvalidConditionValue();
+            }
+            return new ValueCondition(cc, c, values[n - 1], this);
+        }
+        return new ValueCondition(cc, c, value, this);
+    }
+
     public ArrayList<ValueCondition> getValueConditions() {
         final ArrayList<ValueCondition> res = new ArrayList<ValueCondition>();
         ArrayList<Condition> cs = this.conditions;
@@ -618,9 +654,9 @@ public class NestedCondition extends Condition {
                     final SQLColumn ccr = getSQLColumnByAlias(rscols, jc.getConditionColumnRight().getAlias());
                     //if (jc.getConditionColumn().isIndexOrUnique()||jc.getConditionColumnRight().isIndexOrUnique()) {
                         if (lbi.getObjectIds().contains(jc.getConditionColumn().getObjectId()) && rbi.getObjectIds().contains(jc.getConditionColumnRight().getObjectId())) {
-                            jlist.add(new SQLJoinDispatcher(lbi, rbi, cc, ccr, getSkipCheck(jc), this, leadingIndex, process, s));
+                            jlist.add(new SQLJoinDispatcher(lbi, rbi, cc, ccr, getSkipCheck(jc), this, leadingIndex, process, jc.getCondition() == Condition.C_EQUAL, rscols, s));
                         } else if (lbi.getObjectIds().contains(jc.getConditionColumnRight().getObjectId()) && rbi.getObjectIds().contains(jc.getConditionColumn().getObjectId())) {
-                            jlist.add(new SQLJoinDispatcher(rbi, lbi, cc, ccr, getSkipCheck(jc), this, leadingIndex, process, s));
+                            jlist.add(new SQLJoinDispatcher(rbi, lbi, cc, ccr, getSkipCheck(jc), this, leadingIndex, process, jc.getCondition() == Condition.C_EQUAL, rscols, s));
                         }
                     //}
                 }
@@ -750,6 +786,10 @@ public class NestedCondition extends Condition {
         return type;
     }
 
+    public boolean isEmpty() {
+        return empty;
+    }
+
     public void setType(int type) {
         this.type = type;
     }
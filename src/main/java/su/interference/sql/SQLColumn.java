@@ -61,6 +61,8 @@ public class SQLColumn implements Comparable {
     private int orderOrd;
     private int groupOrd;
     private int windowInterval;
+    private boolean windowTime;
+    private boolean windowTumbling;
     //private Index   index;
     private final int ftype;
     private final int loc;
@@ -269,6 +271,23 @@ public class SQLColumn implements Comparable {
         this.windowInterval = windowInterval;
     }
 
+    //window interval is in seconds instead of events
+    public boolean isWindowTime() {
+        return windowTime;
+    }
+
+    public void setWindowTime(boolean windowTime) {
+        this.windowTime = windowTime;
+    }
+
+    public boolean isWindowTumbling() {
+        return windowTumbling;
+    }
+
+    public void setWindowTumbling(boolean windowTumbling) {
+        this.windowTumbling = windowTumbling;
+    }
+
     public int getOrderOrd() {
         return orderOrd;
     }
@@ -141,6 +141,8 @@ public class SQLCursor implements FrameIterator {
                 if (cursor_.getObjectIds().contains(sqlc.getObjectId())) {
                     final Table t_ = ((ResultSetImpl) cursor_.getTarget()).getTarget();
                     final SQLColumn sqlc_ = new SQLColumn(t_, sqlc.getId(), getTargetColumn(sqlc), sqlc.getAlias(), sqlc.getFtype(), sqlc.getLoc(), sqlc.getOrderOrd(), sqlc.getGroupOrd(), sqlc.getWindowInterval(), true, cursor_.isFurtherUseUC());
+                    sqlc_.setWindowTime(sqlc.isWindowTime());
+                    sqlc_.setWindowTumbling(sqlc.isWindowTumbling());
                     rscols_.add(sqlc_);
                 } else {
                     rscols_.add(sqlc);
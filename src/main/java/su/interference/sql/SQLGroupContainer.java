@@ -30,7 +30,6 @@ import su.interference.exception.InternalException;
 import su.interference.persistent.Session;
 import su.interference.persistent.Table;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -44,9 +43,8 @@ public class SQLGroupContainer {
     private final List<SQLColumn> cols;
     private final List<SQLColumn> gcols;
     private SQLColumn wcolumn;
-    private int wcolumnInterval;
+    private SQLWindow window;
     private final SQLGroupFunction[] fset;
-    private final List<DataChunk> w_ = new ArrayList<>();
 
     public SQLGroupContainer(List<SQLColumn> cols, List<SQLColumn> gcols) {
         this.cols = cols;
@@ -60,9 +58,11 @@ public class SQLGroupContainer {
         for (SQLColumn gcolumn : cols) {
             if (gcolumn.isWindow()) {
                wcolumn = gcolumn;
-               wcolumnInterval = gcolumn.getWindowInterval();
             }
         }
+        if (wcolumn != null) {
+            window = new SQLWindow(cols, wcolumn);
+        }
     }
 
     public DataChunk add (DataChunk c, Table target, Session s) throws InternalException {
@@ -118,43 +118,15 @@ public class SQLGroupContainer {
     }
 
     private DataChunk add2Window(DataChunk c, Table target, Session s) throws InternalException {
-        if (c != null) {
-            w_.add(c);
-        }
-        if (w_.size() < wcolumnInterval) {
+        if (c == null) {
             return null;
-        } else {
-            if (w_.size() > wcolumnInterval) {
-                w_.remove(0);
-            }
-            if (w_.size() != wcolumnInterval) {
-                throw new InternalException();
-            }
-            if (dc == null) {
-                dc = w_.get(0);
-            }
-            for (DataChunk c_ : w_) {
-                final Object[] os = c_.getDcs().getValueSet();
-                if (os.length != this.cols.size()) {
-                    throw new InternalException();
-                }
-                for (int i = 0; i < this.cols.size(); i++) {
-                    if (this.cols.get(i).getFtype() > 0) {
-                        fset[i].add(os[i]);
-                    }
-                }
-            }
-            final ValueSet groupvs = this.dc.getDcs();
-            for (int i=0; i<this.cols.size(); i++) {
-                if (this.cols.get(i).getFtype()>0) {
-                    groupvs.getValueSet()[i] = fset[i].getResult();
-                    fset[i].clear();
-                }
-            }
-            final DataChunk res = new DataChunk(groupvs, s, target);
-            this.dc = null;
-            return res;
         }
+        final Object[] os = c.getDcs().getValueSet();
+        if (os.length != this.cols.size()) {
+            throw new InternalException();
+        }
+        final Object[] res = window.add(os);
+        return res == null ? null : new DataChunk(new ValueSet(res), s, target);
     }
 
 }
@@ -0,0 +1,238 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import su.interference.core.Config;
+import su.interference.core.DataChunk;
+import su.interference.core.ValueSet;
+import su.interference.metrics.Metrics;
+import su.interference.persistent.Session;
+import su.interference.persistent.Table;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hash GROUP BY: groups of unsorted records are accumulated in hash table by values
+ * of group columns (first columns of value set). If amount of groups exceeds
+ * hash.group.memory, records of new groups are partitioned by key hash into temporary
+ * tables, each partition is grouped after all groups in memory are returned.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLHashAggregate {
+    private final static Logger logger = LoggerFactory.getLogger(SQLHashAggregate.class);
+    private final static int MAX_PARTITIONS = 256;
+    private final static int MAX_DEPTH = 3;
+    private final List<SQLColumn> cols;
+    private final int keys;
+    private final int[] ftypes;
+    private final SQLHaving having;
+    private final Session s;
+
+    public SQLHashAggregate(List<SQLColumn> cols, int keys, SQLHaving having, Session s) {
+        this.cols = cols;
+        this.keys = keys;
+        this.ftypes = new int[cols.size()];
+        for (int i = 0; i < ftypes.length; i++) {
+            ftypes[i] = cols.get(i).getFtype();
+        }
+        this.having = having;
+        this.s = s;
+    }
+
+    public void aggregate(ResultSet input, ResultSet target, Table gtarget) throws Exception {
+        aggregate(input, target, gtarget, 0);
+    }
+
+    private void aggregate(ResultSet input, ResultSet target, Table gtarget, int depth) throws Exception {
+        final long budget = Config.getConfig().HASH_GROUP_MEMORY * 1048576L;
+        //estimated size of group in memory: key, value set and accumulators
+        final long gsize = 64 + 48L * cols.size();
+        final Map<List<Object>, Group> groups = new HashMap<>();
+        final Field[] fs = getFields(input);
+        ResultSet[] parts = null;
+        boolean cnue = true;
+        while (cnue) {
+            final Object o = input.poll(s);
+            if (o == null) {
+                cnue = false;
+            } else {
+                final Object[] os = new Object[fs.length];
+                for (int i = 0; i < fs.length; i++) {
+                    os[i] = fs[i].get(o);
+                }
+                final List<Object> key = Arrays.asList(Arrays.copyOf(os, keys));
+                Group g = groups.get(key);
+                if (g == null) {
+                    if (parts == null && depth < MAX_DEPTH && (groups.size() + 1) * gsize > budget) {
+                        parts = spill(input, budget, depth);
+                    }
+                    if (parts != null) {
+                        final ResultSet p = parts[getPartition(key, parts.length, depth)];
+                        p.persist(new DataChunk(new ValueSet(os), s, ((ResultSetImpl) p).getTarget()).getEntity(s), s);
+                        continue;
+                    }
+                    g = new Group(os);
+                    groups.put(key, g);
+                }
+                g.add(os);
+            }
+        }
+        for (Group g : groups.values()) {
+            final Object[] res = g.getResult();
+            if (having == null || having.check(res)) {
+                target.persist(new DataChunk(new ValueSet(res), s, gtarget).getEntity(s), s);
+            }
+        }
+        if (parts != null) {
+            groups.clear();
+            for (ResultSet p : parts) {
+                aggregate(p, target, gtarget, depth + 1);
+                p.deallocate(s);
+            }
+        }
+    }
+
+    //fields of result set class in order of columns
+    private Field[] getFields(ResultSet rs) throws Exception {
+        final Field[] fs = new Field[ftypes.length];
+        for (int i = 0; i < fs.length; i++) {
+            fs[i] = rs.getTableClass().getDeclaredField(cols.get(i).getAlias());
+            fs[i].setAccessible(true);
+        }
+        return fs;
+    }
+
+    private ResultSet[] spill(ResultSet input, long budget, int depth) throws Exception {
+        final Table t = input instanceof ResultSetImpl ? ((ResultSetImpl) input).getTarget() : null;
+        final long estimate = t == null ? 0 : t.getFrameAmount() * t.getFrameSize();
+        int amount = 2;
+        while (amount < MAX_PARTITIONS && amount * budget < estimate) {
+            amount = amount * 2;
+        }
+        final ResultSet[] parts = new ResultSet[amount];
+        for (int i = 0; i < amount; i++) {
+            parts[i] = new ResultSetImpl(s.registerTable("su.interference.persistent.G$" + UUID.randomUUID().toString().replace('-', '$'), null, s, cols, null, null, false), null, true);
+        }
+        Metrics.get("hashGroupSpills").put();
+        logger.info("hash group exceeds " + Config.getConfig().HASH_GROUP_MEMORY + "M, spill to " + amount + " partitions");
+        return parts;
+    }
+
+    //hash is mixed with depth, so records of one partition are spread over next level partitions
+    private static int getPartition(List<Object> key, int amount, int depth) {
+        final int h = key.hashCode() * (depth * 2 + 1) + depth;
+        return (h ^ (h >>> 16)) & (amount - 1);
+    }
+
+    //primitive accumulators, results are the same as SQLGroupFunction results
+    private class Group {
+        private final Object[] vs;
+        private final long[] cnt;
+        private final long[] sum;
+        private final Object[] ext;
+
+        private Group(Object[] os) {
+            this.vs = os.clone();
+            this.cnt = new long[ftypes.length];
+            this.sum = new long[ftypes.length];
+            this.ext = new Object[ftypes.length];
+        }
+
+        private void add(Object[] os) {
+            for (int i = 0; i < ftypes.length; i++) {
+                switch (ftypes[i]) {
+                    case SQLGroupFunction.F_COUNT:
+                        cnt[i]++;
+                        break;
+                    case SQLGroupFunction.F_SUM:
+                        sum[i] = sum[i] + num(os[i]);
+                        break;
+                    case SQLGroupFunction.F_AVG:
+                        cnt[i]++;
+                        sum[i] = sum[i] + num(os[i]);
+                        break;
+                    case SQLGroupFunction.F_MIN:
+                        if (os[i] != null && (ext[i] == null || compare(ext[i], os[i]) > 0)) {
+                            ext[i] = os[i];
+                        }
+                        break;
+                    case SQLGroupFunction.F_MAX:
+                        if (os[i] != null && (ext[i] == null || compare(ext[i], os[i]) < 0)) {
+                            ext[i] = os[i];
+                        }
+                        break;
+                    default:
+                }
+            }
+        }
+
+        private Object[] getResult() {
+            for (int i = 0; i < ftypes.length; i++) {
+                switch (ftypes[i]) {
+                    case SQLGroupFunction.F_COUNT:
+                        vs[i] = (int) cnt[i];
+                        break;
+                    case SQLGroupFunction.F_SUM:
+                        vs[i] = sum[i];
+                        break;
+                    case SQLGroupFunction.F_AVG:
+                        vs[i] = cnt[i] == 0 ? 0L : sum[i] / cnt[i];
+                        break;
+                    case SQLGroupFunction.F_MIN:
+                    case SQLGroupFunction.F_MAX:
+                        vs[i] = ext[i];
+                        break;
+                    default:
+                }
+            }
+            return vs;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(Object o1, Object o2) {
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+
+        private long num(Object o) {
+            if (o instanceof Long) {
+                return (Long) o;
+            }
+            if (o instanceof Integer) {
+                return (Integer) o;
+            }
+            return 0L;
+        }
+    }
+}
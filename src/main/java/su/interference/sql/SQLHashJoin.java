@@ -0,0 +1,339 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import su.interference.core.Config;
+import su.interference.core.Instance;
+import su.interference.exception.InternalException;
+import su.interference.metrics.Metrics;
+import su.interference.persistent.Session;
+import su.interference.persistent.Table;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build/probe hash join for equal join condition without usable index.
+ * Build side rows are kept in hash table with all rows of each key. If build side
+ * exceeds hash.join.memory, rows of both sides are partitioned by key hash into
+ * temporary tables and partitions with the same number are joined pairwise.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLHashJoin {
+    private final static Logger logger = LoggerFactory.getLogger(SQLHashJoin.class);
+    private final static int MAX_PARTITIONS = 256;
+    private final FrameIterator pbi;
+    private final FrameIterator bbi;
+    private final SQLColumn pkey;
+    private final SQLColumn bkey;
+    private final Table pt;
+    private final Table bt;
+    private final List<SQLColumn> rscols;
+    private final Session s;
+    private final Probe probe;
+    private final Build build;
+    private boolean prepared;
+    private SQLHashJoinFrame hframe;
+    private SQLHashPartition[] pparts;
+    private SQLHashPartition[] bparts;
+    private int next;
+    private int current;
+
+    public SQLHashJoin(FrameIterator pbi, FrameIterator bbi, SQLColumn pkey, SQLColumn bkey, List<SQLColumn> rscols, Session s) {
+        this.pbi = pbi;
+        this.bbi = bbi;
+        this.pkey = pkey;
+        this.bkey = bkey;
+        this.pt = Instance.getInstance().getTableById(pbi.getObjectId());
+        this.bt = Instance.getInstance().getTableById(bbi.getObjectId());
+        this.rscols = rscols;
+        this.s = s;
+        this.probe = new Probe();
+        this.build = new Build();
+    }
+
+    public static boolean isHashable(SQLColumn c1, SQLColumn c2) {
+        return c1.getColumn().getType().equals(c2.getColumn().getType());
+    }
+
+    private synchronized void prepare() throws Exception {
+        if (prepared) {
+            return;
+        }
+        prepared = true;
+        final long budget = Config.getConfig().HASH_JOIN_MEMORY * 1048576L;
+        final long fsize = bt.getFrameSize();
+        Map<Object, List<Object>> hmap = new HashMap<>();
+        long used = 0;
+        while (bbi.hasNextFrame()) {
+            final FrameApi bd = bbi.nextFrame();
+            if (bd != null) {
+                final List<Object> drs = bd.getFrameEntities(s);
+                if (bparts == null) {
+                    for (Object o : drs) {
+                        SQLHashJoinFrame.put(hmap, bkey, o);
+                    }
+                    used = used + fsize;
+                    if (used > budget) {
+                        spill(hmap, Math.max(used, bt.getFrameAmount() * fsize), budget);
+                        hmap = null;
+                    }
+                } else {
+                    for (Object o : drs) {
+                        add(bparts, bkey, o);
+                    }
+                }
+            }
+        }
+        bbi.resetIterator();
+        if (bparts == null) {
+            hframe = new SQLHashJoinFrame(hmap, bkey, pkey, bt);
+        } else {
+            while (pbi.hasNextFrame()) {
+                final FrameApi bd = pbi.nextFrame();
+                if (bd != null) {
+                    for (Object o : bd.getFrameEntities(s)) {
+                        add(pparts, pkey, o);
+                    }
+                }
+            }
+            pbi.resetIterator();
+        }
+    }
+
+    //each partition of build side should take about half of memory budget
+    private void spill(Map<Object, List<Object>> hmap, long estimate, long budget) throws Exception {
+        int amount = 2;
+        while (amount < MAX_PARTITIONS && amount * budget / 2 < estimate) {
+            amount = amount * 2;
+        }
+        bparts = new SQLHashPartition[amount];
+        pparts = new SQLHashPartition[amount];
+        final List<SQLColumn> bcols = getSpillColumns(bt, bkey);
+        final List<SQLColumn> pcols = getSpillColumns(pt, pkey);
+        for (int i = 0; i < amount; i++) {
+            bparts[i] = new SQLHashPartition(bt, bcols, s);
+            pparts[i] = new SQLHashPartition(pt, pcols, s);
+        }
+        for (Map.Entry<Object, List<Object>> entry : hmap.entrySet()) {
+            final SQLHashPartition p = bparts[getPartition(entry.getKey(), amount)];
+            for (Object o : entry.getValue()) {
+                p.add(o);
+            }
+        }
+        Metrics.get("hashJoinSpills").put();
+        logger.info("hash join build exceeds " + Config.getConfig().HASH_JOIN_MEMORY + "M, spill to " + amount + " partitions");
+    }
+
+    //only columns used by cursor are stored in partitions
+    private List<SQLColumn> getSpillColumns(Table t, SQLColumn key) throws Exception {
+        final List<String> names = new ArrayList<>();
+        names.add(key.getColumn().getName());
+        for (SQLColumn c : rscols) {
+            if (c.getObjectId() == t.getObjectId() && !names.contains(c.getColumn().getName())) {
+                names.add(c.getColumn().getName());
+            }
+        }
+        final List<SQLColumn> res = new ArrayList<>();
+        for (String name : names) {
+            for (Field f : t.getFields()) {
+                if (f.getName().equals(name)) {
+                    res.add(new SQLColumn(t, res.size() + 1, f, "c" + res.size(), 0, CList.LOC_RESULT, 0, 0, 0, false, false));
+                }
+            }
+        }
+        return res;
+    }
+
+    private static void add(SQLHashPartition[] parts, SQLColumn key, Object o) throws Exception {
+        final Object k = key.getGetter().invoke(o);
+        if (k != null) {
+            parts[getPartition(k, parts.length)].add(o);
+        }
+    }
+
+    private static int getPartition(Object key, int amount) {
+        final int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (amount - 1);
+    }
+
+    private void init() throws InternalException {
+        try {
+            prepare();
+        } catch (Exception e) {
+            logger.error("exception occured during hash join build", e);
+            throw new InternalException();
+        }
+    }
+
+    public FrameIterator getProbe() {
+        return probe;
+    }
+
+    public FrameIterator getBuild() {
+        return build;
+    }
+
+    private class Probe implements FrameIterator {
+
+        public FrameApi nextFrame() throws Exception {
+            init();
+            if (bparts == null) {
+                return pbi.nextFrame();
+            }
+            //partitions with empty side returns no rows
+            while (next < pparts.length) {
+                final int p = next++;
+                if (pparts[p].size() > 0 && bparts[p].size() > 0) {
+                    current = p;
+                    return new SQLHashPartitionFrame(pparts[p], pt);
+                }
+                pparts[p].release();
+                bparts[p].release();
+            }
+            return null;
+        }
+
+        public boolean hasNextFrame() throws InternalException {
+            init();
+            return bparts == null ? pbi.hasNextFrame() : next < pparts.length;
+        }
+
+        public void resetIterator() {
+            pbi.resetIterator();
+        }
+
+        public int getType() {
+            return pbi.getType();
+        }
+
+        public boolean isIndex() {
+            return false;
+        }
+
+        public int getObjectId() {
+            return pbi.getObjectId();
+        }
+
+        public List<Integer> getObjectIds() {
+            return pbi.getObjectIds();
+        }
+
+        @Override
+        public boolean isLeftfs() {
+            return false;
+        }
+
+        @Override
+        public void setLeftfs(boolean leftfs) {
+
+        }
+
+        @Override
+        public boolean noDistribute() {
+            return true;
+        }
+
+        @Override
+        public boolean isProcess() {
+            return pbi.isProcess();
+        }
+
+        @Override
+        public Class<?> getEventProcessor() {
+            return pbi.getEventProcessor();
+        }
+    }
+
+    private class Build implements FrameIterator {
+        private boolean returned;
+
+        public FrameApi nextFrame() throws Exception {
+            init();
+            if (returned) {
+                return null;
+            }
+            returned = true;
+            return bparts == null ? hframe : new SQLHashJoinFrame(bparts[current], bkey, pkey, bt);
+        }
+
+        public boolean hasNextFrame() throws InternalException {
+            return !returned;
+        }
+
+        public void resetIterator() {
+            returned = false;
+        }
+
+        public int getType() {
+            return bbi.getType();
+        }
+
+        public boolean isIndex() {
+            return false;
+        }
+
+        public int getObjectId() {
+            return bbi.getObjectId();
+        }
+
+        public List<Integer> getObjectIds() {
+            return bbi.getObjectIds();
+        }
+
+        @Override
+        public boolean isLeftfs() {
+            return false;
+        }
+
+        @Override
+        public void setLeftfs(boolean leftfs) {
+
+        }
+
+        @Override
+        public boolean noDistribute() {
+            return true;
+        }
+
+        @Override
+        public boolean isProcess() {
+            return false;
+        }
+
+        @Override
+        public Class<?> getEventProcessor() {
+            return null;
+        }
+    }
+}
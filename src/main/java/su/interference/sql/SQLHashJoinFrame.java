@@ -0,0 +1,148 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.core.Chunk;
+import su.interference.persistent.Session;
+import su.interference.persistent.Table;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build side of hash join: all rows of key, either kept in memory or loaded from partition on first probe.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLHashJoinFrame implements FrameApi, Finder {
+    private final SQLColumn cmap;
+    private final SQLColumn ckey;
+    private final Table t;
+    private final SQLHashPartition partition;
+    private volatile Map<Object, List<Object>> hmap;
+
+    public SQLHashJoinFrame(Map<Object, List<Object>> hmap, SQLColumn cmap, SQLColumn ckey, Table t) {
+        this.hmap = hmap;
+        this.cmap = cmap;
+        this.ckey = ckey;
+        this.t = t;
+        this.partition = null;
+    }
+
+    public SQLHashJoinFrame(SQLHashPartition partition, SQLColumn cmap, SQLColumn ckey, Table t) {
+        this.cmap = cmap;
+        this.ckey = ckey;
+        this.t = t;
+        this.partition = partition;
+    }
+
+    public int getImpl() {
+        return FrameApi.IMPL_HASH;
+    }
+
+    public List<Object> get(Object key, Session s) throws Exception {
+        Map<Object, List<Object>> hmap_ = hmap;
+        if (hmap_ == null) {
+            hmap_ = load();
+        }
+        return hmap_.get(key);
+    }
+
+    private synchronized Map<Object, List<Object>> load() throws Exception {
+        if (hmap == null) {
+            final Map<Object, List<Object>> hmap_ = new HashMap<>();
+            for (Object o : partition.drain()) {
+                put(hmap_, cmap, o);
+            }
+            hmap = hmap_;
+        }
+        return hmap;
+    }
+
+    //rows with null key never match equal condition
+    protected static void put(Map<Object, List<Object>> hmap, SQLColumn cmap, Object o) throws Exception {
+        final Object key = cmap.getGetter().invoke(o);
+        if (key != null) {
+            List<Object> l = hmap.get(key);
+            if (l == null) {
+                l = new ArrayList<>(1);
+                hmap.put(key, l);
+            }
+            l.add(o);
+        }
+    }
+
+    public SQLColumn getCmap() {
+        return cmap;
+    }
+
+    public SQLColumn getCkey() {
+        return ckey;
+    }
+
+    @Override
+    public long getFrameId() {
+        return 0;
+    }
+
+    @Override
+    public long getFrameOrder() {
+        return 0;
+    }
+
+    @Override
+    public long getAllocId() {
+        return 0;
+    }
+
+    @Override
+    public int getObjectId() {
+        return t.getObjectId();
+    }
+
+    @Override
+    public ArrayList<Chunk> getFrameChunks(Session s) {
+        return null;
+    }
+
+    @Override
+    public ArrayList<Object> getFrameEntities(Session s) {
+        return null;
+    }
+
+    @Override
+    public boolean isProcess() {
+        return false;
+    }
+
+    @Override
+    public Class<?> getEventProcessor() {
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.core.Chunk;
+import su.interference.persistent.Session;
+import su.interference.persistent.Table;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Spilled part of hash join input. Column values of rows are stored in temporary table
+ * (frames of tempfile), drain returns them as objects of source table class.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLHashPartition {
+    private final Table t;
+    private final Table target;
+    private final Field[] fs;
+    private final Field[] ts;
+    private final Session s;
+    private int size;
+
+    public SQLHashPartition(Table t, List<SQLColumn> cols, Session s) throws Exception {
+        this.t = t;
+        this.s = s;
+        this.target = s.registerTable("su.interference.persistent.H$" + UUID.randomUUID().toString().replace('-', '$'), null, s, cols, null, null, false);
+        this.fs = new Field[cols.size()];
+        this.ts = new Field[cols.size()];
+        for (int i = 0; i < fs.length; i++) {
+            fs[i] = cols.get(i).getColumn();
+            fs[i].setAccessible(true);
+            ts[i] = target.getTableClass().getDeclaredField(cols.get(i).getAlias());
+            ts[i].setAccessible(true);
+        }
+    }
+
+    public void add(Object o) throws Exception {
+        final Object r = target.getInstance();
+        for (int i = 0; i < fs.length; i++) {
+            ts[i].set(r, fs[i].get(o));
+        }
+        target.persist(r, s);
+        size++;
+    }
+
+    //rows are read once, temporary table is released after read
+    public List<Object> drain() throws Exception {
+        final List<Object> res = new ArrayList<>(size);
+        boolean cnue = true;
+        while (cnue) {
+            final Chunk c = target.cpoll(s);
+            if (c == null) {
+                cnue = false;
+            } else {
+                final Object r = c.getEntity();
+                final Object o = t.getInstance();
+                for (int i = 0; i < fs.length; i++) {
+                    fs[i].set(o, ts[i].get(r));
+                }
+                res.add(o);
+            }
+        }
+        release();
+        return res;
+    }
+
+    public void release() throws Exception {
+        target.deallocate(s);
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.core.Chunk;
+import su.interference.persistent.Session;
+import su.interference.persistent.Table;
+
+import java.util.ArrayList;
+
+/**
+ * Probe side partition of spilled hash join, joined with build partition of the same number.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLHashPartitionFrame implements FrameApi {
+    private final SQLHashPartition partition;
+    private final Table t;
+
+    public SQLHashPartitionFrame(SQLHashPartition partition, Table t) {
+        this.partition = partition;
+        this.t = t;
+    }
+
+    public int getImpl() {
+        return FrameApi.IMPL_DATA;
+    }
+
+    @Override
+    public long getFrameId() {
+        return 0;
+    }
+
+    @Override
+    public long getFrameOrder() {
+        return 0;
+    }
+
+    @Override
+    public long getAllocId() {
+        return 0;
+    }
+
+    @Override
+    public int getObjectId() {
+        return t.getObjectId();
+    }
+
+    @Override
+    public ArrayList<Chunk> getFrameChunks(Session s) {
+        return null;
+    }
+
+    @Override
+    public ArrayList<Object> getFrameEntities(Session s) throws Exception {
+        return new ArrayList<>(partition.drain());
+    }
+
+    @Override
+    public boolean isProcess() {
+        return false;
+    }
+
+    @Override
+    public Class<?> getEventProcessor() {
+        return null;
+    }
+}
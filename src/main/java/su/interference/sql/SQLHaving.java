@@ -0,0 +1,194 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.sqlexception.InvalidHavingPart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HAVING clause: comparisons of result columns (group columns or group functions,
+ * referenced by alias or by expression) with literal values, joined by AND/OR.
+ * AND has higher priority than OR. Checked against value set of group record.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLHaving {
+    private static final String[] OPERATORS = {">=", "<=", "!=", "<>", "=", ">", "<"};
+    private static final int[] CONDITIONS = {Condition.C_MORE_EQUAL, Condition.C_LESS_EQUAL, Condition.C_NOT_EQUAL, Condition.C_NOT_EQUAL,
+                                             Condition.C_EQUAL, Condition.C_MORE, Condition.C_LESS};
+    //OR list of AND lists
+    private final List<List<Term>> terms;
+
+    public SQLHaving(String having, List<SQLColumn> cols) throws InvalidHavingPart {
+        this.terms = new ArrayList<>();
+        for (String or : split(having, " OR ")) {
+            final List<Term> and = new ArrayList<>();
+            for (String t : split(or, " AND ")) {
+                and.add(new Term(t.trim(), cols));
+            }
+            terms.add(and);
+        }
+    }
+
+    //positions of columns in value set of group records
+    public void bind(List<SQLColumn> rscols) {
+        for (List<Term> and : terms) {
+            for (Term t : and) {
+                t.pos = rscols.indexOf(t.column);
+            }
+        }
+    }
+
+    public boolean check(Object[] vs) {
+        for (List<Term> and : terms) {
+            boolean res = true;
+            for (Term t : and) {
+                if (!t.check(vs)) {
+                    res = false;
+                    break;
+                }
+            }
+            if (res) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //splits by keyword outside quoted literals, case insensitive
+    private static List<String> split(String s, String keyword) {
+        final List<String> res = new ArrayList<>();
+        final String S = s.toUpperCase();
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            } else if (quote == 0 && S.startsWith(keyword, i)) {
+                res.add(s.substring(start, i));
+                start = i + keyword.length();
+                i = start - 1;
+            }
+        }
+        res.add(s.substring(start));
+        return res;
+    }
+
+    private static class Term {
+        private final SQLColumn column;
+        private final int condition;
+        private final Object value;
+        private int pos;
+
+        private Term(String t, List<SQLColumn> cols) throws InvalidHavingPart {
+            //first operator outside of quoted literals, two-char operators are checked first at each position
+            int p = -1;
+            int op = 0;
+            char quote = 0;
+            for (int i = 0; i < t.length() && p < 0; i++) {
+                final char c = t.charAt(i);
+                if (quote == 0 && (c == '\'' || c == '"')) {
+                    quote = c;
+                } else if (c == quote) {
+                    quote = 0;
+                } else if (quote == 0) {
+                    for (int j = 0; j < OPERATORS.length; j++) {
+                        if (t.startsWith(OPERATORS[j], i)) {
+                            p = i;
+                            op = j;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (p <= 0) {
+                throw new InvalidHavingPart();
+            }
+            this.column = getColumn(t.substring(0, p).trim(), cols);
+            this.condition = CONDITIONS[op];
+            this.value = getValue(t.substring(p + OPERATORS[op].length()).trim());
+        }
+
+        //alias of column without explicit alias is built in same way as in CList
+        private static SQLColumn getColumn(String c, List<SQLColumn> cols) throws InvalidHavingPart {
+            String alias = c;
+            if (SQLColumn.checkFunction(c) > 0 && c.endsWith(")")) {
+                alias = c.substring(0, c.indexOf("(")) + c.substring(c.indexOf("(") + 1, c.length() - 1);
+            }
+            alias = alias.replace(".", "");
+            for (SQLColumn sqlc : cols) {
+                if (sqlc.isResult() && sqlc.getAlias().equals(alias)) {
+                    return sqlc;
+                }
+            }
+            throw new InvalidHavingPart();
+        }
+
+        private static Object getValue(String v) throws InvalidHavingPart {
+            if (v.length() >= 2 && (v.charAt(0) == '\'' || v.charAt(0) == '"') && v.charAt(v.length() - 1) == v.charAt(0)) {
+                return v.substring(1, v.length() - 1);
+            }
+            try {
+                return v.indexOf(".") >= 0 ? (Object) Double.parseDouble(v) : (Object) Long.parseLong(v);
+            } catch (NumberFormatException e) {
+                throw new InvalidHavingPart();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean check(Object[] vs) {
+            final Object o = vs[pos];
+            if (o == null) {
+                return false;
+            }
+            final int cmp;
+            if (o instanceof Number && value instanceof Number) {
+                if (o instanceof Double || o instanceof Float || value instanceof Double) {
+                    cmp = Double.compare(((Number) o).doubleValue(), ((Number) value).doubleValue());
+                } else {
+                    cmp = Long.compare(((Number) o).longValue(), ((Number) value).longValue());
+                }
+            } else {
+                cmp = String.valueOf(o).compareTo(String.valueOf(value));
+            }
+            switch (condition) {
+                case Condition.C_EQUAL: return cmp == 0;
+                case Condition.C_NOT_EQUAL: return cmp != 0;
+                case Condition.C_LESS: return cmp < 0;
+                case Condition.C_MORE: return cmp > 0;
+                case Condition.C_LESS_EQUAL: return cmp <= 0;
+                case Condition.C_MORE_EQUAL: return cmp >= 0;
+                default: return false;
+            }
+        }
+    }
+}
@@ -52,17 +52,23 @@ public class SQLJoin {
     private final List<SQLColumn> gcs;
     private final List<SQLColumn> fcs;
     private final IndexDescript oid;
+    private final SQLHaving having;
+    //hash group by is used if result is not ordered
+    private final boolean hashGroup;
     private ResultSet gtemp;
 
-    public SQLJoin (ArrayList<SQLTable> tables, CList columns, NestedCondition nc, Cursor cur, Session s) throws Exception {
+    public SQLJoin (ArrayList<SQLTable> tables, CList columns, NestedCondition nc, SQLHaving having, Cursor cur, Session s) throws Exception {
         this.tables   = tables;
         this.columns  = columns;
         this.nc = nc;
+        this.having = having;
         this.cur = cur;
         this.ocs = this.columns.getOrderColumns();
         this.gcs = this.columns.getGroupColumns();
         this.fcs = this.columns.getFResultColumns();
-        this.oid = this.columns.getOneTableOrderByColumnsIndex();
+        //grouped records are ordered in group table, index order of source is not used
+        this.oid = gcs.size() > 0 ? null : this.columns.getOneTableOrderByColumnsIndex();
+        this.hashGroup = (gcs.size() > 0 || fcs.size() > 0) && ocs.size() == 0 && !cur.isStream() && this.columns.getWindowColumn() == null;
         rscols = this.columns.getColumns();
         preparedCursors = new ArrayList<>();
         FrameIterator t1 = null;
@@ -89,7 +95,10 @@ public class SQLJoin {
         }
 
         int i = 0;
-        boolean ixflag = ocs.size() != 0 || gcs.size() != 0;
+        boolean ixflag = ocs.size() != 0 || (gcs.size() != 0 && !hashGroup);
+        if (having != null) {
+            having.bind(rscols);
+        }
         for (SQLTable sqlt : this.tables) {
             if (t1==null) {
                 t1 = sqlt;
@@ -176,7 +185,11 @@ public class SQLJoin {
                 //warning! use 2 tables with SAME value sets - use dc.getEntity(Table) method
                 DataChunk cdc = null;
                 SQLGroup sqlg = null;
-                boolean cnue = true;
+                boolean cnue = !hashGroup;
+
+                if (hashGroup) {
+                    new SQLHashAggregate(rscols, gcs.size(), having, s).aggregate(temp, gtemp, gtarget);
+                }
 
                 while (cnue) {
                     Chunk c = temp.cpoll(s);
@@ -188,8 +201,10 @@ public class SQLJoin {
                                 sqlg.add((DataChunk) c);
                             } else {                                          //c start next group
                                 DataChunk gdc = sqlg.getDC(gtarget, s);
-                                Object oo = gdc.getEntity(s);
-                                gtemp.persist(oo, s);
+                                if (having == null || having.check(gdc.getDcs().getValueSet())) {
+                                    Object oo = gdc.getEntity(s);
+                                    gtemp.persist(oo, s);
+                                }
                                 sqlg = new SQLGroup((DataChunk) c, rscols);
                                 sqlg.add((DataChunk) c);
                             }
@@ -202,9 +217,11 @@ public class SQLJoin {
                 }
                 if (sqlg != null) {
                     DataChunk gdc = sqlg.getDC(((ResultSetImpl) gtemp).getTarget(), s);
-                    Object oo = gdc.getEntity(s);
+                    if (having == null || having.check(gdc.getDcs().getValueSet())) {
+                        Object oo = gdc.getEntity(s);
 
-                    gtemp.persist(oo, s);
+                        gtemp.persist(oo, s);
+                    }
 
                 }
                 if (!((ResultSetImpl)gtemp).isPersistent()) {
@@ -31,6 +31,8 @@ import su.interference.core.Instance;
 import su.interference.persistent.Session;
 import su.interference.persistent.Table;
 
+import java.util.List;
+
 /**
  * @author Yuriy Glotanov
  * @since 1.0
@@ -57,9 +59,10 @@ public class SQLJoinDispatcher implements Comparable {
     public final static int RIGHT_MERGE = 2;
     public final static int RIGHT_HASH = 3;
     public final static int RIGHT_INDEX = 4;
+    public final static int HASH = 5;
     public final static int NESTED_LOOPS = 10;
 
-    public SQLJoinDispatcher(FrameIterator lbi, FrameIterator rbi, SQLColumn c1, SQLColumn c2, boolean skip, NestedCondition nc, IndexDescript leadingIndex, boolean process, Session s) throws Exception {
+    public SQLJoinDispatcher(FrameIterator lbi, FrameIterator rbi, SQLColumn c1, SQLColumn c2, boolean skip, NestedCondition nc, IndexDescript leadingIndex, boolean process, boolean equal, List<SQLColumn> rscols, Session s) throws Exception {
 
         //depends on join columns is unique or index, standard iterators (Table, Cursor) must replace by additional
         //iterators - HashMap and Index. HashMap may be only RBI, Index may be LBI in case if both indexes exists
@@ -150,6 +153,17 @@ public class SQLJoinDispatcher implements Comparable {
                 }
                 this.weight = 30;
             }
+        } else if (equal && !process && SQLHashJoin.isHashable(c1, c2)) {
+            this.join = HASH;
+            final Table lt = Instance.getInstance().getTableById(lbi.getObjectId());
+            final Table rt = Instance.getInstance().getTableById(rbi.getObjectId());
+            //build hash table on smaller table
+            final boolean swap = lbi instanceof SQLTable && rbi instanceof SQLTable && lt.getFrameAmount() < rt.getFrameAmount();
+            final SQLHashJoin hj = swap ? new SQLHashJoin(rbi, lbi, c2, c1, rscols, s) : new SQLHashJoin(lbi, rbi, c1, c2, rscols, s);
+            logger.info("use hash join for " + lt.getName() + "." + c1.getColumn().getName() + " * " + rt.getName() + "." + c2.getColumn().getName());
+            lbi_ = hj.getProbe();
+            rbi_ = hj.getBuild();
+            this.weight = 20;
         } else {
             final Table lt = Instance.getInstance().getTableById(lbi.getObjectId());
             final Table rt = Instance.getInstance().getTableById(rbi.getObjectId());
@@ -161,7 +175,8 @@ public class SQLJoinDispatcher implements Comparable {
         }
         this.lbi = lbi_;
         this.rbi = rbi_;
-        this.skipCheckNC = skip;
+        //hash join iterators do not apply value conditions, rows must be checked
+        this.skipCheckNC = skip && this.join != HASH;
         this.furtherUseUC = c1.isUnique() && c2.isUnique();
         this.s = s;
     }
@@ -0,0 +1,343 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.core.Config;
+import su.interference.sqlexception.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Lexical structure of SELECT/PROCESS statement: clauses split and validated once,
+ * shared between executions through SQLPlanCache. Where clause may contain ? bind markers,
+ * which are numbered as ?1, ?2... so NestedCondition binds values to them by position.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLPlan {
+    private static final String SELECT_CLAUSE = "SELECT";
+    private static final String PROCESS_CLAUSE = "PROCESS";
+    private static final String STREAM_CLAUSE = " STREAM ";
+    private static final String DISTINCT_CLAUSE = " DISTINCT ";
+    private static final String FROM_CLAUSE = " FROM ";
+    private static final String WITHIN_CLAUSE = " WITHIN ";
+    private static final String WHERE_CLAUSE = " WHERE ";
+    private static final String ORDERBY_CLAUSE = " ORDER BY ";
+    private static final String GROUPBY_CLAUSE = " GROUP BY ";
+    private static final String WINDOWBY_CLAUSE = " WINDOW BY ";
+    private static final String HAVING_CLAUSE = " HAVING ";
+
+    private final String sql;
+    private final boolean process;
+    private final boolean stream;
+    private final boolean distinct;
+    private final String[] clds;
+    private final String[] tbls;
+    private final String evtpr;
+    private final String head;
+    private final String where;
+    private final String tail;
+    private final String ord;
+    private final String grd;
+    private final String wnd;
+    private final String hvg;
+    private final int params;
+
+    public SQLPlan (String s) throws SQLException {
+        final String sql = normalize(s);
+        final String SQL = sql.toUpperCase();
+        this.sql = sql;
+
+        if (!SQL.startsWith(SELECT_CLAUSE) && !SQL.startsWith(PROCESS_CLAUSE)) {
+            throw new InvalidSQLStatement();
+        }
+        this.process = SQL.startsWith(PROCESS_CLAUSE);
+        this.stream = SQL.indexOf(STREAM_CLAUSE) == SELECT_CLAUSE.length();
+        this.distinct = SQL.indexOf(DISTINCT_CLAUSE) == SELECT_CLAUSE.length();
+
+        final int fpos = SQL.indexOf(FROM_CLAUSE);
+        final int wpos = SQL.indexOf(WHERE_CLAUSE);
+        final int opos = SQL.indexOf(ORDERBY_CLAUSE);
+        final int gpos = SQL.indexOf(GROUPBY_CLAUSE);
+        final int xpos = SQL.indexOf(WINDOWBY_CLAUSE);
+        final int hpos = SQL.indexOf(HAVING_CLAUSE);
+
+        if (!process && fpos < SELECT_CLAUSE.length() + 1) {
+            throw new MissingFromClause();
+        }
+        if (process && SQL.indexOf(WITHIN_CLAUSE) < PROCESS_CLAUSE.length() + 1) {
+            throw new MissingWithinClause();
+        }
+        if (!process && sql.substring(SELECT_CLAUSE.length(), fpos).trim().equals("")) {
+            throw new MissingFromClause();
+        }
+
+        int baselen = min(sql.length(), wpos, opos, gpos, xpos, hpos);
+
+        if (baselen < fpos + 6) {
+            throw new MissingTablesDescription();
+        } else {
+            if (sql.substring(fpos + 6, baselen).trim().equals("")) {
+                throw new MissingTablesDescription();
+            }
+        }
+
+        final int cldsStart = process ? 0 : stream ? SELECT_CLAUSE.length() + STREAM_CLAUSE.length() :
+                              distinct ? SELECT_CLAUSE.length() + DISTINCT_CLAUSE.length() :
+                              SELECT_CLAUSE.length();
+        this.clds = process ? new String[]{} : sql.substring(cldsStart, fpos).trim().split(",");
+        this.tbls = process ? sql.substring(SQL.indexOf(PROCESS_CLAUSE)+7, SQL.indexOf(WITHIN_CLAUSE)).trim().split(",") :
+                              sql.substring(fpos+6, baselen).trim().split(",");
+        this.evtpr = process ? sql.substring(SQL.indexOf(WITHIN_CLAUSE)+8, baselen).trim() : null;
+
+        if (wpos>=0 && opos>=0 && wpos > opos) {
+            throw new InvalidSQLStatement();
+        }
+        if (wpos>=0 && gpos>=0 && wpos > gpos) {
+            throw new InvalidSQLStatement();
+        }
+        if (wpos>=0 && xpos>=0 && wpos > xpos) {
+            throw new InvalidSQLStatement();
+        }
+        if (opos>=0 && gpos>=0 && opos < gpos) {
+            throw new InvalidSQLStatement();
+        }
+        if ((opos>=0 || gpos>=0) && xpos > 0) {
+            throw new InvalidSQLStatement();
+        }
+        if (hpos>=0 && (xpos>=0 || hpos < wpos || hpos < gpos || (opos>=0 && hpos > opos))) {
+            throw new InvalidSQLStatement();
+        }
+
+        baselen = min(sql.length(), opos, gpos, xpos, hpos);
+        if (wpos >= 0) {
+            this.head = sql.substring(0, wpos + 7);
+            this.where = number(sql.substring(wpos + 7, baselen));
+            this.tail = sql.substring(baselen);
+        } else {
+            this.head = sql;
+            this.where = "";
+            this.tail = "";
+        }
+        this.params = markers(this.where);
+        if (markers(this.head) + markers(this.tail) > 0) {
+            throw new InvalidSQLStatement();
+        }
+
+        //order of clauses is GROUP BY, HAVING, ORDER BY
+        this.ord = opos>=0?sql.substring(opos+10):"";
+        this.grd = gpos>=0?sql.substring(gpos+10, min(sql.length(), hpos, opos)):"";
+        this.hvg = hpos>=0?sql.substring(hpos+8, min(sql.length(), opos)):"";
+        this.wnd = xpos>=0?sql.substring(xpos+11):"";
+    }
+
+    //collapses whitespace outside quoted literals, used as plan cache key
+    public static String normalize(String s) {
+        final StringBuilder sb = new StringBuilder(s.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && sb.length() > 0) {
+                sb.append(' ');
+            }
+            space = false;
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    //statement text with bound values, sent to remote nodes as cursor sql
+    public String getSql(Object[] values) throws SQLException {
+        return params == 0 ? sql : head + bind(values) + tail;
+    }
+
+    //where clause with ?n markers, values are bound by NestedCondition
+    public String getWhere() {
+        return where.trim();
+    }
+
+    private String bind(Object[] values) throws SQLException {
+        if (values == null || values.length != params) {
+            throw new InvalidConditionValue("Statement requires " + params + " bind values");
+        }
+        final StringBuilder sb = new StringBuilder(where.length() + params * 8);
+        char quote = 0;
+        int p = 0;
+        for (int i = 0; i < where.length(); i++) {
+            final char c = where.charAt(i);
+            if (quote == 0 && c == '?') {
+                sb.append(literal(values[p++]));
+                while (i + 1 < where.length() && Character.isDigit(where.charAt(i + 1))) {
+                    i++;
+                }
+                continue;
+            }
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    //literal syntax has no escapes and no null value
+    private static String literal(Object v) throws SQLException {
+        if (v == null) {
+            throw new InvalidConditionValue("Null value can not be bound");
+        }
+        if (v instanceof String) {
+            if (((String) v).indexOf('\'') >= 0 || ((String) v).indexOf('"') >= 0) {
+                throw new InvalidConditionValue("Bound value can not contain quotes");
+            }
+            return "'" + v + "'";
+        }
+        if (v instanceof Date) {
+            return "'" + new SimpleDateFormat(Config.getConfig().DATEFORMAT).format((Date) v) + "'";
+        }
+        if (v instanceof Object[] || v instanceof Collection) {
+            final StringBuilder sb = new StringBuilder("[");
+            for (Object o : v instanceof Object[] ? java.util.Arrays.asList((Object[]) v) : (Collection<?>) v) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(literal(o));
+            }
+            return sb.append(']').toString();
+        }
+        return String.valueOf(v);
+    }
+
+    private static String number(String s) throws SQLException {
+        final StringBuilder sb = new StringBuilder(s.length() + 8);
+        char quote = 0;
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            sb.append(c);
+            if (quote == 0 && c == '?') {
+                if (i + 1 < s.length() && Character.isDigit(s.charAt(i + 1))) {
+                    throw new InvalidSQLStatement();
+                }
+                sb.append(++n);
+            } else if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int markers(String s) {
+        int n = 0;
+        char quote = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (quote == 0 && c == '?') {
+                n++;
+            } else if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+        }
+        return n;
+    }
+
+    private static int min(int len, int... pos) {
+        int r = len;
+        for (int p : pos) {
+            if (p >= 0 && p < r) {
+                r = p;
+            }
+        }
+        return r;
+    }
+
+    public int getParams() {
+        return params;
+    }
+
+    public boolean isProcess() {
+        return process;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public boolean isDistinct() {
+        return distinct;
+    }
+
+    public String[] getClds() {
+        return clds;
+    }
+
+    public String[] getTbls() {
+        return tbls;
+    }
+
+    public String getEvtpr() {
+        return evtpr;
+    }
+
+    public String getOrd() {
+        return ord;
+    }
+
+    public String getGrd() {
+        return grd;
+    }
+
+    public String getWnd() {
+        return wnd;
+    }
+
+    public String getHvg() {
+        return hvg;
+    }
+
+}
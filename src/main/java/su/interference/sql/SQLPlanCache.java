@@ -0,0 +1,84 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.core.Config;
+import su.interference.metrics.Metrics;
+import su.interference.sqlexception.SQLException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of statement plans keyed by normalized SQL text.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLPlanCache {
+    private static final SQLPlanCache instance = new SQLPlanCache();
+    private final int size;
+    private final LinkedHashMap<String, SQLPlan> plans;
+
+    private SQLPlanCache() {
+        this.size = Config.getConfig().SQL_PLAN_CACHE_SIZE;
+        this.plans = new LinkedHashMap<String, SQLPlan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLPlan> eldest) {
+                return size() > SQLPlanCache.this.size;
+            }
+        };
+    }
+
+    public static SQLPlanCache getInstance() {
+        return instance;
+    }
+
+    public SQLPlan getPlan(String sql) throws SQLException {
+        final String key = SQLPlan.normalize(sql);
+        synchronized (this) {
+            final SQLPlan plan = plans.get(key);
+            if (plan != null) {
+                Metrics.get("planCacheHits").put();
+                return plan;
+            }
+        }
+        Metrics.get("planCacheMisses").put();
+        final SQLPlan plan = new SQLPlan(key);
+        if (size > 0) {
+            synchronized (this) {
+                plans.put(key, plan);
+            }
+        }
+        return plan;
+    }
+
+    //called on change of table or index catalog entries
+    public synchronized void invalidate() {
+        plans.clear();
+    }
+
+}
@@ -0,0 +1,586 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.core.EntityContainer;
+import su.interference.core.Types;
+import su.interference.exception.InternalException;
+import su.interference.persistent.Session;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Where clause compiled once per row class: typed getter handles, hash sets for IN lists
+ * and precompiled LIKE matchers. Nested conditions which have no compiled form
+ * are checked by NestedCondition.checkNC.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public abstract class SQLPredicate {
+    private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    private static final MethodType LONG_GETTER = MethodType.methodType(long.class, Object.class, Session.class);
+    private static final MethodType DOUBLE_GETTER = MethodType.methodType(double.class, Object.class, Session.class);
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class, Session.class);
+
+    private static final SQLPredicate TRUE = new SQLPredicate() {
+        boolean eval(Object o, Session s) { return true; }
+    };
+    private static final SQLPredicate FALSE = new SQLPredicate() {
+        boolean eval(Object o, Session s) { return false; }
+    };
+
+    abstract boolean eval(Object o, Session s) throws Throwable;
+
+    //LIKE semantics shared with NestedCondition.checkNC: value without % and _ wildcards
+    //matches substring as before, value with wildcards matches whole string
+    static boolean like(String x, String v) {
+        if (v.indexOf('%') < 0 && v.indexOf('_') < 0) {
+            return x.contains(v);
+        }
+        return likePattern(v).matcher(x).matches();
+    }
+
+    static Pattern likePattern(String v) {
+        final StringBuilder sb = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < v.length(); i++) {
+            final char ch = v.charAt(i);
+            if (ch == '%' || ch == '_') {
+                if (i > start) {
+                    sb.append(Pattern.quote(v.substring(start, i)));
+                }
+                sb.append(ch == '%' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if (start < v.length()) {
+            sb.append(Pattern.quote(v.substring(start)));
+        }
+        return Pattern.compile(sb.toString(), Pattern.DOTALL);
+    }
+
+    public boolean test(Object o, Session s) throws Exception {
+        try {
+            return eval(o, s);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InternalException();
+        }
+    }
+
+    public static SQLPredicate compile(NestedCondition nc, Class<?> c, Field[] fs, int sqlcid, boolean last) {
+        if (nc.isEmpty()) {
+            return TRUE;
+        }
+        if (nc.getType() > NestedCondition.C_USE_OR) {
+            return new Interpreted(nc, fs, sqlcid, last);
+        }
+        final List<SQLPredicate> ps = new ArrayList<>();
+        for (Condition cond : nc.getConditions()) {
+            SQLPredicate p = null;
+            if (cond instanceof NestedCondition) {
+                p = compile((NestedCondition) cond, c, fs, sqlcid, last);
+            } else if (cond instanceof JoinCondition) {
+                final JoinCondition jc = (JoinCondition) cond;
+                p = jc.getId() == sqlcid || jc.getId() == 0 && last ? compile(jc, c, fs) : TRUE;
+            } else if (cond instanceof ValueCondition) {
+                final ValueCondition vc = (ValueCondition) cond;
+                p = vc.getId() == sqlcid || vc.getId() == 0 && last ? compile(vc, c, fs) : TRUE;
+            }
+            if (p == null) {
+                return new Interpreted(nc, fs, sqlcid, last);
+            }
+            ps.add(p);
+        }
+        final SQLPredicate[] ps_ = ps.toArray(new SQLPredicate[]{});
+        return nc.getType() == NestedCondition.C_USE_OR ? new Or(ps_) : new And(ps_);
+    }
+
+    private static SQLPredicate compile(ValueCondition vc, Class<?> c, Field[] fs) {
+        final Field f = getField(fs, vc.getConditionColumn().getAlias());
+        if (f == null) {
+            return FALSE;
+        }
+        final String t = f.getType().getName();
+        final Object[] vs = vc.getValues();
+        final int ctype = vc.getCondition();
+        if (vs == null) {
+            return null;
+        }
+        try {
+            if (isInt(t) || isLong(t)) {
+                final long[] v = new long[vs.length];
+                for (int i = 0; i < vs.length; i++) {
+                    if (!(isInt(t) && vs[i] instanceof Integer || isLong(t) && vs[i] instanceof Long)) {
+                        return null;
+                    }
+                    v[i] = ((Number) vs[i]).longValue();
+                }
+                return new LongValue(getter(c, f, LONG_GETTER), ctype, v);
+            }
+            if (isFloat(t) || isDouble(t)) {
+                final double[] v = new double[vs.length];
+                for (int i = 0; i < vs.length; i++) {
+                    if (!(vs[i] instanceof Double)) {
+                        return null;
+                    }
+                    v[i] = (Double) vs[i];
+                }
+                return new DoubleValue(getter(c, f, DOUBLE_GETTER), ctype, v);
+            }
+            if (t.equals(Types.t_string) && Condition.isStringCondition(ctype)) {
+                return new StringValue(getter(c, f, OBJECT_GETTER), ctype, vs);
+            }
+            if (t.equals(Types.t_date) && isEqualCondition(ctype)) {
+                final Set<Long> v = new HashSet<>();
+                for (Object d : vs) {
+                    if (d != null) {
+                        v.add(((Date) d).getTime());
+                    }
+                }
+                return new DateValue(getter(c, f, OBJECT_GETTER), ctype, v);
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static SQLPredicate compile(JoinCondition jc, Class<?> c, Field[] fs) {
+        final Field lf = getField(fs, jc.getConditionColumn().getAlias());
+        final Field rf = getField(fs, jc.getConditionColumnRight().getAlias());
+        if (lf == null || rf == null) {
+            return FALSE;
+        }
+        final String t1 = lf.getType().getName();
+        final String t2 = rf.getType().getName();
+        final int ctype = jc.getCondition();
+        try {
+            if (isInt(t1) && isInt(t2) || isLong(t1) && isLong(t2)) {
+                return new LongJoin(getter(c, lf, LONG_GETTER), getter(c, rf, LONG_GETTER), ctype);
+            }
+            if (isFloat(t1) && isFloat(t2) || isDouble(t1) && isDouble(t2)) {
+                return new DoubleJoin(getter(c, lf, DOUBLE_GETTER), getter(c, rf, DOUBLE_GETTER), ctype);
+            }
+            if (t1.equals(Types.t_string) && t2.equals(Types.t_string) && Condition.isStringCondition(ctype)
+                    || t1.equals(Types.t_date) && t2.equals(Types.t_date) && isEqualCondition(ctype)) {
+                return new ObjectJoin(getter(c, lf, OBJECT_GETTER), getter(c, rf, OBJECT_GETTER), ctype);
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+        return null;
+    }
+
+    //getter resolved same way as in checkNC: result set getters have no session parameter
+    private static MethodHandle getter(Class<?> c, Field f, MethodType type) throws NoSuchMethodException, IllegalAccessException {
+        final boolean rs_ = !Arrays.asList(c.getInterfaces()).contains(EntityContainer.class);
+        final String mtname = "get" + f.getName().substring(0, 1).toUpperCase() + f.getName().substring(1);
+        final Method m = rs_ ? c.getMethod(mtname) : c.getMethod(mtname, Session.class);
+        MethodHandle h = lookup.unreflect(m);
+        if (rs_) {
+            h = MethodHandles.dropArguments(h, 1, Session.class);
+        }
+        return h.asType(type);
+    }
+
+    private static Field getField(Field[] fs, String alias) {
+        Field r = null;
+        for (Field f : fs) {
+            if (f.getName().equals(alias)) {
+                r = f;
+            }
+        }
+        return r;
+    }
+
+    private static boolean isInt(String t) {
+        return t.equals(Types.p_int) || t.equals(Types.t_int);
+    }
+
+    private static boolean isLong(String t) {
+        return t.equals(Types.p_long) || t.equals(Types.t_long);
+    }
+
+    private static boolean isFloat(String t) {
+        return t.equals(Types.p_float) || t.equals(Types.t_float);
+    }
+
+    private static boolean isDouble(String t) {
+        return t.equals(Types.p_double) || t.equals(Types.t_double);
+    }
+
+    private static boolean isEqualCondition(int ctype) {
+        return ctype == Condition.C_EQUAL || ctype == Condition.C_IN || ctype == Condition.C_NOT_EQUAL || ctype == Condition.C_NOT_IN;
+    }
+
+    private static boolean isNegative(int ctype) {
+        return ctype == Condition.C_NOT_EQUAL || ctype == Condition.C_NOT_IN || ctype == Condition.C_NOT_LIKE;
+    }
+
+    private static final class And extends SQLPredicate {
+        private final SQLPredicate[] ps;
+
+        And(SQLPredicate[] ps) {
+            this.ps = ps;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            for (SQLPredicate p : ps) {
+                if (!p.eval(o, s)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Or extends SQLPredicate {
+        private final SQLPredicate[] ps;
+
+        Or(SQLPredicate[] ps) {
+            this.ps = ps;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            for (SQLPredicate p : ps) {
+                if (p.eval(o, s)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Interpreted extends SQLPredicate {
+        private final NestedCondition nc;
+        private final Field[] fs;
+        private final int sqlcid;
+        private final boolean last;
+
+        Interpreted(NestedCondition nc, Field[] fs, int sqlcid, boolean last) {
+            this.nc = nc;
+            this.fs = fs;
+            this.sqlcid = sqlcid;
+            this.last = last;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            return nc.checkNC(o, fs, sqlcid, last, s);
+        }
+    }
+
+    //list comparison is true if it is true for any value of list, as in checkNC
+    private static final class LongValue extends SQLPredicate {
+        private final MethodHandle h;
+        private final int ctype;
+        private final LongSet set;
+        private final long min;
+        private final long max;
+        private final boolean empty;
+
+        LongValue(MethodHandle h, int ctype, long[] v) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long x : v) {
+                min = Math.min(min, x);
+                max = Math.max(max, x);
+            }
+            this.h = h;
+            this.ctype = ctype;
+            this.set = new LongSet(v);
+            this.min = min;
+            this.max = max;
+            this.empty = v.length == 0;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            final long x = (long) h.invokeExact(o, s);
+            switch (ctype) {
+                case Condition.C_EQUAL: case Condition.C_IN: return set.contains(x);
+                case Condition.C_NOT_EQUAL: case Condition.C_NOT_IN: return !set.contains(x);
+                case Condition.C_MORE: return !empty && x > min;
+                case Condition.C_LESS: return !empty && x < max;
+                case Condition.C_MORE_EQUAL: return !empty && x >= min;
+                case Condition.C_LESS_EQUAL: return !empty && x <= max;
+                default: return false;
+            }
+        }
+    }
+
+    //equality by bits, as Double.equals in checkNC
+    private static final class DoubleValue extends SQLPredicate {
+        private final MethodHandle h;
+        private final int ctype;
+        private final LongSet set;
+        private final double min;
+        private final double max;
+        private final boolean empty;
+
+        DoubleValue(MethodHandle h, int ctype, double[] v) {
+            final long[] bits = new long[v.length];
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < v.length; i++) {
+                bits[i] = Double.doubleToLongBits(v[i]);
+                min = Math.min(min, v[i]);
+                max = Math.max(max, v[i]);
+            }
+            this.h = h;
+            this.ctype = ctype;
+            this.set = new LongSet(bits);
+            this.min = min;
+            this.max = max;
+            this.empty = v.length == 0;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            final double x = (double) h.invokeExact(o, s);
+            switch (ctype) {
+                case Condition.C_EQUAL: case Condition.C_IN: return set.contains(Double.doubleToLongBits(x));
+                case Condition.C_NOT_EQUAL: case Condition.C_NOT_IN: return !set.contains(Double.doubleToLongBits(x));
+                case Condition.C_MORE: return !empty && x > min;
+                case Condition.C_LESS: return !empty && x < max;
+                case Condition.C_MORE_EQUAL: return !empty && x >= min;
+                case Condition.C_LESS_EQUAL: return !empty && x <= max;
+                default: return false;
+            }
+        }
+    }
+
+    private static final class StringValue extends SQLPredicate {
+        private final MethodHandle h;
+        private final boolean negative;
+        private final Set<String> set;
+        private final String[] parts;
+        private final Pattern[] patterns;
+
+        StringValue(MethodHandle h, int ctype, Object[] vs) {
+            final boolean like = ctype == Condition.C_LIKE || ctype == Condition.C_NOT_LIKE;
+            final Set<String> set = new HashSet<>();
+            final List<String> parts = new ArrayList<>();
+            final List<Pattern> patterns = new ArrayList<>();
+            for (Object v : vs) {
+                final String v_ = (String) v;
+                if (v_ == null) {
+                    continue;
+                }
+                if (!like) {
+                    set.add(v_);
+                } else if (v_.indexOf('%') >= 0 || v_.indexOf('_') >= 0) {
+                    patterns.add(likePattern(v_));
+                } else {
+                    parts.add(v_);
+                }
+            }
+            this.h = h;
+            this.negative = isNegative(ctype);
+            this.set = like ? null : set;
+            this.parts = parts.toArray(new String[]{});
+            this.patterns = patterns.toArray(new Pattern[]{});
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            final String x = (String) (Object) h.invokeExact(o, s);
+            if (x == null) {
+                return false;
+            }
+            return negative != matches(x);
+        }
+
+        private boolean matches(String x) {
+            if (set != null) {
+                return set.contains(x);
+            }
+            for (String p : parts) {
+                if (x.contains(p)) {
+                    return true;
+                }
+            }
+            for (Pattern p : patterns) {
+                if (p.matcher(x).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class DateValue extends SQLPredicate {
+        private final MethodHandle h;
+        private final boolean negative;
+        private final Set<Long> set;
+
+        DateValue(MethodHandle h, int ctype, Set<Long> set) {
+            this.h = h;
+            this.negative = isNegative(ctype);
+            this.set = set;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            final Date x = (Date) (Object) h.invokeExact(o, s);
+            if (x == null) {
+                return false;
+            }
+            return negative != set.contains(x.getTime());
+        }
+    }
+
+    private static final class LongJoin extends SQLPredicate {
+        private final MethodHandle l;
+        private final MethodHandle r;
+        private final int ctype;
+
+        LongJoin(MethodHandle l, MethodHandle r, int ctype) {
+            this.l = l;
+            this.r = r;
+            this.ctype = ctype;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            final long x = (long) l.invokeExact(o, s);
+            final long y = (long) r.invokeExact(o, s);
+            switch (ctype) {
+                case Condition.C_EQUAL: case Condition.C_IN: return x == y;
+                case Condition.C_NOT_EQUAL: case Condition.C_NOT_IN: return x != y;
+                case Condition.C_MORE: return x > y;
+                case Condition.C_LESS: return x < y;
+                case Condition.C_MORE_EQUAL: return x >= y;
+                case Condition.C_LESS_EQUAL: return x <= y;
+                default: return false;
+            }
+        }
+    }
+
+    private static final class DoubleJoin extends SQLPredicate {
+        private final MethodHandle l;
+        private final MethodHandle r;
+        private final int ctype;
+
+        DoubleJoin(MethodHandle l, MethodHandle r, int ctype) {
+            this.l = l;
+            this.r = r;
+            this.ctype = ctype;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            final double x = (double) l.invokeExact(o, s);
+            final double y = (double) r.invokeExact(o, s);
+            switch (ctype) {
+                case Condition.C_EQUAL: case Condition.C_IN: return Double.compare(x, y) == 0;
+                case Condition.C_NOT_EQUAL: case Condition.C_NOT_IN: return Double.compare(x, y) != 0;
+                case Condition.C_MORE: return x > y;
+                case Condition.C_LESS: return x < y;
+                case Condition.C_MORE_EQUAL: return x >= y;
+                case Condition.C_LESS_EQUAL: return x <= y;
+                default: return false;
+            }
+        }
+    }
+
+    //string and date columns: equality and like, as in checkNC
+    private static final class ObjectJoin extends SQLPredicate {
+        private final MethodHandle l;
+        private final MethodHandle r;
+        private final int ctype;
+
+        ObjectJoin(MethodHandle l, MethodHandle r, int ctype) {
+            this.l = l;
+            this.r = r;
+            this.ctype = ctype;
+        }
+
+        boolean eval(Object o, Session s) throws Throwable {
+            final Object x = (Object) l.invokeExact(o, s);
+            final Object y = (Object) r.invokeExact(o, s);
+            if (x == null) {
+                return false;
+            }
+            switch (ctype) {
+                case Condition.C_EQUAL: case Condition.C_IN: return x.equals(y);
+                case Condition.C_NOT_EQUAL: case Condition.C_NOT_IN: return !x.equals(y);
+                case Condition.C_LIKE: return y != null && like((String) x, (String) y);
+                case Condition.C_NOT_LIKE: return y == null || !like((String) x, (String) y);
+                default: return false;
+            }
+        }
+    }
+
+    //open addressing set of primitive values for IN lists
+    private static final class LongSet {
+        private final long[] keys;
+        private final boolean[] used;
+        private final int mask;
+
+        LongSet(long[] v) {
+            int cap = 2;
+            while (cap < v.length * 2) {
+                cap <<= 1;
+            }
+            this.keys = new long[cap];
+            this.used = new boolean[cap];
+            this.mask = cap - 1;
+            for (long x : v) {
+                int i = index(x);
+                while (used[i] && keys[i] != x) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = x;
+                used[i] = true;
+            }
+        }
+
+        private int index(long x) {
+            final long h = x * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        boolean contains(long x) {
+            int i = index(x);
+            while (used[i]) {
+                if (keys[i] == x) {
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import su.interference.core.DataSet;
+import su.interference.persistent.Session;
+import su.interference.sqlexception.SQLException;
+
+/**
+ * SELECT/PROCESS statement with ? bind markers in where clause, created by Session.prepare.
+ * Execution takes split clauses from SQLPlanCache and binds typed values to where conditions,
+ * column list and condition tree are built for each execution, as they belong to its cursor.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLPreparedStatement {
+    private final String sql;
+    private final Session s;
+    private final Object[] values;
+
+    public SQLPreparedStatement(String sql, Session s) throws SQLException {
+        final SQLPlan plan = SQLPlanCache.getInstance().getPlan(sql);
+        this.sql = plan.getSql();
+        this.s = s;
+        this.values = new Object[plan.getParams()];
+    }
+
+    //index of bind marker starts with 1
+    public void setValue(int index, Object value) {
+        values[index - 1] = value;
+    }
+
+    public void clearValues() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+    }
+
+    public int getParams() {
+        return values.length;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public ResultSet execute() throws Exception {
+        s.startStatement();
+        final SQLSelect stmt = new SQLSelect(SQLPlanCache.getInstance().getPlan(sql), values.clone(), s);
+        if (stmt.getSQLException() != null) {
+            throw stmt.getSQLException();
+        }
+        final DataSet ds = stmt.executeSQL(s);
+        return ds.getTable();
+    }
+
+}
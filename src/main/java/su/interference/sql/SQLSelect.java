@@ -40,18 +40,10 @@ import java.util.*;
  */
 
 public class SQLSelect implements SQLStatement {
-    private static final String SELECT_CLAUSE = "SELECT";
-    private static final String PROCESS_CLAUSE = "PROCESS";
-    private static final String STREAM_CLAUSE = " STREAM ";
-    private static final String DISTINCT_CLAUSE = " DISTINCT ";
-    private static final String FROM_CLAUSE = " FROM ";
-    private static final String WITHIN_CLAUSE = " WITHIN ";
-    private static final String WHERE_CLAUSE = " WHERE ";
-    private static final String ORDERBY_CLAUSE = " ORDER BY ";
-    private static final String GROUPBY_CLAUSE = " GROUP BY ";
-    private static final String HAVING_CLAUSE = " HAVING ";
-    private static final String WINDOWBY_CLAUSE = " WINDOW BY ";
     public static final String INTERVAL_CLAUSE = "INTERVAL";
+    public static final String SECONDS_CLAUSE = "SECONDS";
+    public static final String TUMBLING_CLAUSE = "TUMBLING";
+    public static final String SLIDING_CLAUSE = "SLIDING";
 
     private final static Logger logger = LoggerFactory.getLogger(SQLSelect.class);
     private Cursor              cursor;
@@ -81,11 +73,20 @@ public class SQLSelect implements SQLStatement {
     }
 
     public SQLSelect (String sql, Cursor cur, Session s) {
+        this(sql, null, null, cur, s);
+    }
+
+    //execution of prepared statement: values are bound to ? markers of cached plan
+    public SQLSelect (SQLPlan plan, Object[] values, Session s) {
+        this(plan.getSql(), plan, values, null, s);
+    }
+
+    private SQLSelect (String sql, SQLPlan plan, Object[] values, Cursor cur, Session s) {
         tables = new ArrayList<SQLTable>();
         nodes = new ArrayList<SQLNode>();
         cols = null; //until parse tables part (FROM...) cols must = null
         try {
-            parseSQL(sql, cur, s);
+            parseSQL(plan == null ? SQLPlanCache.getInstance().getPlan(sql) : plan, values, cur, s);
         } catch (SQLException e) {
             sqlException = e;
             logger.error(e.getClass().getSimpleName()+" thrown during parse of sql statement: "+sql);
@@ -151,116 +152,21 @@ public class SQLSelect implements SQLStatement {
     }
 
     @SuppressWarnings("unchecked")
-    private final void parseSQL (String s, Cursor cur, Session sn) throws Exception {
+    private final void parseSQL (SQLPlan plan, Object[] values, Cursor cur, Session sn) throws Exception {
 
         final ClassLoader cl = Thread.currentThread().getContextClassLoader();
-        final String sql = s.trim();
-        final String SQL = s.toUpperCase().trim();
+        final String sql = plan.getSql(values);
 
-        if (!SQL.startsWith(SELECT_CLAUSE) && !SQL.startsWith(PROCESS_CLAUSE)) {
-            throw new InvalidSQLStatement();
-        }
-        if (SQL.startsWith(PROCESS_CLAUSE)) {
-            process = true;
-        }
-        if (SQL.indexOf(STREAM_CLAUSE) == SELECT_CLAUSE.length()) {
-            this.stream = true;
-        }
-        if (SQL.indexOf(DISTINCT_CLAUSE) == SELECT_CLAUSE.length()) {
-            this.distinct = true;
-        }
-        if (!process && SQL.indexOf(FROM_CLAUSE) < SELECT_CLAUSE.length() + 1) {
-            throw new MissingFromClause();
-        }
-        if (process && SQL.indexOf(WITHIN_CLAUSE) < PROCESS_CLAUSE.length() + 1) {
-            throw new MissingWithinClause();
-        }
-        if (!process && sql.substring(SELECT_CLAUSE.length(), SQL.indexOf(" FROM ")).trim().equals("")) {
-            throw new MissingFromClause();
-        }
+        this.process = plan.isProcess();
+        this.stream = plan.isStream();
+        this.distinct = plan.isDistinct();
 
         cursor = cur==null?new Cursor(sql, this.stream ? Cursor.STREAM_TYPE : Cursor.MASTER_TYPE):cur;
         cursor.setSqlStmt(this);
 
-        int baselen = sql.length();
-
-        if (SQL.indexOf(WHERE_CLAUSE)>=0) {
-            baselen = SQL.indexOf(WHERE_CLAUSE);
-        }
-        if (SQL.indexOf(ORDERBY_CLAUSE)>=0 && baselen>SQL.indexOf(ORDERBY_CLAUSE)) {
-            baselen = SQL.indexOf(ORDERBY_CLAUSE);
-        }
-        if (SQL.indexOf(GROUPBY_CLAUSE)>=0 && baselen>SQL.indexOf(GROUPBY_CLAUSE)) {
-            baselen = SQL.indexOf(GROUPBY_CLAUSE);
-        }
-        if (SQL.indexOf(WINDOWBY_CLAUSE)>=0 && baselen>SQL.indexOf(WINDOWBY_CLAUSE)) {
-            baselen = SQL.indexOf(WINDOWBY_CLAUSE);
-        }
-        if (baselen < SQL.indexOf(FROM_CLAUSE) + 6) {
-            throw new MissingTablesDescription();
-        } else {
-            if (sql.substring(SQL.indexOf(FROM_CLAUSE) + 6, baselen).trim().equals("")) {
-                throw new MissingTablesDescription();
-            }
-        }
-
-        final int cldsStart = process ? 0 : stream ? SELECT_CLAUSE.length() + STREAM_CLAUSE.length() :
-                              distinct ? SELECT_CLAUSE.length() + DISTINCT_CLAUSE.length() :
-                              SELECT_CLAUSE.length();
-        final String[] clds = process ? new String[]{} : sql.substring(cldsStart, SQL.indexOf(FROM_CLAUSE)).trim().split(",");
-        final String[] tbls = process ? sql.substring(SQL.indexOf(PROCESS_CLAUSE)+7, SQL.indexOf(WITHIN_CLAUSE)).trim().split(",") :
-                                        sql.substring(SQL.indexOf(FROM_CLAUSE)+6, baselen).trim().split(",");
-        final String evtpr_ = process ? sql.substring(SQL.indexOf(WITHIN_CLAUSE)+8, baselen).trim() : null;
-        final Class evtprc = process ? cl.loadClass(evtpr_) : null;
-
-/*
-        if (!evtprc.newInstance() instanceof EventProcessor) {
-
-        }
-*/
-
-        final int wpos = SQL.indexOf(WHERE_CLAUSE);
-        final int opos = SQL.indexOf(ORDERBY_CLAUSE);
-        final int gpos = SQL.indexOf(GROUPBY_CLAUSE);
-        final int xpos = SQL.indexOf(WINDOWBY_CLAUSE);
-
-        if (wpos>=0 && opos>=0) {
-            if (wpos > opos) {
-                throw new InvalidSQLStatement();
-            }
-        }
-        if (wpos>=0 && gpos>=0) {
-            if (wpos > gpos) {
-                throw new InvalidSQLStatement();
-            }
-        }
-        if (wpos>=0 && xpos>=0) {
-            if (wpos > xpos) {
-                throw new InvalidSQLStatement();
-            }
-        }
-        if (opos>=0 && gpos>=0) {
-            if (opos < gpos) {
-                throw new InvalidSQLStatement();
-            }
-        }
-        if (opos>=0 || gpos>=0) {
-            if (xpos > 0) {
-                throw new InvalidSQLStatement();
-            }
-        }
-
-        baselen = sql.length();
-
-        if (SQL.indexOf(ORDERBY_CLAUSE)>=0 && baselen>SQL.indexOf(ORDERBY_CLAUSE)) {
-            baselen = SQL.indexOf(ORDERBY_CLAUSE);
-        }
-        if (SQL.indexOf(GROUPBY_CLAUSE)>=0 && baselen>SQL.indexOf(GROUPBY_CLAUSE)) {
-            baselen = SQL.indexOf(GROUPBY_CLAUSE);
-        }
-        if (SQL.indexOf(WINDOWBY_CLAUSE)>=0 && baselen>SQL.indexOf(WINDOWBY_CLAUSE)) {
-            baselen = SQL.indexOf(WINDOWBY_CLAUSE);
-        }
+        final String[] clds = plan.getClds();
+        final String[] tbls = plan.getTbls();
+        final Class evtprc = process ? cl.loadClass(plan.getEvtpr()) : null;
 
         // parsing tables
         for (int i=0; i<tbls.length; i++) {
@@ -286,7 +192,7 @@ public class SQLSelect implements SQLStatement {
 
         this.cols = new CList (this.tables, clds);
 
-        this.nc = new NestedCondition(wpos>=0?sql.substring(wpos+7, baselen).trim():"",this,null);
+        this.nc = new NestedCondition(plan.getWhere(),this,null,values);
 
         //check for entity result
         if (clds.length==1) {
@@ -300,15 +206,10 @@ public class SQLSelect implements SQLStatement {
             }
         }
 
-        baselen = sql.length();
-
-        if ((SQL.indexOf(GROUPBY_CLAUSE)>=0)&&(baselen>SQL.indexOf(GROUPBY_CLAUSE))) {
-            baselen = SQL.indexOf(GROUPBY_CLAUSE);
-        }
-
-        final String ord = opos>=0?sql.substring(opos+10, baselen):"";
-        final String grd = gpos>=0?sql.substring(gpos+10):"";
-        final String wnd = xpos>=0?sql.substring(xpos+11):"";
+        final String ord = plan.getOrd();
+        final String grd = plan.getGrd();
+        final String wnd = plan.getWnd();
+        final String hvg = plan.getHvg();
 
         if (!ord.trim().equals("")) {
             String[] ords = ord.trim().split(",");
@@ -375,10 +276,19 @@ public class SQLSelect implements SQLStatement {
             }
         }
 
+        //having conditions refer to result columns of grouped result
+        SQLHaving having = null;
+        if (!hvg.trim().equals("")) {
+            if (!isGroupedResult()) {
+                throw new InvalidHavingPart();
+            }
+            having = new SQLHaving(hvg.trim(), this.cols.getColumns());
+        }
+
         cols.sort();
 
         sn.persist(this.cursor);
-        this.join = new SQLJoin(this.tables, this.cols, this.nc, this.cursor, sn);
+        this.join = new SQLJoin(this.tables, this.cols, this.nc, having, this.cursor, sn);
         sn.getTransaction().setJoin(this.join);
 
         // try to start distribute query
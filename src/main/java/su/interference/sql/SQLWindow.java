@@ -0,0 +1,303 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.sql;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Incremental aggregation of WINDOW BY stream: rows of window are stored in ring buffer,
+ * COUNT/SUM/AVG are kept as running accumulators and MIN/MAX as monotonic deques,
+ * so each event costs O(1) amortized independently of window size.
+ * Window is count-based (interval in events) or time-based (interval in seconds),
+ * sliding (result on each event) or tumbling (result on each completed window).
+ * Time of event is the value of window column if it is date, else arrival time;
+ * time-based tumbling window is closed by first event after the end of window.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class SQLWindow {
+    private final int[] ftypes;
+    private final int wcol;
+    private final int interval;
+    private final long span;
+    private final boolean time;
+    private final boolean tumbling;
+    private final long[] cnt;
+    private final long[] sum;
+    private final Deque[] ext;
+    private Object[][] rows;
+    private long[] tss;
+    private int mask;
+    private long first;
+    private long next;
+    private long last;
+    private long wend;
+
+    public SQLWindow(List<SQLColumn> cols, SQLColumn wcolumn) {
+        this.ftypes = new int[cols.size()];
+        int wcol_ = -1;
+        for (int i=0; i<cols.size(); i++) {
+            ftypes[i] = cols.get(i).getFtype();
+            if (cols.get(i) == wcolumn) {
+                wcol_ = i;
+            }
+        }
+        this.wcol = wcol_;
+        this.interval = wcolumn.getWindowInterval();
+        this.span = interval * 1000L;
+        this.time = wcolumn.isWindowTime();
+        this.tumbling = wcolumn.isWindowTumbling();
+        this.cnt = new long[ftypes.length];
+        this.sum = new long[ftypes.length];
+        this.ext = new Deque[ftypes.length];
+        //count-based window holds interval + 1 rows before eviction
+        int capacity = 16;
+        while (!time && capacity <= interval) {
+            capacity = capacity * 2;
+        }
+        for (int i=0; i<ftypes.length; i++) {
+            if (ftypes[i] == SQLGroupFunction.F_MIN || ftypes[i] == SQLGroupFunction.F_MAX) {
+                ext[i] = new Deque(capacity);
+            }
+        }
+        this.rows = new Object[capacity][];
+        this.tss = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    //returns group value set or null if window result is not ready
+    public Object[] add(Object[] os) {
+        final long ts = time ? Math.max(getTime(os), last) : 0;
+        last = ts;
+        if (tumbling) {
+            Object[] res = null;
+            if (time) {
+                if (next > first && ts >= wend) {
+                    res = getResult();
+                    clear();
+                }
+                if (next == first) {
+                    wend = ts - ts % span + span;
+                }
+                push(os, ts);
+            } else {
+                push(os, ts);
+                if (next - first == interval) {
+                    res = getResult();
+                    clear();
+                }
+            }
+            return res;
+        }
+        push(os, ts);
+        if (time) {
+            while (tss[(int) (first & mask)] <= ts - span) {
+                evict();
+            }
+            return getResult();
+        }
+        if (next - first > interval) {
+            evict();
+        }
+        return next - first == interval ? getResult() : null;
+    }
+
+    private long getTime(Object[] os) {
+        if (wcol >= 0 && os[wcol] instanceof Date) {
+            return ((Date) os[wcol]).getTime();
+        }
+        return System.currentTimeMillis();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void push(Object[] os, long ts) {
+        if (next - first == rows.length) {
+            grow();
+        }
+        final int p = (int) (next & mask);
+        rows[p] = os;
+        tss[p] = ts;
+        for (int i=0; i<ftypes.length; i++) {
+            switch (ftypes[i]) {
+                case SQLGroupFunction.F_COUNT:
+                    cnt[i]++;
+                    break;
+                case SQLGroupFunction.F_SUM:
+                    sum[i] = sum[i] + num(os[i]);
+                    break;
+                case SQLGroupFunction.F_AVG:
+                    cnt[i]++;
+                    sum[i] = sum[i] + num(os[i]);
+                    break;
+                case SQLGroupFunction.F_MIN:
+                case SQLGroupFunction.F_MAX:
+                    if (os[i] != null) {
+                        //drop rows which can not be extremum while current row is in window
+                        final int sign = ftypes[i] == SQLGroupFunction.F_MIN ? 1 : -1;
+                        while (ext[i].size > 0 && ((Comparable) rows[(int) (ext[i].peekLast() & mask)][i]).compareTo(os[i]) * sign > 0) {
+                            ext[i].pollLast();
+                        }
+                        ext[i].addLast(next);
+                    }
+                    break;
+                default:
+            }
+        }
+        next++;
+    }
+
+    private void evict() {
+        final int p = (int) (first & mask);
+        final Object[] os = rows[p];
+        for (int i=0; i<ftypes.length; i++) {
+            switch (ftypes[i]) {
+                case SQLGroupFunction.F_COUNT:
+                    cnt[i]--;
+                    break;
+                case SQLGroupFunction.F_SUM:
+                    sum[i] = sum[i] - num(os[i]);
+                    break;
+                case SQLGroupFunction.F_AVG:
+                    cnt[i]--;
+                    sum[i] = sum[i] - num(os[i]);
+                    break;
+                case SQLGroupFunction.F_MIN:
+                case SQLGroupFunction.F_MAX:
+                    if (ext[i].size > 0 && ext[i].peekFirst() == first) {
+                        ext[i].pollFirst();
+                    }
+                    break;
+                default:
+            }
+        }
+        rows[p] = null;
+        first++;
+    }
+
+    private void clear() {
+        while (next > first) {
+            rows[(int) (first & mask)] = null;
+            first++;
+        }
+        for (int i=0; i<ftypes.length; i++) {
+            cnt[i] = 0;
+            sum[i] = 0;
+            if (ext[i] != null) {
+                ext[i].size = 0;
+            }
+        }
+    }
+
+    private void grow() {
+        final Object[][] rows_ = new Object[rows.length * 2][];
+        final long[] tss_ = new long[rows.length * 2];
+        final int mask_ = rows_.length - 1;
+        for (long q = first; q < next; q++) {
+            rows_[(int) (q & mask_)] = rows[(int) (q & mask)];
+            tss_[(int) (q & mask_)] = tss[(int) (q & mask)];
+        }
+        rows = rows_;
+        tss = tss_;
+        mask = mask_;
+    }
+
+    //non-aggregated columns are taken from the oldest row of window
+    private Object[] getResult() {
+        final Object[] res = rows[(int) (first & mask)].clone();
+        for (int i=0; i<ftypes.length; i++) {
+            switch (ftypes[i]) {
+                case SQLGroupFunction.F_COUNT:
+                    res[i] = (int) cnt[i];
+                    break;
+                case SQLGroupFunction.F_SUM:
+                    res[i] = sum[i];
+                    break;
+                case SQLGroupFunction.F_AVG:
+                    res[i] = cnt[i] == 0 ? 0L : sum[i] / cnt[i];
+                    break;
+                case SQLGroupFunction.F_MIN:
+                case SQLGroupFunction.F_MAX:
+                    res[i] = ext[i].size == 0 ? null : rows[(int) (ext[i].peekFirst() & mask)][i];
+                    break;
+                default:
+            }
+        }
+        return res;
+    }
+
+    private static long num(Object o) {
+        if (o instanceof Long) {
+            return (Long) o;
+        }
+        if (o instanceof Integer) {
+            return (Integer) o;
+        }
+        return 0L;
+    }
+
+    //ring of row sequence numbers without boxing
+    private static class Deque {
+        private long[] buf;
+        private int head;
+        private int size;
+
+        private Deque(int capacity) {
+            this.buf = new long[capacity];
+        }
+
+        private long peekFirst() {
+            return buf[head];
+        }
+
+        private long peekLast() {
+            return buf[(head + size - 1) & (buf.length - 1)];
+        }
+
+        private void pollFirst() {
+            head = (head + 1) & (buf.length - 1);
+            size--;
+        }
+
+        private void pollLast() {
+            size--;
+        }
+
+        private void addLast(long q) {
+            if (size == buf.length) {
+                final long[] buf_ = new long[buf.length * 2];
+                for (int i=0; i<size; i++) {
+                    buf_[i] = buf[(head + i) & (buf.length - 1)];
+                }
+                buf = buf_;
+                head = 0;
+            }
+            buf[(head + size) & (buf.length - 1)] = q;
+            size++;
+        }
+    }
+}
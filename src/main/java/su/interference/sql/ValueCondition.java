@@ -34,6 +34,7 @@ import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
 import java.util.StringTokenizer;
 import java.util.ArrayList;
@@ -168,6 +169,60 @@ public class ValueCondition extends Condition {
 
     }
 
+    //value bound to ? marker of prepared statement, IN conditions take array or collection
+    public ValueCondition (SQLColumn cc, int c, Object value, NestedCondition nc) throws InvalidConditionValue, InvalidCondition {
+        super(cc,c,nc);
+        final String ct = cc.getColumn().getType().getName();
+        if ((c == Condition.C_IN)||(c == Condition.C_NOT_IN)) {
+            final Object[] vs = value instanceof Object[] ? (Object[]) value : value instanceof Collection ? ((Collection<?>) value).toArray() : new Object[]{value};
+            this.values = new Object[vs.length];
+            for (int i=0; i<vs.length; i++) {
+                this.values[i] = bind(ct, vs[i]);
+            }
+        } else if (value instanceof Object[] || value instanceof Collection) {
+            throw new InvalidCondition();
+        } else if (ct.equals(Types.t_string)||ct.equals(Types.t_date)) {
+            if ((c == Condition.C_EQUAL)||(c == Condition.C_NOT_EQUAL)||(c == Condition.C_LIKE)||(c == Condition.C_NOT_LIKE)) {
+                this.values = new Object[]{bind(ct, value)};
+            } else {
+                throw new InvalidConditionValue();
+            }
+        } else {
+            if ((c == Condition.C_EQUAL)||(c == Condition.C_NOT_EQUAL)||(c == Condition.C_LESS)||(c == Condition.C_LESS_EQUAL)||(c == Condition.C_MORE)||(c == Condition.C_MORE_EQUAL)) {
+                this.values = new Object[]{bind(ct, value)};
+            } else {
+                throw new InvalidCondition();
+            }
+        }
+    }
+
+    //converts bound value to the type which parsed literal of column type has
+    private static Object bind(String ct, Object v) throws InvalidConditionValue {
+        if (v == null) {
+            throw new InvalidConditionValue("Null value can not be bound");
+        }
+        final boolean integral = v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte;
+        if (ct.equals(Types.t_string) && v instanceof String) {
+            return v;
+        }
+        if (ct.equals(Types.t_date) && v instanceof Date) {
+            return v;
+        }
+        if ((ct.equals(Types.t_int)||ct.equals(Types.p_int)||ct.equals(Types.c_int)) && integral) {
+            final long l = ((Number) v).longValue();
+            if (l == (int) l) {
+                return (int) l;
+            }
+        }
+        if ((ct.equals(Types.t_long)||ct.equals(Types.p_long)||ct.equals(Types.c_long)) && integral) {
+            return ((Number) v).longValue();
+        }
+        if ((ct.equals(Types.t_float)||ct.equals(Types.p_float)||ct.equals(Types.t_double)||ct.equals(Types.p_double)) && v instanceof Number) {
+            return ((Number) v).doubleValue();
+        }
+        throw new InvalidConditionValue("Value of "+v.getClass().getName()+" can not be bound to column of type "+ct);
+    }
+
     public Object[] getValues() {
         return values;
     }
@@ -0,0 +1,64 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.test;
+
+import su.interference.core.Config;
+import su.interference.core.Instance;
+import su.interference.persistent.Session;
+
+import java.io.File;
+
+/**
+ * Common start/stop and report routines of benchmark programs.
+ * Benchmarks are started from the project root with test and runtime classpath, e.g.
+ * java -cp target/classes:target/test-classes:... -Dsu.interference.config=bench su.interference.test.FrameCodecBenchmark
+ * config/bench points the storage to /tmp/interference-bench, it must be removed before the run
+ * when the frame size is changed.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class Benchmarks {
+
+    public static Session startup() throws Exception {
+        new File(Config.getConfig().DB_PATH).mkdirs();
+        final Session s = Session.getSession();
+        s.setUserId(Session.ROOT_USER_ID);
+        Instance.getInstance().startupInstance(s);
+        return s;
+    }
+
+    public static void shutdown() throws Exception {
+        Instance.getInstance().shutdownInstance();
+        System.exit(0);
+    }
+
+    //prints average time of operation and throughput
+    public static void report(String name, long nanos, long ops) {
+        System.out.println(String.format("%-40s %10.3f us/op %14.1f ops/s", name, nanos / 1000.0 / ops, ops * 1e9 / nanos));
+    }
+
+}
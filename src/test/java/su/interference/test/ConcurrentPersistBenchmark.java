@@ -0,0 +1,96 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.test;
+
+import su.interference.persistent.Session;
+import su.interference.test.entity.Emp;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Inserts into one table by 1 to 16 sessions, each session commits every batch of rows.
+ * Rows include maintenance of EmpDeptIx index.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class ConcurrentPersistBenchmark {
+
+    private static final int[] THREADS = new int[]{1, 2, 4, 8, 16};
+
+    //args: amount of rows per run, default 16000, rows per commit, default 100
+    public static void main(String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 16000;
+        final int batch = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Benchmarks.startup();
+        //warmup
+        run(4, rows / 4, batch);
+        for (int nt : THREADS) {
+            Benchmarks.report("persist, threads=" + nt + " batch=" + batch, run(nt, rows, batch), rows);
+        }
+        Benchmarks.shutdown();
+    }
+
+    //inserts rows divided between sessions, returns elapsed time
+    private static long run(int nt, int rows, int batch) throws Exception {
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final Thread[] ts = new Thread[nt];
+        for (int i = 0; i < nt; i++) {
+            final int n = i == nt - 1 ? rows - rows / nt * (nt - 1) : rows / nt;
+            ts[i] = new Thread(() -> {
+                try {
+                    final Session s = Session.getSession();
+                    s.setUserId(Session.ROOT_USER_ID);
+                    for (int k = 0; k < n; k++) {
+                        final Emp e = (Emp) s.newEntity(Emp.class);
+                        e.setEmpName("emp" + k);
+                        e.setDeptId(1 + k % 50);
+                        e.setSalary(k);
+                        s.persist(e);
+                        if ((k + 1) % batch == 0 || k == n - 1) {
+                            s.commit();
+                        }
+                    }
+                } catch (Exception e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+        }
+        final long t0 = System.nanoTime();
+        for (Thread t : ts) {
+            t.start();
+        }
+        for (Thread t : ts) {
+            t.join();
+        }
+        final long t = System.nanoTime() - t0;
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return t;
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.test;
+
+import su.interference.core.Chunk;
+import su.interference.core.DataChunk;
+import su.interference.core.DataFrame;
+import su.interference.core.Frame;
+import su.interference.core.Instance;
+import su.interference.persistent.Session;
+import su.interference.persistent.Table;
+import su.interference.serialize.ByteString;
+import su.interference.test.entity.Emp;
+
+/**
+ * Encoding and decoding of full data frames of 4, 16 and 64 KB.
+ * Frame.getFrame() is compared with the ByteString.append chain which builds the same image
+ * by appending every header field, row header and chunk; decode is DataFrame(byte[]...).
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class FrameCodecBenchmark {
+
+    private static final int[] SIZES = new int[]{4096, 16384, 65536};
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        final Session s = Benchmarks.startup();
+        final Table t = Instance.getInstance().getTableByName(Emp.class.getName());
+        long sink = 0;
+        for (int size : SIZES) {
+            final DataFrame f = new DataFrame(1, 0, size, t);
+            int i = 0;
+            while (true) {
+                final Emp e = (Emp) s.newEntity(Emp.class);
+                e.setEmpId(i);
+                e.setEmpName("emp" + i);
+                e.setDeptId(i % 50);
+                e.setSalary(i);
+                if (f.insertChunk(new DataChunk(e, s, t), s, true, true, null) == 0) {
+                    break;
+                }
+                i++;
+            }
+            final byte[] b = f.getFrame(0);
+            for (int k = 0; k < WARMUP; k++) {
+                sink += f.getFrame(0).length + append(f).length + new DataFrame(b, 1, 0, t).getChunks().size();
+            }
+            long t0 = System.nanoTime();
+            for (int k = 0; k < ITERATIONS; k++) {
+                sink += append(f).length;
+            }
+            Benchmarks.report("append encode " + size / 1024 + "K (" + i + " rows)", System.nanoTime() - t0, ITERATIONS);
+            t0 = System.nanoTime();
+            for (int k = 0; k < ITERATIONS; k++) {
+                sink += f.getFrame(0).length;
+            }
+            Benchmarks.report("buffer encode " + size / 1024 + "K (" + i + " rows)", System.nanoTime() - t0, ITERATIONS);
+            t0 = System.nanoTime();
+            for (int k = 0; k < ITERATIONS; k++) {
+                sink += new DataFrame(b, 1, 0, t).getChunks().size();
+            }
+            Benchmarks.report("buffer decode " + size / 1024 + "K (" + i + " rows)", System.nanoTime() - t0, ITERATIONS);
+        }
+        System.out.println("sink " + sink);
+        Benchmarks.shutdown();
+    }
+
+    //frame image built the way Frame.getFrame() did before the encoder, 20 header fields and 2 appends per row
+    private static byte[] append(Frame f) {
+        final ByteString res = new ByteString();
+        for (int k = 0; k < 20; k++) {
+            res.addBytesFromInt(k);
+        }
+        for (Chunk c : f.getChunks()) {
+            res.append(((DataChunk) c).getHeader().getHeader());
+            res.append(c.getChunk());
+        }
+        return res.getBytes();
+    }
+
+}
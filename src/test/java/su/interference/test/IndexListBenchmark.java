@@ -0,0 +1,99 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.test;
+
+import su.interference.core.IndexList;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inserts and lookups of long keys in IndexList under 1 to 32 threads.
+ * Synchronized TreeMap is the baseline of a catalog index behind a single monitor.
+ * Does not need running instance.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class IndexListBenchmark {
+
+    private static final int[] THREADS = new int[]{1, 2, 4, 8, 16, 32};
+    private static final int LOOKUPS = 1 << 22;
+
+    //args: amount of keys, default 65536
+    public static void main(String[] args) throws Exception {
+        final int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+        final AtomicLong sink = new AtomicLong();
+        for (int round = 0; round < 2; round++) {
+            //first round is warmup
+            final boolean print = round > 0;
+            for (int nt : THREADS) {
+                final IndexList ix = new IndexList();
+                final Map<Long, Object> tm = Collections.synchronizedMap(new TreeMap<>());
+                long t = run(nt, keys, (k, r) -> ix.add(k, r));
+                if (print) Benchmarks.report("IndexList insert, threads=" + nt, t, keys);
+                t = run(nt, keys, (k, r) -> tm.put(k, r));
+                if (print) Benchmarks.report("synchronized TreeMap insert, threads=" + nt, t, keys);
+                t = run(nt, LOOKUPS, (k, r) -> { if (ix.getObjectByKey(r % keys) != null) sink.incrementAndGet(); });
+                if (print) Benchmarks.report("IndexList lookup, threads=" + nt, t, LOOKUPS);
+                t = run(nt, LOOKUPS, (k, r) -> { if (tm.get(r % keys) != null) sink.incrementAndGet(); });
+                if (print) Benchmarks.report("synchronized TreeMap lookup, threads=" + nt, t, LOOKUPS);
+            }
+        }
+        System.out.println("sink " + sink.get());
+    }
+
+    private interface Op {
+        void apply(long k, long r);
+    }
+
+    //performs ops operations divided between threads, returns elapsed time
+    private static long run(int nt, int ops, Op op) throws InterruptedException {
+        final Thread[] ts = new Thread[nt];
+        for (int i = 0; i < nt; i++) {
+            final int from = ops / nt * i;
+            final int to = i == nt - 1 ? ops : ops / nt * (i + 1);
+            ts[i] = new Thread(() -> {
+                final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (long k = from; k < to; k++) {
+                    op.apply(k, rnd.nextInt(Integer.MAX_VALUE));
+                }
+            });
+        }
+        final long t0 = System.nanoTime();
+        for (Thread t : ts) {
+            t.start();
+        }
+        for (Thread t : ts) {
+            t.join();
+        }
+        return System.nanoTime() - t0;
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ The MIT License (MIT)
+
+ Copyright (c) 2010-2021 head systems, ltd
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy of
+ this software and associated documentation files (the "Software"), to deal in
+ the Software without restriction, including without limitation the rights to
+ use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ the Software, and to permit persons to whom the Software is furnished to do so,
+ subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ */
+
+package su.interference.test;
+
+import su.interference.persistent.Session;
+import su.interference.sql.ResultSet;
+import su.interference.test.entity.Dept;
+import su.interference.test.entity.Emp;
+
+/**
+ * First execution latency of select statements.
+ * Each statement of the first pass has new result columns signature, so its result class is built,
+ * statements of the second pass have the same signatures and other conditions, so the plan is not cached.
+ *
+ * @author Yuriy Glotanov
+ * @since 1.0
+ */
+
+public class QueryLatencyBenchmark {
+
+    private static final int DEPTS = 50;
+    private static final int EMPS = 1000;
+
+    //args: amount of statements per pass, default 50
+    public static void main(String[] args) throws Exception {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        final Session s = Benchmarks.startup();
+        if (count(s, "select d.deptId from " + Dept.class.getName() + " d") == 0) {
+            load(s);
+        }
+        long t = 0;
+        for (int i = 0; i < n; i++) {
+            t += execute(s, "select e.empId c" + i + ", e.empName from " + Emp.class.getName() + " e where e.deptId = 1");
+        }
+        Benchmarks.report("first execution, new result shape", t, n);
+        t = 0;
+        for (int i = 0; i < n; i++) {
+            t += execute(s, "select e.empId c" + i + ", e.empName from " + Emp.class.getName() + " e where e.deptId = 2");
+        }
+        Benchmarks.report("first execution, known result shape", t, n);
+        Benchmarks.shutdown();
+    }
+
+    private static void load(Session s) throws Exception {
+        for (int i = 0; i < DEPTS; i++) {
+            final Dept d = (Dept) s.newEntity(Dept.class);
+            d.setDeptName("dept" + i);
+            d.setGrp(i % 5);
+            s.persist(d);
+        }
+        for (int i = 0; i < EMPS; i++) {
+            final Emp e = (Emp) s.newEntity(Emp.class);
+            e.setEmpName("emp" + i);
+            e.setDeptId(1 + i % DEPTS);
+            e.setSalary(i);
+            s.persist(e);
+        }
+        s.commit();
+    }
+
+    //returns time of execution and fetch of all rows
+    private static long execute(Session s, String sql) throws Exception {
+        final long t0 = System.nanoTime();
+        count(s, sql);
+        return System.nanoTime() - t0;
+    }
+
+    private static int count(Session s, String sql) throws Exception {
+        final ResultSet rs = s.execute(sql);
+        int n = 0;
+        while (rs.poll(s) != null) {
+            n++;
+        }
+        return n;
+    }
+
+}